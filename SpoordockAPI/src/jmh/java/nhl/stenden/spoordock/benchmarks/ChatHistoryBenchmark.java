@@ -0,0 +1,74 @@
+package nhl.stenden.spoordock.benchmarks;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+import nhl.stenden.spoordock.llmService.historyManager.InMemoryChatHistoryManager;
+import nhl.stenden.spoordock.llmService.historyManager.classes.BotMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.OllamaMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.SystemMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.UserMessage;
+
+/**
+ * Ophalen van het laatste venster van een gesprek, zoals bij elke chat request (en elke tool loop) gebeurt.
+ * De limieten van de history staan zo ruim dat het hele gesprek bewaard blijft; de kosten moeten O(maxMessages)
+ * zijn, ongeacht de lengte van het gesprek.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatHistoryBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    public int historySize;
+
+    @Param({ "20" })
+    public int maxMessages;
+
+    private final UUID conversationId = new UUID(4, 0);
+    private InMemoryChatHistoryManager historyManager;
+
+    @Setup
+    public void setup() {
+        var history = new LlmConfiguration.History();
+        history.setMaxMessagesPerConversation(historySize + 1);
+        history.setMaxMemory(DataSize.ofGigabytes(1));
+        historyManager = new InMemoryChatHistoryManager(history, System::nanoTime);
+        historyManager.createHistoryIfNotExists(conversationId, new SystemMessage("Je bent een assistent voor Spoordok."));
+        for (int i = 1; i < historySize; i++) {
+            historyManager.addMessageToHistory(conversationId, i % 2 == 0
+                ? new BotMessage("Antwoord " + i)
+                : new UserMessage("Vraag " + i));
+        }
+    }
+
+    @Benchmark
+    public List<OllamaMessage> getHistory() {
+        return historyManager.getHistory(conversationId, maxMessages);
+    }
+
+    // Eén beurt: antwoord toevoegen (het gesprek zit op de limiet, dus het oudste bericht vervalt) en venster ophalen
+    @Benchmark
+    public List<OllamaMessage> addMessageAndGetHistory() {
+        historyManager.addMessageToHistory(conversationId, new BotMessage("Antwoord"));
+        return historyManager.getHistory(conversationId, maxMessages);
+    }
+}
@@ -0,0 +1,47 @@
+package nhl.stenden.spoordock.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nhl.stenden.spoordock.database.entities.BuildingPolygonEntity;
+import nhl.stenden.spoordock.services.mappers.BuildingEmbeddingMapper;
+
+/**
+ * Opbouwen van de tekst die naar het embedding model gestuurd wordt.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmbeddingTextBenchmark {
+
+    @Param({ "10", "1000" })
+    public int vertices;
+
+    private final BuildingEmbeddingMapper mapper = new BuildingEmbeddingMapper();
+    private BuildingPolygonEntity building;
+
+    @Setup
+    public void setup() {
+        var geometryFactory = SyntheticData.geometryFactory();
+        building = SyntheticData.buildings(geometryFactory, 1, vertices, SyntheticData.buildingTypes(1)).get(0);
+    }
+
+    @Benchmark
+    public String toEmbeddableText() {
+        return mapper.toEmbeddableText(building);
+    }
+}
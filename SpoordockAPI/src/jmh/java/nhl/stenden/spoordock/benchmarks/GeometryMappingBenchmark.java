@@ -0,0 +1,86 @@
+package nhl.stenden.spoordock.benchmarks;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Polygon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nhl.stenden.spoordock.controllers.dtos.polygon.PolygonDTO;
+import nhl.stenden.spoordock.services.mappers.geometry.PolygonMapper;
+
+/**
+ * Vergelijkt het mappen + serialiseren van een polygoon naar JSON:
+ * de oude manier (getCoordinates() kopie + een Coordinate DTO per punt) tegen
+ * de CoordinateSequenceList view met de eigen Jackson serializer.
+ *
+ * Allocaties per operatie zijn te zien met: mvn -Pbenchmark test-compile exec:exec -Djmh.args="GeometryMapping -prof gc"
+ * (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeometryMappingBenchmark {
+
+    @Param({ "10000" })
+    public int vertices;
+
+    // Zelfde null stream voor elke aanroep, dus niet laten sluiten door Jackson
+    private final ObjectMapper objectMapper = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private final OutputStream nullOutput = OutputStream.nullOutputStream();
+    private PolygonMapper polygonMapper;
+    private Polygon polygon;
+
+    @Setup
+    public void setup() {
+        var geometryFactory = SyntheticData.geometryFactory();
+        polygonMapper = new PolygonMapper(geometryFactory);
+        polygon = SyntheticData.polygon(geometryFactory, vertices, 0);
+    }
+
+    @Benchmark
+    public void copyingMapper() throws Exception {
+        // Oude PolygonMapper.toDTO implementatie
+        List<nhl.stenden.spoordock.controllers.dtos.common.Coordinate> coordinates = Arrays.stream(polygon.getCoordinates())
+            .map(coord -> {
+                var dto = new nhl.stenden.spoordock.controllers.dtos.common.Coordinate();
+                dto.setX(coord.getX());
+                dto.setY(coord.getY());
+                dto.setZ(coord.getZ());
+                return dto;
+            })
+            .toList();
+        var polygonDTO = new PolygonDTO();
+        polygonDTO.setCoordinates(coordinates);
+        objectMapper.writeValue(nullOutput, polygonDTO);
+    }
+
+    @Benchmark
+    public void coordinateSequenceMapper() throws Exception {
+        objectMapper.writeValue(nullOutput, polygonMapper.toDTO(polygon));
+    }
+
+    @Benchmark
+    public Coordinate[] getCoordinatesCopy() {
+        return polygon.getCoordinates();
+    }
+}
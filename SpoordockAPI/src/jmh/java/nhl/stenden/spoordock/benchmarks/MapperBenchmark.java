@@ -0,0 +1,86 @@
+package nhl.stenden.spoordock.benchmarks;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nhl.stenden.spoordock.controllers.dtos.BuildingPolygonDTO;
+import nhl.stenden.spoordock.controllers.dtos.RoadSegmentDTO;
+import nhl.stenden.spoordock.database.entities.BuildingPolygonEntity;
+import nhl.stenden.spoordock.database.entities.RoadSegment;
+import nhl.stenden.spoordock.services.mappers.BuildingPolygonMapper;
+import nhl.stenden.spoordock.services.mappers.BuildingTypeMapper;
+import nhl.stenden.spoordock.services.mappers.RoadSegmentMapper;
+import nhl.stenden.spoordock.services.mappers.RoadTypeMapper;
+import nhl.stenden.spoordock.services.mappers.geometry.LineStringMapper;
+import nhl.stenden.spoordock.services.mappers.geometry.PolygonMapper;
+
+/**
+ * Entity -> DTO mapping van de /list endpoints, los en inclusief JSON serialisatie.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+    @Param({ "100", "10000" })
+    public int features;
+
+    @Param({ "50" })
+    public int vertices;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private final OutputStream nullOutput = OutputStream.nullOutputStream();
+
+    private BuildingPolygonMapper buildingPolygonMapper;
+    private RoadSegmentMapper roadSegmentMapper;
+    private List<BuildingPolygonEntity> buildings;
+    private List<RoadSegment> roads;
+
+    @Setup
+    public void setup() {
+        var geometryFactory = SyntheticData.geometryFactory();
+        buildingPolygonMapper = new BuildingPolygonMapper(new BuildingTypeMapper(), new PolygonMapper(geometryFactory));
+        roadSegmentMapper = new RoadSegmentMapper(new RoadTypeMapper(), new LineStringMapper(geometryFactory));
+        buildings = SyntheticData.buildings(geometryFactory, features, vertices, SyntheticData.buildingTypes(10));
+        roads = SyntheticData.roads(geometryFactory, features, vertices);
+    }
+
+    @Benchmark
+    public List<BuildingPolygonDTO> buildingPolygonToDTOs() {
+        return buildingPolygonMapper.toDTOs(buildings);
+    }
+
+    @Benchmark
+    public void buildingPolygonToJson() throws Exception {
+        objectMapper.writeValue(nullOutput, buildingPolygonMapper.toDTOs(buildings));
+    }
+
+    @Benchmark
+    public List<RoadSegmentDTO> roadSegmentToDTOs() {
+        return roadSegmentMapper.toDTOs(roads);
+    }
+
+    @Benchmark
+    public void roadSegmentToJson() throws Exception {
+        objectMapper.writeValue(nullOutput, roadSegmentMapper.toDTOs(roads));
+    }
+}
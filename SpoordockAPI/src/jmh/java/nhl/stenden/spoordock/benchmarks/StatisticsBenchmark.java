@@ -0,0 +1,71 @@
+package nhl.stenden.spoordock.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nhl.stenden.spoordock.controllers.dtos.StatisticsDTO;
+import nhl.stenden.spoordock.database.entities.BuildingTypeEntity;
+import nhl.stenden.spoordock.services.statistics.BuildingTypeTotals;
+import nhl.stenden.spoordock.services.statistics.StatisticsAggregate;
+
+/**
+ * Het deel van de StatisticsService dat in de JVM draait: de per-gebouwtype rijen uit de
+ * GROUP BY query inladen en omzetten naar een StatisticsDTO.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatisticsBenchmark {
+
+    @Param({ "10", "1000" })
+    public int buildingTypes;
+
+    private List<BuildingTypeEntity> types;
+    private List<BuildingTypeTotals> totals;
+    private StatisticsAggregate aggregate;
+
+    @Setup
+    public void setup() {
+        var random = new Random(42);
+        types = SyntheticData.buildingTypes(buildingTypes);
+        totals = new ArrayList<>(buildingTypes);
+        for (BuildingTypeEntity type : types) {
+            long count = 1 + random.nextInt(1000);
+            double area = count * (50 + random.nextDouble() * 500);
+            double height = count * (3 + random.nextDouble() * 40);
+            totals.add(new BuildingTypeTotals(type.getTypeId(), count, area, area * 12, height, 3, 60));
+        }
+
+        aggregate = new StatisticsAggregate();
+        aggregate.replaceAll(totals, types);
+    }
+
+    @Benchmark
+    public StatisticsDTO toStatistics() {
+        return aggregate.toStatistics();
+    }
+
+    @Benchmark
+    public StatisticsDTO rebuildAndToStatistics() {
+        var rebuilt = new StatisticsAggregate();
+        rebuilt.replaceAll(totals, types);
+        return rebuilt.toStatistics();
+    }
+}
@@ -0,0 +1,108 @@
+package nhl.stenden.spoordock.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import nhl.stenden.spoordock.database.entities.BuildingPolygonEntity;
+import nhl.stenden.spoordock.database.entities.BuildingTypeEntity;
+import nhl.stenden.spoordock.database.entities.RoadSegment;
+import nhl.stenden.spoordock.database.entities.RoadTypeTemplate;
+
+/**
+ * Synthetische geometrieën rond Leeuwarden voor de benchmarks.
+ */
+final class SyntheticData {
+
+    private static final double CENTER_X = 5.7999;
+    private static final double CENTER_Y = 53.2012;
+
+    // Vaste seed, zodat runs op verschillende commits dezelfde data gebruiken
+    private static final long RANDOM_SEED = 42;
+
+    private SyntheticData() {
+    }
+
+    static GeometryFactory geometryFactory() {
+        return new GeometryFactory(new PrecisionModel(PrecisionModel.FLOATING), 4326);
+    }
+
+    static List<BuildingTypeEntity> buildingTypes(int count) {
+        var random = new Random(RANDOM_SEED);
+        var types = new ArrayList<BuildingTypeEntity>(count);
+        for (int i = 0; i < count; i++) {
+            boolean inhabitable = i % 2 == 0;
+            types.add(new BuildingTypeEntity(
+                new UUID(0, i + 1),
+                "Type " + i,
+                "Synthetisch gebouwtype " + i,
+                i % 3 == 0 ? "m2" : "m3",
+                50 + random.nextInt(500),
+                inhabitable,
+                inhabitable ? 0.01 : null,
+                random.nextInt(10),
+                "#336699"));
+        }
+        return types;
+    }
+
+    static List<BuildingPolygonEntity> buildings(GeometryFactory geometryFactory, int count, int vertices,
+                                                 List<BuildingTypeEntity> types) {
+        var random = new Random(RANDOM_SEED);
+        var buildings = new ArrayList<BuildingPolygonEntity>(count);
+        for (int i = 0; i < count; i++) {
+            var building = new BuildingPolygonEntity(
+                "Gebouw " + i,
+                "Synthetisch gebouw nummer " + i,
+                types.get(i % types.size()),
+                polygon(geometryFactory, vertices, i),
+                3 + random.nextInt(60));
+            building.setBuildingId(new UUID(1, i));
+            buildings.add(building);
+        }
+        return buildings;
+    }
+
+    static List<RoadSegment> roads(GeometryFactory geometryFactory, int count, int vertices) {
+        var roadType = new RoadTypeTemplate(new UUID(2, 0), 6, "auto", "asfalt");
+        var roads = new ArrayList<RoadSegment>(count);
+        for (int i = 0; i < count; i++) {
+            roads.add(new RoadSegment(new UUID(3, i), roadType, "Weg " + i, 6, lineString(geometryFactory, vertices, i)));
+        }
+        return roads;
+    }
+
+    /**
+     * Een gesloten polygoon (cirkel) met het opgegeven aantal punten, verschoven met {@code seed}.
+     */
+    static Polygon polygon(GeometryFactory geometryFactory, int vertices, int seed) {
+        int points = Math.max(vertices, 4);
+        var coordinates = new Coordinate[points];
+        double offset = seed * 0.001;
+        for (int i = 0; i < points - 1; i++) {
+            double angle = 2 * Math.PI * i / (points - 1);
+            coordinates[i] = new Coordinate(
+                CENTER_X + offset + Math.cos(angle) * 0.0005,
+                CENTER_Y + offset + Math.sin(angle) * 0.0005,
+                0);
+        }
+        coordinates[points - 1] = coordinates[0].copy();
+        return geometryFactory.createPolygon(coordinates);
+    }
+
+    static LineString lineString(GeometryFactory geometryFactory, int vertices, int seed) {
+        var coordinates = new Coordinate[Math.max(vertices, 2)];
+        double offset = seed * 0.001;
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = new Coordinate(CENTER_X + offset + i * 0.00001, CENTER_Y + offset, 0);
+        }
+        return geometryFactory.createLineString(coordinates);
+    }
+}
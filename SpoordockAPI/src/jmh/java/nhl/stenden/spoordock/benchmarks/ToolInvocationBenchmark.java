@@ -0,0 +1,62 @@
+package nhl.stenden.spoordock.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nhl.stenden.spoordock.llmService.ToolHandling.ToolFunctionCall;
+import nhl.stenden.spoordock.llmService.ToolHandling.ToolHandlingManager;
+import nhl.stenden.spoordock.llmService.ToolHandling.ToolParameter;
+import nhl.stenden.spoordock.llmService.ToolHandling.ToolService;
+import nhl.stenden.spoordock.llmService.dtos.parameters.toolCall.FunctionCall;
+
+/**
+ * Overhead van het dispatchen van een tool call van het model naar de Java methode
+ * (lookup + reflectie), met een tool die zelf vrijwel niets doet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ToolInvocationBenchmark {
+
+    private ToolHandlingManager toolHandlingManager;
+    private FunctionCall functionCall;
+
+    public static class EchoToolService implements ToolService {
+        @ToolFunctionCall(name = "echo", description = "Geeft de invoer terug")
+        public String echo(
+                @ToolParameter(description = "Tekst") String text,
+                @ToolParameter(description = "Aantal") int limit) {
+            return text + limit;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        toolHandlingManager = new ToolHandlingManager(List.of(new EchoToolService()));
+
+        var arguments = new LinkedHashMap<String, Object>();
+        arguments.put("text", "gebouw");
+        arguments.put("limit", 5);
+        functionCall = new FunctionCall("echo", null, arguments);
+    }
+
+    @Benchmark
+    public String handleToolInvocation() {
+        return toolHandlingManager.handleToolInvocation(functionCall);
+    }
+}
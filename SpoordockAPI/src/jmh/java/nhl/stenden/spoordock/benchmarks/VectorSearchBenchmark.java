@@ -0,0 +1,213 @@
+package nhl.stenden.spoordock.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+
+/**
+ * Latency en recall van de HNSW index (zelfde opties als changelog 2.7) ten opzichte van exact zoeken.
+ * Heeft een PostgreSQL database met pgvector nodig, bv. de db container uit docker-compose:
+ *   BENCHMARK_DB_URL=jdbc:postgresql://localhost:5432/mydatabase mvn -Pbenchmark test-compile exec:exec -Djmh.args="VectorSearch"
+ * De testtabellen (benchmark_embeddings_N) blijven staan, zodat volgende runs de index niet opnieuw hoeven te bouwen.
+ * De recall wordt in de setup berekend en op stdout gezet, JMH meet alleen de latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorSearchBenchmark {
+
+    private static final int DIMENSIONS = 768;
+    private static final int CLUSTERS = 100;
+    private static final int QUERIES = 50;
+    private static final int K = 10;
+
+    @Param({ "10000", "100000", "1000000" })
+    public int vectors;
+
+    @Param({ "40", "100", "200" })
+    public int efSearch;
+
+    private Connection exactConnection;
+    private Connection hnswConnection;
+    private PreparedStatement exactQuery;
+    private PreparedStatement hnswQuery;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setup() throws SQLException {
+        String url = System.getenv().getOrDefault("BENCHMARK_DB_URL", "jdbc:postgresql://localhost:5432/mydatabase");
+        String user = System.getenv().getOrDefault("DB_USERNAME", "myuser");
+        String password = System.getenv().getOrDefault("DB_PASSWORD", "mysecretpassword");
+        exactConnection = DriverManager.getConnection(url, user, password);
+        hnswConnection = DriverManager.getConnection(url, user, password);
+
+        String table = "benchmark_embeddings_" + vectors;
+        createTableIfMissing(table);
+
+        // Exact: de planner mag de index niet gebruiken, dus een sequential scan over alle vectoren
+        try (Statement statement = exactConnection.createStatement()) {
+            statement.execute("SET enable_indexscan = off");
+            statement.execute("SET enable_bitmapscan = off");
+        }
+        try (Statement statement = hnswConnection.createStatement()) {
+            statement.execute("SET hnsw.ef_search = " + efSearch);
+        }
+        String sql = "select id from " + table + " order by embedding <-> ?::vector limit " + K;
+        exactQuery = exactConnection.prepareStatement(sql);
+        hnswQuery = hnswConnection.prepareStatement(sql);
+
+        var random = new Random(7);
+        float[][] centroids = centroids();
+        queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = toLiteral(clusteredVector(random, centroids));
+        }
+
+        int found = 0;
+        for (String query : queries) {
+            Set<Integer> exact = search(exactQuery, query);
+            for (int id : search(hnswQuery, query)) {
+                if (exact.contains(id)) {
+                    found++;
+                }
+            }
+        }
+        System.out.printf("%nrecall@%d (vectors=%d, ef_search=%d): %.4f%n", K, vectors, efSearch, (double) found / (QUERIES * K));
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        exactConnection.close();
+        hnswConnection.close();
+    }
+
+    @Benchmark
+    public Set<Integer> exact() throws SQLException {
+        return search(exactQuery, nextQuery());
+    }
+
+    @Benchmark
+    public Set<Integer> hnsw() throws SQLException {
+        return search(hnswQuery, nextQuery());
+    }
+
+    private String nextQuery() {
+        next = (next + 1) % QUERIES;
+        return queries[next];
+    }
+
+    private static Set<Integer> search(PreparedStatement query, String vector) throws SQLException {
+        query.setString(1, vector);
+        Set<Integer> ids = new HashSet<>(K * 2);
+        try (ResultSet resultSet = query.executeQuery()) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    private void createTableIfMissing(String table) throws SQLException {
+        try (Statement statement = exactConnection.createStatement()) {
+            statement.execute("CREATE EXTENSION IF NOT EXISTS vector");
+            try (ResultSet existing = statement.executeQuery(
+                    "select count(*) from pg_tables where tablename = '" + table + "'")) {
+                existing.next();
+                if (existing.getInt(1) == 1) {
+                    return;
+                }
+            }
+
+            statement.execute("CREATE UNLOGGED TABLE " + table + " (id int primary key, embedding vector(" + DIMENSIONS + ") not null)");
+            copyVectors(table);
+            statement.execute("SET maintenance_work_mem = '1GB'");
+            statement.execute("CREATE INDEX ON " + table + " USING hnsw (embedding vector_l2_ops) WITH (m = 16, ef_construction = 64)");
+            statement.execute("ANALYZE " + table);
+        }
+    }
+
+    private void copyVectors(String table) throws SQLException {
+        var copyManager = new CopyManager(exactConnection.unwrap(BaseConnection.class));
+        var random = new Random(42);
+        float[][] centroids = centroids();
+        int chunk = 5_000;
+        try {
+            for (int start = 0; start < vectors; start += chunk) {
+                var rows = new StringBuilder();
+                for (int id = start; id < Math.min(start + chunk, vectors); id++) {
+                    rows.append(id).append('\t').append(toLiteral(clusteredVector(random, centroids))).append('\n');
+                }
+                copyManager.copyIn("COPY " + table + " (id, embedding) FROM STDIN", new StringReader(rows.toString()));
+            }
+        } catch (IOException ex) {
+            throw new SQLException("COPY naar " + table + " mislukt", ex);
+        }
+    }
+
+    // Echte embeddings liggen in clusters; uniform verdeelde vectoren zouden de recall van HNSW overschatten
+    private static float[][] centroids() {
+        var random = new Random(1);
+        float[][] centroids = new float[CLUSTERS][DIMENSIONS];
+        for (float[] centroid : centroids) {
+            for (int d = 0; d < DIMENSIONS; d++) {
+                centroid[d] = (float) random.nextGaussian();
+            }
+        }
+        return centroids;
+    }
+
+    // Genormaliseerd, zoals de vectoren van nomic-embed-text
+    private static float[] clusteredVector(Random random, float[][] centroids) {
+        float[] centroid = centroids[random.nextInt(CLUSTERS)];
+        float[] vector = new float[DIMENSIONS];
+        double norm = 0;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            vector[d] = centroid[d] + (float) (random.nextGaussian() * 0.5);
+            norm += vector[d] * vector[d];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int d = 0; d < DIMENSIONS; d++) {
+            vector[d] *= scale;
+        }
+        return vector;
+    }
+
+    private static String toLiteral(float[] vector) {
+        var literal = new StringBuilder(vector.length * 10).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                literal.append(',');
+            }
+            literal.append(vector[i]);
+        }
+        return literal.append(']').toString();
+    }
+}
@@ -1,20 +1,25 @@
 package nhl.stenden.spoordock;
 
 import java.net.http.HttpClient;
+import java.util.concurrent.Executors;
 
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import nhl.stenden.spoordock.llmService.historyManager.IChatHistoryManager;
 import nhl.stenden.spoordock.llmService.historyManager.InMemoryChatHistoryManager;
+import nhl.stenden.spoordock.llmService.historyManager.PostgresChatHistoryManager;
 
 
 @SpringBootApplication
+@EnableScheduling
 public class SpoordockApplication {
 
 	public static void main(String[] args) {
@@ -24,10 +29,12 @@ public class SpoordockApplication {
 
 	@Primary
 	@Bean 
-	public IChatHistoryManager chatHistoryManager(InMemoryChatHistoryManager inMemoryChatHistoryManager){
+	public IChatHistoryManager chatHistoryManager(InMemoryChatHistoryManager inMemoryChatHistoryManager,
+			ObjectProvider<PostgresChatHistoryManager> postgresChatHistoryManager){
 
-		//Here we can switch implementations if needed in the future
-		return inMemoryChatHistoryManager;
+		// llm.history.backend: postgres maakt de PostgresChatHistoryManager aan, die de in-memory opslag als cache gebruikt
+		IChatHistoryManager postgres = postgresChatHistoryManager.getIfAvailable();
+		return postgres != null ? postgres : inMemoryChatHistoryManager;
 	}
 
 	@Bean
@@ -45,7 +52,10 @@ public class SpoordockApplication {
 
     @Bean
     public HttpClient httpClient() {
-        return HttpClient.newHttpClient();
+        // De callbacks van sendAsync (SSE chunks, tool calls, embeddings) blokkeren; op virtual threads houden ze geen platform thread bezet
+        return HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
     }
 
     @Bean 
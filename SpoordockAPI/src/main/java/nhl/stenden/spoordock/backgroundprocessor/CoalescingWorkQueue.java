@@ -0,0 +1,148 @@
+package nhl.stenden.spoordock.backgroundprocessor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Work queue that coalesces submissions per key. A key is handed to the flush handler once it has not
+ * been submitted again for the debounce window, so a burst of submissions for the same key results in
+ * a single unit of work. Due keys are flushed together in batches of at most {@code maxBatchSize}.
+ *
+ * @param <K> the key that identifies a unit of work, for example a building ID
+ */
+@Slf4j
+public class CoalescingWorkQueue<K> implements AutoCloseable {
+
+    private final long debounceNanos;
+    private final int maxBatchSize;
+    private final Consumer<List<K>> flushHandler;
+    private final ScheduledExecutorService scheduler;
+    private final LongSupplier nanoClock;
+
+    // Key -> nanoTime at which the key may be flushed
+    private final Map<K, Long> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private final AtomicLong submittedCount = new AtomicLong(0);
+    private final AtomicLong coalescedCount = new AtomicLong(0);
+    private final AtomicLong flushedCount = new AtomicLong(0);
+
+    public CoalescingWorkQueue(Duration debounce, int maxBatchSize, Consumer<List<K>> flushHandler) {
+        this(debounce, maxBatchSize, flushHandler,
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("coalescing-work-queue").factory()),
+            System::nanoTime);
+    }
+
+    public CoalescingWorkQueue(Duration debounce, int maxBatchSize, Consumer<List<K>> flushHandler,
+            ScheduledExecutorService scheduler, LongSupplier nanoClock) {
+        this.debounceNanos = debounce.toNanos();
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.flushHandler = flushHandler;
+        this.scheduler = scheduler;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Submits a key; an earlier pending submission for the same key is replaced and its debounce window restarts.
+     */
+    public void submit(K key) {
+        submittedCount.incrementAndGet();
+        if (pending.put(key, nanoClock.getAsLong() + debounceNanos) != null) {
+            coalescedCount.incrementAndGet();
+        }
+        scheduleFlush(debounceNanos);
+    }
+
+    /**
+     * Flushes the keys whose debounce window has passed and schedules the next flush for the keys that remain.
+     */
+    public void flushDue() {
+        flushScheduled.set(false);
+
+        long now = nanoClock.getAsLong();
+        List<K> due = new ArrayList<>();
+        long nextDeadline = Long.MAX_VALUE;
+        for (Map.Entry<K, Long> entry : pending.entrySet()) {
+            long deadline = entry.getValue();
+            if (deadline - now <= 0) {
+                // Only remove when the key was not submitted again in the meantime
+                if (pending.remove(entry.getKey(), deadline)) {
+                    due.add(entry.getKey());
+                }
+            } else if (deadline < nextDeadline) {
+                nextDeadline = deadline;
+            }
+        }
+
+        flush(due);
+
+        if (nextDeadline != Long.MAX_VALUE) {
+            scheduleFlush(Math.max(0, nextDeadline - now));
+        }
+    }
+
+    /**
+     * Flushes every pending key immediately, regardless of its debounce window.
+     */
+    public void flushAll() {
+        List<K> all = new ArrayList<>();
+        for (K key : pending.keySet()) {
+            if (pending.remove(key) != null) {
+                all.add(key);
+            }
+        }
+        flush(all);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getFlushedCount() {
+        return flushedCount.get();
+    }
+
+    @Override
+    public void close() {
+        flushAll();
+        scheduler.shutdown();
+    }
+
+    private void flush(List<K> keys) {
+        for (int start = 0; start < keys.size(); start += maxBatchSize) {
+            List<K> batch = List.copyOf(keys.subList(start, Math.min(start + maxBatchSize, keys.size())));
+            try {
+                flushHandler.accept(batch);
+                flushedCount.addAndGet(batch.size());
+            } catch (Exception ex) {
+                log.error("Flushing {} coalesced item(s) failed", batch.size(), ex);
+            }
+        }
+    }
+
+    private void scheduleFlush(long delayNanos) {
+        if (flushScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::flushDue, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -1,10 +1,16 @@
 package nhl.stenden.spoordock.controllers;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -21,7 +27,11 @@ import io.swagger.v3.oas.annotations.Parameter;
 import nhl.stenden.spoordock.controllers.dtos.ai.ChatRequest;
 import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
 import nhl.stenden.spoordock.llmService.ChunkReceivedEventArgs;
+import nhl.stenden.spoordock.llmService.LlmStreamExecutor;
+import nhl.stenden.spoordock.llmService.ModelListCache;
 import nhl.stenden.spoordock.llmService.OllamaConnectorService;
+import nhl.stenden.spoordock.llmService.historyManager.HistoryMetrics;
+import nhl.stenden.spoordock.llmService.historyManager.IChatHistoryManager;
 
 @RestController
 @RequestMapping("/api/ai")
@@ -29,17 +39,23 @@ public class AiAgentController {
 
     private final LlmConfiguration llmConfiguration;
     private final OllamaConnectorService ollamaConnectorService;
+    private final LlmStreamExecutor streamExecutor;
+    private final ModelListCache modelListCache;
+    private final IChatHistoryManager chatHistoryManager;
     private final ObjectMapper  objectMapper = new ObjectMapper();
 
-    public AiAgentController(LlmConfiguration llmConfiguration, OllamaConnectorService ollamaConnectorService) {
+    public AiAgentController(LlmConfiguration llmConfiguration, OllamaConnectorService ollamaConnectorService, LlmStreamExecutor streamExecutor, ModelListCache modelListCache, IChatHistoryManager chatHistoryManager) {
         this.llmConfiguration = llmConfiguration;
         this.ollamaConnectorService = ollamaConnectorService;
+        this.streamExecutor = streamExecutor;
+        this.modelListCache = modelListCache;
+        this.chatHistoryManager = chatHistoryManager;
     }
 
     @GetMapping("models")
     public ResponseEntity<?> getAvailableModels() {
         try{
-            var availableModels = ollamaConnectorService.getAvailableModels();
+            var availableModels = modelListCache.getAvailableModels();
              return ResponseEntity.ok(
                 Map.of(
                     "availableModels", availableModels,
@@ -56,6 +72,12 @@ public class AiAgentController {
        
     }
 
+    @DeleteMapping("models/cache")
+    public ResponseEntity<Void> invalidateModelCache() {
+        modelListCache.invalidate();
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("analyse")
     public ResponseEntity<?> analyseEnvironment(
          @RequestHeader(value = "model", required = false) String model
@@ -66,16 +88,19 @@ public class AiAgentController {
                 ? llmConfiguration.getDefaultModel() 
                 : model;
 
-            var availableModels = ollamaConnectorService.getAvailableModels();
-            if (!availableModels.stream().anyMatch(m -> m.equals(selectedModel))) {
+            if (!modelListCache.isAvailable(selectedModel)) {
                 return ResponseEntity
                     .badRequest()
-                    .body("Model '" + selectedModel + "' is not available. Available models: " + availableModels);
+                    .body("Model '" + selectedModel + "' is not available. Available models: " + modelListCache.getAvailableModels());
             }
 
             final String message = "Analyze the current environment.";
             final SseEmitter emitter = new SseEmitter(0L); // No timeout, LLMs aren't that fast 
-            CompletableFuture.runAsync(() -> streamAnalysis(emitter, selectedModel, message));
+            CompletableFuture<Void> stream = streamExecutor.trySubmit(selectedModel, () -> streamAnalysis(emitter, selectedModel, message));
+            if (stream == null) {
+                return tooManyStreams(selectedModel);
+            }
+            completeWhenDone(emitter, stream);
             return ResponseEntity.ok(emitter);
         }  
         catch(Exception ex)
@@ -100,11 +125,10 @@ public class AiAgentController {
             ? llmConfiguration.getDefaultModel() 
             : model;
 
-        var availableModels = ollamaConnectorService.getAvailableModels();
-        if (!availableModels.stream().anyMatch(m -> m.equals(selectedModel))) {
+        if (!modelListCache.isAvailable(selectedModel)) {
             return ResponseEntity
                 .badRequest()
-                .body("Model '" + selectedModel + "' is not available. Available models: " + availableModels);
+                .body("Model '" + selectedModel + "' is not available. Available models: " + modelListCache.getAvailableModels());
         }
 
         final String message = chatRequest.getMessage();
@@ -115,28 +139,62 @@ public class AiAgentController {
         }
 
         final SseEmitter emitter = new SseEmitter(0L); // No timeout, LLMs aren't that fast 
-        CompletableFuture.runAsync(() -> streamResponse(emitter, id, selectedModel, message));
+        CompletableFuture<Void> stream = streamExecutor.trySubmit(selectedModel, () -> streamResponse(emitter, id, selectedModel, message));
+        if (stream == null) {
+            return tooManyStreams(selectedModel);
+        }
+        completeWhenDone(emitter, stream);
         return ResponseEntity.ok(emitter);
     }
+
+    @GetMapping("streams")
+    public ResponseEntity<List<LlmStreamExecutor.StreamMetrics>> getStreamMetrics() {
+        return ResponseEntity.ok(streamExecutor.getMetrics());
+    }
+
+    @GetMapping("history")
+    public ResponseEntity<HistoryMetrics> getHistoryMetrics() {
+        return ResponseEntity.ok(chatHistoryManager.getMetrics());
+    }
     
 
     
-    private void streamResponse(SseEmitter emitter, UUID id, String model, String message) {
-        try {
-            ollamaConnectorService.startChatWithToolsStream(id, message, model, text -> sendChunkEvent(emitter, text));
-            emitter.complete();
-        } catch (Exception e) {
-            emitter.completeWithError(e);
+    private CompletableFuture<Void> streamResponse(SseEmitter emitter, UUID id, String model, String message) {
+        if (llmConfiguration.getStreaming().isAsync()) {
+            return ollamaConnectorService.startChatWithToolsStreamAsync(id, message, model, text -> sendChunkEvent(emitter, text));
         }
+        ollamaConnectorService.startChatWithToolsStream(id, message, model, text -> sendChunkEvent(emitter, text));
+        return CompletableFuture.completedFuture(null);
     }
 
-    private void streamAnalysis(SseEmitter emitter, String model, String message) {
-        try {
-            ollamaConnectorService.startAnalysisStream(message, model, text -> sendChunkEvent(emitter, text));
-            emitter.complete();
-        } catch (Exception e) {
-            emitter.completeWithError(e);
+    private CompletableFuture<Void> streamAnalysis(SseEmitter emitter, String model, String message) {
+        if (llmConfiguration.getStreaming().isAsync()) {
+            return ollamaConnectorService.startAnalysisStreamAsync(message, model, text -> sendChunkEvent(emitter, text));
         }
+        ollamaConnectorService.startAnalysisStream(message, model, text -> sendChunkEvent(emitter, text));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private ResponseEntity<?> tooManyStreams(String model) {
+        return ResponseEntity
+            .status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, "5")
+            .body("Too many active streams for model '" + model + "', please try again later.");
+    }
+
+    // Sluit de SSE verbinding zodra de stream klaar of mislukt is, en breekt de stream af zodra de client weg is,
+    // zodat het slot van het model direct vrijkomt in plaats van pas wanneer Ollama klaar is
+    private void completeWhenDone(SseEmitter emitter, CompletableFuture<Void> stream) {
+        emitter.onCompletion(() -> stream.cancel(true));
+        emitter.onTimeout(() -> stream.cancel(true));
+        emitter.onError(ex -> stream.cancel(true));
+        stream.whenComplete((ignored, ex) -> {
+            if (ex != null) {
+                emitter.completeWithError(ex);
+            } else {
+                emitter.complete();
+            }
+        });
     }
 
     private void sendChunkEvent(SseEmitter emitter, ChunkReceivedEventArgs args) {
@@ -144,8 +202,10 @@ public class AiAgentController {
             String data = objectMapper.writeValueAsString(args);
             if (data == null) data = "";
             emitter.send(SseEmitter.event().data(data));
-        } catch (Exception e) {
+        } catch (IOException e) {
             emitter.completeWithError(e);
+            // Doorgooien stopt de stream: de line subscriber annuleert het verzoek aan Ollama en de future faalt
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -1,5 +1,7 @@
 package nhl.stenden.spoordock.controllers;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.UUID;
 
@@ -14,6 +16,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -21,22 +26,111 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
 import nhl.stenden.spoordock.controllers.dtos.BuildingPolygonDTO;
+import nhl.stenden.spoordock.controllers.dtos.common.BoundingBox;
 import nhl.stenden.spoordock.services.BuildingService;
+import nhl.stenden.spoordock.services.binary.WkbFeatureWriter;
 
 @RestController
 @RequestMapping("/api/buildings")
 public class BuildingController {
 
+    public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final BuildingService buildingService;
+    // De ObjectMapper van Spring, zodat NDJSON dezelfde instellingen (modules, datumformaat) gebruikt als de JSON endpoints
+    private final ObjectMapper objectMapper;
 
-    public BuildingController(BuildingService buildingService) {
+    public BuildingController(BuildingService buildingService, ObjectMapper objectMapper) {
         this.buildingService = buildingService;
+        this.objectMapper = objectMapper;
     }
 
+    /**
+     * Zonder {@code limit} wordt de volledige lijst teruggegeven (oude gedrag).
+     * Met {@code limit} (en optioneel {@code after}) wordt één keyset-pagina teruggegeven;
+     * de cursor voor de volgende pagina staat dan in de {@value #NEXT_CURSOR_HEADER} header.
+     */
     @GetMapping("list")
-    public ResponseEntity<List<BuildingPolygonDTO>> listBuildings(@RequestParam(name="embedTypes", defaultValue = "false") boolean embedTypes) {
-        var buildings = buildingService.getBuildingPolygons(embedTypes);
-        return ResponseEntity.ok(buildings);
+    public ResponseEntity<?> listBuildings(
+        @RequestParam(name="embedTypes", defaultValue = "false") boolean embedTypes,
+        @RequestParam(name="limit", required = false) Integer limit,
+        @RequestParam(name="after", required = false) UUID after
+    ) {
+        if(limit == null) {
+            if(after != null) {
+                return ResponseEntity
+                    .badRequest()
+                    .body("Parameter 'after' can only be used together with 'limit'");
+            }
+            List<BuildingPolygonDTO> buildings = buildingService.getBuildingPolygons(embedTypes);
+            return ResponseEntity.ok(buildings);
+        }
+
+        if(limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity
+                .badRequest()
+                .body("Parameter 'limit' must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        var page = buildingService.getBuildingPolygonsPage(after, limit, embedTypes);
+        var response = ResponseEntity.ok();
+        if(page.hasNext() && page.hasContent()) {
+            var content = page.getContent();
+            response.header(NEXT_CURSOR_HEADER, content.get(content.size() - 1).getBuildingId().toString());
+        }
+        return response.body(page.getContent());
+    }
+
+    /**
+     * Streamt alle gebouwen als NDJSON (één JSON object per regel).
+     * Wordt gekozen wanneer de client {@code Accept: application/x-ndjson} meestuurt.
+     * Gebouwtypes worden altijd meegestuurd, net als bij de gewone lijst.
+     */
+    @GetMapping(value = "list", produces = NDJSON_MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> streamBuildings() {
+        StreamingResponseBody body = out -> buildingService.streamBuildingPolygons(building -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(building));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        return ResponseEntity.ok()
+            .header("Content-Type", NDJSON_MEDIA_TYPE)
+            .body(body);
+    }
+
+    /**
+     * Streamt alle gebouwen in een compact binair formaat met de geometrie als WKB.
+     * Wordt gekozen wanneer de client {@code Accept: application/octet-stream} meestuurt;
+     * het formaat staat beschreven in {@link WkbFeatureWriter}.
+     */
+    @GetMapping(value = "list", produces = WkbFeatureWriter.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> streamBuildingsAsWkb() {
+        StreamingResponseBody body = buildingService::writeBuildingPolygonsAsWkb;
+
+        return ResponseEntity.ok()
+            .header("Content-Type", WkbFeatureWriter.MEDIA_TYPE)
+            .body(body);
+    }
+
+    /**
+     * Haalt alleen de gebouwen op binnen de viewport van de client.
+     * Voorbeeld: /api/buildings/bbox?minX=5.77&minY=53.19&maxX=5.79&maxY=53.20
+     */
+    @GetMapping("bbox")
+    public ResponseEntity<?> listBuildingsInBoundingBox(BoundingBox bbox) {
+        if(!bbox.isValid()) {
+            return ResponseEntity
+                .badRequest()
+                .body("A valid bounding box (minX, minY, maxX, maxY in WGS84 degrees) is required");
+        }
+
+        return ResponseEntity.ok(buildingService.getBuildingPolygonsInBoundingBox(bbox));
     }
 
     @PostMapping("building")
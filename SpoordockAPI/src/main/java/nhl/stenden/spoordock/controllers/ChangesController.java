@@ -0,0 +1,35 @@
+package nhl.stenden.spoordock.controllers;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.swagger.v3.oas.annotations.Operation;
+import nhl.stenden.spoordock.services.ChangeFeedService;
+
+@RestController
+@RequestMapping("/api/changes")
+public class ChangesController {
+
+    private final ChangeFeedService changeFeedService;
+
+    public ChangesController(ChangeFeedService changeFeedService) {
+        this.changeFeedService = changeFeedService;
+    }
+
+    @Operation(summary = "Stream van wijzigingen aan gebouwen en wegen (Server-Sent Events)")
+    @GetMapping(value = "stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges() {
+        return changeFeedService.subscribe();
+    }
+
+    /*SSE EVENT javascript code
+        const source = new EventSource('/api/changes/stream');
+        source.addEventListener('building.updated', e => {
+            const change = JSON.parse(e.data);
+            // change.sequence, change.featureId, change.data (BuildingPolygonDTO)
+        });
+    */
+}
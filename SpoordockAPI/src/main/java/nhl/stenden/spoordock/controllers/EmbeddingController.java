@@ -0,0 +1,66 @@
+package nhl.stenden.spoordock.controllers;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import nhl.stenden.spoordock.controllers.dtos.EmbeddingStatsDTO;
+import nhl.stenden.spoordock.controllers.dtos.ReindexProgressDTO;
+import nhl.stenden.spoordock.services.BuildingEmbeddingService;
+import nhl.stenden.spoordock.services.reindex.EmbeddingReindexService;
+
+/**
+ * REST controller voor de status van de gebouw embeddings en het opnieuw opbouwen ervan.
+ */
+@RestController
+@RequestMapping("/api/embeddings")
+@Tag(name = "Embeddings", description = "Status van de gebouw embeddings")
+public class EmbeddingController {
+
+    private final BuildingEmbeddingService buildingEmbeddingService;
+    private final EmbeddingReindexService embeddingReindexService;
+
+    public EmbeddingController(BuildingEmbeddingService buildingEmbeddingService, EmbeddingReindexService embeddingReindexService) {
+        this.buildingEmbeddingService = buildingEmbeddingService;
+        this.embeddingReindexService = embeddingReindexService;
+    }
+
+    @GetMapping("stats")
+    @Operation(summary = "Aantal overgeslagen (hit) en uitgevoerde (miss) embeddings")
+    public ResponseEntity<EmbeddingStatsDTO> getStats() {
+        return ResponseEntity.ok(buildingEmbeddingService.getStats());
+    }
+
+    @PostMapping("reindex")
+    @Operation(summary = "Start het opnieuw embedden van alle gebouwen (409 als er al een job loopt)")
+    public ResponseEntity<?> startReindex(@RequestParam(name = "force", defaultValue = "false") boolean force) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(embeddingReindexService.start(force));
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+        }
+    }
+
+    @GetMapping("reindex")
+    @Operation(summary = "Voortgang en doorvoer van de laatste re-index job")
+    public ResponseEntity<ReindexProgressDTO> getReindexProgress() {
+        return embeddingReindexService.getProgress()
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("reindex/cancel")
+    @Operation(summary = "Stop de lopende re-index job na de huidige pagina")
+    public ResponseEntity<String> cancelReindex() {
+        if (!embeddingReindexService.cancel()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Er loopt geen re-index job");
+        }
+        return ResponseEntity.accepted().build();
+    }
+}
@@ -1,8 +1,10 @@
 package nhl.stenden.spoordock.controllers;
 
 import nhl.stenden.spoordock.controllers.dtos.RoadSegmentDTO;
+import nhl.stenden.spoordock.controllers.dtos.common.BoundingBox;
 import nhl.stenden.spoordock.database.RoadTypeRepository;
 import nhl.stenden.spoordock.services.RoadService;
+import nhl.stenden.spoordock.services.binary.WkbFeatureWriter;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -12,6 +14,7 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -30,6 +33,25 @@ public class RoadSegmentController {
         return roadService.getRoadDTOs();
     }
 
+    // Binair formaat met WKB geometrie (zie WkbFeatureWriter), bij Accept: application/octet-stream
+    @GetMapping(value = "list", produces = WkbFeatureWriter.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> getRoadsAsWkb() {
+        StreamingResponseBody body = roadService::writeRoadSegmentsAsWkb;
+        return ResponseEntity.ok()
+            .header("Content-Type", WkbFeatureWriter.MEDIA_TYPE)
+            .body(body);
+    }
+
+    // Alleen de wegen binnen de viewport, bv. /api/roads/bbox?minX=5.77&minY=53.19&maxX=5.79&maxY=53.20
+    @GetMapping("bbox")
+    public ResponseEntity<?> getRoadsInBoundingBox(BoundingBox bbox) {
+        if (!bbox.isValid()) {
+            return ResponseEntity.status(400).body("A valid bounding box (minX, minY, maxX, maxY in WGS84 degrees) is required");
+        }
+
+        return ResponseEntity.ok(roadService.getRoadDTOsInBoundingBox(bbox));
+    }
+
     @PostMapping
     public ResponseEntity<?> addRoad(@RequestBody RoadSegmentDTO roadSegmentDTO) {
         if (roadSegmentDTO == null) {
@@ -76,8 +98,12 @@ public class RoadSegmentController {
             return ResponseEntity.status(400).body("RoadSegmentDTO ID cannot be null");
         }
 
-        roadService.deleteRoadSegment(roadSegmentDTO);
-        return ResponseEntity.status(200).body("Road segment deleted successfully");
+        try {
+            roadService.deleteRoadSegment(roadSegmentDTO);
+            return ResponseEntity.status(200).body("Road segment deleted successfully");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404).body(e.getMessage());
+        }
     }
 
 }
\ No newline at end of file
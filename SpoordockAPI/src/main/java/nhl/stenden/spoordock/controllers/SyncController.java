@@ -0,0 +1,36 @@
+package nhl.stenden.spoordock.controllers;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import nhl.stenden.spoordock.services.SyncService;
+
+@RestController
+@RequestMapping("/api/sync")
+public class SyncController {
+
+    private final SyncService syncService;
+
+    public SyncController(SyncService syncService) {
+        this.syncService = syncService;
+    }
+
+    @Operation(summary = "Haal alleen de gebouwen en wegen op die sinds een versie gewijzigd of verwijderd zijn")
+    @GetMapping
+    public ResponseEntity<?> sync(
+        @Parameter(description = "Versie uit het vorige sync antwoord of het laatste change feed event; weglaten voor een volledige snapshot")
+        @RequestParam(name = "since", required = false) Long since
+    ) {
+        if (since != null && since < 0) {
+            return ResponseEntity
+                .badRequest()
+                .body("since mag niet negatief zijn");
+        }
+        return ResponseEntity.ok(syncService.getChangesSince(since));
+    }
+}
@@ -0,0 +1,29 @@
+package nhl.stenden.spoordock.controllers.dtos;
+
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import nhl.stenden.spoordock.services.events.ChangeType;
+import nhl.stenden.spoordock.services.events.FeatureType;
+
+/**
+ * Eén wijziging in de change feed (/api/changes/stream).
+ * Clients passen de wijziging toe op hun lokale kopie in plaats van alles opnieuw op te halen.
+ */
+@Getter
+@AllArgsConstructor
+public class ChangeEventDTO {
+
+    // Versie uit het wijzigingslogboek; oplopend, dus een client kan hiermee gemiste of dubbele events herkennen
+    // en na een reconnect via /api/sync?since=<sequence> bijwerken
+    private final long sequence;
+
+    private final FeatureType featureType;
+
+    private final ChangeType changeType;
+    private final UUID featureId;
+
+    // BuildingPolygonDTO of RoadSegmentDTO met de nieuwe toestand; null bij een delete
+    private final Object data;
+}
@@ -0,0 +1,27 @@
+package nhl.stenden.spoordock.controllers.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Tellers van de embedding cache (geheugen en optionele database laag).
+ */
+@Getter
+@AllArgsConstructor
+public class EmbeddingCacheStatsDTO {
+
+    private final long memoryHits;
+    private final long databaseHits;
+
+    // Teksten die door Ollama ge-embed moesten worden
+    private final long misses;
+
+    private final int size;
+    private final int maxEntries;
+    private final boolean databaseTier;
+
+    public double getHitRate() {
+        long total = memoryHits + databaseHits + misses;
+        return total == 0 ? 0.0 : (double) (memoryHits + databaseHits) / total;
+    }
+}
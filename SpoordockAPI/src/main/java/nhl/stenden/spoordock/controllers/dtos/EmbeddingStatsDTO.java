@@ -0,0 +1,31 @@
+package nhl.stenden.spoordock.controllers.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Tellers van de gebouw embeddings, zie /api/embeddings/stats.
+ */
+@Getter
+@AllArgsConstructor
+public class EmbeddingStatsDTO {
+
+    // Gebouwen waarvan de tekst niet gewijzigd was, er is geen aanroep naar Ollama gedaan
+    private final long hits;
+
+    // Gebouwen die daadwerkelijk (opnieuw) ge-embed zijn
+    private final long misses;
+
+    // Gebouwen die nog in de debounce wachtrij staan
+    private final int pending;
+
+    // Wijzigingen die samengevoegd zijn met een wijziging die al in de wachtrij stond
+    private final long coalesced;
+
+    private final EmbeddingCacheStatsDTO cache;
+
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,43 @@
+package nhl.stenden.spoordock.controllers.dtos;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import nhl.stenden.spoordock.services.reindex.ReindexStatus;
+
+/**
+ * Voortgang van een re-index job, zie /api/embeddings/reindex.
+ */
+@Getter
+@AllArgsConstructor
+public class ReindexProgressDTO {
+
+    private final UUID jobId;
+    private final ReindexStatus status;
+    private final String embeddingModel;
+    private final int embeddingDimensions;
+    private final boolean force;
+
+    // Aantal gebouwen bij de start van de job
+    private final long total;
+
+    // Verwerkte gebouwen, inclusief de overgeslagen gebouwen
+    private final long processed;
+
+    // Gebouwen waarvan de embedding al actueel was
+    private final long skipped;
+
+    // Verwerkte gebouwen per seconde sinds de (her)start van de job in deze applicatie
+    private final double itemsPerSecond;
+
+    private final String error;
+    private final OffsetDateTime startedAt;
+    private final OffsetDateTime updatedAt;
+    private final OffsetDateTime finishedAt;
+
+    public double getPercentage() {
+        return total == 0 ? 100.0 : Math.min(100.0, 100.0 * processed / total);
+    }
+}
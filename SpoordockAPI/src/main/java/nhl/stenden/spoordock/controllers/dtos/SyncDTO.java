@@ -0,0 +1,29 @@
+package nhl.stenden.spoordock.controllers.dtos;
+
+import java.util.List;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Antwoord van /api/sync: alle features die sinds de opgegeven versie zijn aangemaakt,
+ * gewijzigd of verwijderd. De client bewaart {@code version} en geeft die de volgende keer mee als {@code since}.
+ */
+@Getter
+@AllArgsConstructor
+public class SyncDTO {
+
+    // Versie tot en met welke deze delta de wijzigingen bevat
+    private final long version;
+
+    // true als dit een volledige snapshot is (geen since opgegeven); de client vervangt dan alles
+    private final boolean full;
+
+    private final List<BuildingPolygonDTO> buildings;
+    private final List<RoadSegmentDTO> roads;
+
+    // Tombstones: IDs van verwijderde features
+    private final List<UUID> deletedBuildingIds;
+    private final List<UUID> deletedRoadIds;
+}
@@ -0,0 +1,32 @@
+package nhl.stenden.spoordock.controllers.dtos.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Bounding box in WGS84 (EPSG:4326) graden, zoals de Cesium viewport die aanlevert.
+ * Wordt gebonden vanuit de query parameters minX, minY, maxX en maxY.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BoundingBox {
+
+    private Double minX;
+    private Double minY;
+    private Double maxX;
+    private Double maxY;
+
+    public boolean isValid() {
+        if (minX == null || minY == null || maxX == null || maxY == null) {
+            return false;
+        }
+        if (minX > maxX || minY > maxY) {
+            return false;
+        }
+        return minX >= -180 && maxX <= 180 && minY >= -90 && maxY <= 90;
+    }
+}
@@ -0,0 +1,100 @@
+package nhl.stenden.spoordock.controllers.dtos.common;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Read-only List&lt;Coordinate&gt; view op de CoordinateSequence(s) van een JTS geometrie.
+ *
+ * De coördinaten worden niet gekopieerd: JSON wordt door {@link CoordinateSequenceSerializer}
+ * rechtstreeks uit de sequence geschreven, en {@link #get(int)} maakt alleen een Coordinate aan
+ * voor code die er echt één nodig heeft. Bij een polygoon worden de ringen achter elkaar gezet
+ * (buitenring eerst), in dezelfde volgorde als {@code Polygon.getCoordinates()}.
+ */
+@JsonSerialize(using = CoordinateSequenceSerializer.class)
+public class CoordinateSequenceList extends AbstractList<Coordinate> implements RandomAccess {
+
+    private final CoordinateSequence[] sequences;
+    private final int size;
+
+    private CoordinateSequenceList(CoordinateSequence... sequences) {
+        this.sequences = sequences;
+        int total = 0;
+        for (CoordinateSequence sequence : sequences) {
+            total += sequence.size();
+        }
+        this.size = total;
+    }
+
+    public static CoordinateSequenceList of(LineString lineString) {
+        return new CoordinateSequenceList(lineString.getCoordinateSequence());
+    }
+
+    public static CoordinateSequenceList of(Polygon polygon) {
+        if (polygon.isEmpty()) {
+            return new CoordinateSequenceList();
+        }
+
+        var sequences = new CoordinateSequence[polygon.getNumInteriorRing() + 1];
+        sequences[0] = polygon.getExteriorRing().getCoordinateSequence();
+        for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+            sequences[i + 1] = polygon.getInteriorRingN(i).getCoordinateSequence();
+        }
+        return new CoordinateSequenceList(sequences);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Coordinate get(int index) {
+        return new Coordinate(getX(index), getY(index), getZ(index));
+    }
+
+    public double getX(int index) {
+        return getOrdinate(index, CoordinateSequence.X);
+    }
+
+    public double getY(int index) {
+        return getOrdinate(index, CoordinateSequence.Y);
+    }
+
+    public double getZ(int index) {
+        return getOrdinate(index, CoordinateSequence.Z);
+    }
+
+    /**
+     * Geeft de onderliggende sequences terug, zodat serializers zonder index-vertaling kunnen itereren.
+     */
+    CoordinateSequence[] getSequences() {
+        return sequences;
+    }
+
+    private double getOrdinate(int index, int ordinate) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+
+        // Bijna altijd is er maar één ring; dan wordt de eerste sequence direct gebruikt
+        int offset = index;
+        for (CoordinateSequence sequence : sequences) {
+            if (offset < sequence.size()) {
+                return switch (ordinate) {
+                    case CoordinateSequence.X -> sequence.getX(offset);
+                    case CoordinateSequence.Y -> sequence.getY(offset);
+                    default -> sequence.getZ(offset);
+                };
+            }
+            offset -= sequence.size();
+        }
+        throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+    }
+}
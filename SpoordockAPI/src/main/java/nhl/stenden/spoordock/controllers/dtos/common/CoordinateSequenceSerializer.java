@@ -0,0 +1,38 @@
+package nhl.stenden.spoordock.controllers.dtos.common;
+
+import java.io.IOException;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Schrijft een {@link CoordinateSequenceList} direct uit de JTS CoordinateSequence naar JSON,
+ * zonder tussenliggende Coordinate objecten. Het resultaat is gelijk aan dat van een List&lt;Coordinate&gt;:
+ * {@code [{"x":..,"y":..,"z":..}, ...]}.
+ */
+public class CoordinateSequenceSerializer extends StdSerializer<CoordinateSequenceList> {
+
+    private static final long serialVersionUID = 1L;
+
+    public CoordinateSequenceSerializer() {
+        super(CoordinateSequenceList.class);
+    }
+
+    @Override
+    public void serialize(CoordinateSequenceList value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartArray(value, value.size());
+        for (CoordinateSequence sequence : value.getSequences()) {
+            for (int i = 0; i < sequence.size(); i++) {
+                gen.writeStartObject();
+                gen.writeNumberField("x", sequence.getX(i));
+                gen.writeNumberField("y", sequence.getY(i));
+                gen.writeNumberField("z", sequence.getZ(i));
+                gen.writeEndObject();
+            }
+        }
+        gen.writeEndArray();
+    }
+}
@@ -1,11 +1,17 @@
 package nhl.stenden.spoordock.database;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 
 import org.locationtech.jts.geom.Polygon;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
+
 import nhl.stenden.spoordock.database.entities.BuildingPolygonEmbeddingEntity;
+import nhl.stenden.spoordock.database.projections.EmbeddingFingerprint;
 
 public interface BuildingPolygonEmbeddingRepository extends ListCrudRepository<BuildingPolygonEmbeddingEntity, java.util.UUID> {
 
@@ -32,4 +38,32 @@ public interface BuildingPolygonEmbeddingRepository extends ListCrudRepository<B
     )
     List<BuildingPolygonEmbeddingEntity> promptBuildingsInZone(float[] query, Polygon zone, int limit);
 
+    /**
+     * Zet een (pgvector) instelling zoals hnsw.ef_search alleen voor de huidige transactie.
+     * Moet binnen dezelfde transactie als de zoekopdracht aangeroepen worden, anders heeft het geen effect.
+     */
+    @Query(value = "select set_config(:name, :value, true)", nativeQuery = true)
+    String setLocalSearchSetting(@Param("name") String name, @Param("value") String value);
+
+    /**
+     * Keyset-paginatie over alle embeddings, gesorteerd op gebouw-ID. Gebruikt voor het vullen van de index in het geheugen.
+     */
+    @Query("select bpe from BuildingPolygonEmbeddingEntity bpe where bpe.embedding is not null and bpe.buildingId > :after order by bpe.buildingId")
+    List<BuildingPolygonEmbeddingEntity> findEmbeddingPageAfter(@Param("after") UUID after, Pageable pageable);
+
+    /**
+     * Haalt de hash, het model en de dimensies van de opgeslagen embeddings op, zonder de vectoren te laden.
+     */
+    @Query(
+        value = """
+            select bpe.polygon_id as "buildingId",
+                   bpe.source_hash as "sourceHash",
+                   bpe.embedding_model as "embeddingModel",
+                   bpe.embedding_dimensions as "embeddingDimensions"
+            from polygon_embeddings bpe
+            where bpe.polygon_id in (:ids)
+            """,
+        nativeQuery = true)
+    List<EmbeddingFingerprint> findFingerprintsByBuildingIds(@Param("ids") Collection<UUID> ids);
+
 }
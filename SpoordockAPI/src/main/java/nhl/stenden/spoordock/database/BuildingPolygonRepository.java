@@ -1,15 +1,24 @@
 package nhl.stenden.spoordock.database;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.ListCrudRepository;
 import org.springframework.data.repository.query.Param;
 
+import jakarta.persistence.QueryHint;
+
 import nhl.stenden.spoordock.database.entities.BuildingPolygonEntity;
+import nhl.stenden.spoordock.database.projections.BuildingTypeStatistics;
 
 public interface BuildingPolygonRepository extends ListCrudRepository<BuildingPolygonEntity, UUID> {
 
@@ -26,12 +35,104 @@ public interface BuildingPolygonRepository extends ListCrudRepository<BuildingPo
     Optional<BuildingPolygonEntity> findByIdIncludingBuildingType(@Param("id") UUID id);
 
     /**
-     * Haalt alle gebouw-IDs op met hun oppervlakte in vierkante meters berekend door PostGIS.
-     * Gebruikt ST_Area met geography cast voor nauwkeurige berekening op geodetische coördinaten.
-     * 
-     * @return Lijst van Object[] arrays waarbij [0] = UUID (building ID) en [1] = Double (area in m²)
+     * Haalt meerdere gebouwen op inclusief het gebouwtype, voor het embedden in batches.
+     */
+    @EntityGraph(attributePaths = "buildingType")
+    @Query("select bp from BuildingPolygonEntity bp where bp.buildingId in :ids")
+    List<BuildingPolygonEntity> findAllByIdIncludingBuildingType(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Eerste pagina voor keyset-paginatie, gesorteerd op ID.
+     * Spring Data haalt één extra rij op om te bepalen of er nog een volgende pagina is.
+     */
+    @EntityGraph(attributePaths = "buildingType")
+    @Query("select bp from BuildingPolygonEntity bp order by bp.buildingId")
+    Slice<BuildingPolygonEntity> findFirstPageIncludingBuildingType(Pageable pageable);
+
+    /**
+     * Volgende pagina voor keyset-paginatie: alle gebouwen met een ID groter dan de cursor.
+     * In tegenstelling tot OFFSET blijft dit even snel, ongeacht hoe ver de client al is.
      */
-    @Query(value = "SELECT id, ST_Area(punten::geography) as area_m2 FROM polygones", nativeQuery = true)
-    List<Object[]> findAllBuildingAreasInSquareMeters();
+    @EntityGraph(attributePaths = "buildingType")
+    @Query("select bp from BuildingPolygonEntity bp where bp.buildingId > :after order by bp.buildingId")
+    Slice<BuildingPolygonEntity> findPageAfterIncludingBuildingType(@Param("after") UUID after, Pageable pageable);
+
+    /**
+     * Zelfde als {@link #findFirstPageIncludingBuildingType(Pageable)}, zonder het gebouwtype mee te laden.
+     */
+    @Query("select bp from BuildingPolygonEntity bp order by bp.buildingId")
+    Slice<BuildingPolygonEntity> findFirstPage(Pageable pageable);
+
+    /**
+     * Zelfde als {@link #findPageAfterIncludingBuildingType(UUID, Pageable)}, zonder het gebouwtype mee te laden.
+     */
+    @Query("select bp from BuildingPolygonEntity bp where bp.buildingId > :after order by bp.buildingId")
+    Slice<BuildingPolygonEntity> findPageAfter(@Param("after") UUID after, Pageable pageable);
+
+    /**
+     * Streamt alle gebouwen (inclusief gebouwtype) via een server-side cursor.
+     * Moet binnen een (read-only) transactie worden geconsumeerd en gesloten.
+     */
+    @EntityGraph(attributePaths = "buildingType")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select bp from BuildingPolygonEntity bp order by bp.buildingId")
+    Stream<BuildingPolygonEntity> streamAllIncludingBuildingType();
+
+    /**
+     * Haalt alle gebouwen op die (deels) binnen de opgegeven bounding box (WGS84) vallen.
+     * De {@code &&} operator filtert eerst op bounding box via de GiST index op {@code punten},
+     * daarna controleert ST_Intersects de exacte geometrie.
+     */
+    @Query(
+        value = """
+            select p.* from polygones p
+            where p.punten && ST_MakeEnvelope(:minX, :minY, :maxX, :maxY, 4326)
+              and ST_Intersects(p.punten, ST_MakeEnvelope(:minX, :minY, :maxX, :maxY, 4326))
+            """,
+        nativeQuery = true)
+    List<BuildingPolygonEntity> findAllInBoundingBox(
+        @Param("minX") double minX, @Param("minY") double minY,
+        @Param("maxX") double maxX, @Param("maxY") double maxY);
+
+    /**
+     * Streamt alle gebouwen met de geometrie als WKB (ST_AsBinary), voor het binaire transportformaat.
+     * Er wordt geen JTS geometrie opgebouwd.
+     *
+     * @return Stream van Object[] arrays: [0] = UUID (gebouw), [1] = UUID (gebouwtype), [2] = hoogte,
+     *         [3] = naam, [4] = omschrijving, [5] = byte[] (WKB)
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(
+        value = "select id, gebouwtype, hoogte, naam, omschrijving, ST_AsBinary(punten) from polygones order by id",
+        nativeQuery = true)
+    Stream<Object[]> streamAllAsWkb();
+
+    /**
+     * Berekent de statistieken per gebouwtype volledig in de database (GROUP BY).
+     * Gebruikt de opgeslagen oppervlakte en volume kolommen en de covering index op gebouwtype,
+     * zodat er geen geometrie naar de applicatie gestuurd wordt: één rij per gebouwtype.
+     */
+    @Query(value = STATISTICS_PER_BUILDING_TYPE + " GROUP BY gebouwtype", nativeQuery = true)
+    List<BuildingTypeStatistics> findStatisticsPerBuildingType();
+
+    /**
+     * Zelfde als {@link #findStatisticsPerBuildingType()}, maar alleen voor de opgegeven gebouwtypes.
+     * Wordt gebruikt om na een wijziging alleen de betrokken gebouwtypes opnieuw te berekenen.
+     */
+    @Query(value = STATISTICS_PER_BUILDING_TYPE + " WHERE gebouwtype IN (:typeIds) GROUP BY gebouwtype", nativeQuery = true)
+    List<BuildingTypeStatistics> findStatisticsForBuildingTypes(@Param("typeIds") Collection<UUID> typeIds);
+
+    // Aliassen tussen quotes, anders maakt PostgreSQL er kleine letters van en matcht de projectie niet
+    String STATISTICS_PER_BUILDING_TYPE = """
+        SELECT gebouwtype AS "buildingTypeId",
+               count(*) AS "buildingCount",
+               coalesce(sum(oppervlakte), 0) AS "totalArea",
+               coalesce(sum(volume), 0) AS "totalVolume",
+               sum(hoogte) AS "totalHeight",
+               min(hoogte) AS "minHeight",
+               max(hoogte) AS "maxHeight",
+               avg(hoogte) AS "averageHeight"
+        FROM polygones
+        """;
 
 }
@@ -2,10 +2,17 @@ package nhl.stenden.spoordock.database;
 
 import java.util.UUID;
 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.ListCrudRepository;
 
 import nhl.stenden.spoordock.database.entities.BuildingTypeEntity;
 
 public interface BuildingTypeRepository extends ListCrudRepository<BuildingTypeEntity, UUID> {
-    
+
+    /**
+     * Vingerafdruk (md5) van de inhoud van alle gebouwtypes. Verandert zodra er een gebouwtype
+     * toegevoegd, verwijderd of aangepast is, ook als dat direct in de database gebeurt.
+     */
+    @Query(value = "select md5(coalesce(string_agg(t::text, ',' order by t.id), '')) from gebouwtypes t", nativeQuery = true)
+    String findContentHash();
 }
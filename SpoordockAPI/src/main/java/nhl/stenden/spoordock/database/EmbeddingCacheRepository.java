@@ -0,0 +1,32 @@
+package nhl.stenden.spoordock.database;
+
+import java.time.OffsetDateTime;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import nhl.stenden.spoordock.database.entities.EmbeddingCacheEntity;
+
+public interface EmbeddingCacheRepository extends ListCrudRepository<EmbeddingCacheEntity, String> {
+
+    // Verwijdert in één statement, zonder de vectoren eerst te laden
+    @Modifying
+    @Transactional
+    @Query("delete from EmbeddingCacheEntity e where e.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") OffsetDateTime cutoff);
+
+    // Houdt de nieuwste maxEntries rijen over
+    @Modifying
+    @Transactional
+    @Query(
+        value = """
+            DELETE FROM embedding_cache WHERE cache_key IN (
+                SELECT cache_key FROM embedding_cache ORDER BY created_at DESC OFFSET :maxEntries
+            )
+            """,
+        nativeQuery = true)
+    int deleteAllButNewest(@Param("maxEntries") int maxEntries);
+}
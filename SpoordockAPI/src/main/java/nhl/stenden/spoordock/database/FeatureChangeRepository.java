@@ -0,0 +1,40 @@
+package nhl.stenden.spoordock.database;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import nhl.stenden.spoordock.database.entities.FeatureChangeEntity;
+import nhl.stenden.spoordock.services.events.FeatureType;
+
+public interface FeatureChangeRepository extends ListCrudRepository<FeatureChangeEntity, Long> {
+
+    @Query("select coalesce(max(fc.version), 0) from FeatureChangeEntity fc")
+    long findLatestVersion();
+
+    @Query("select count(fc) from FeatureChangeEntity fc where fc.featureType = :featureType and fc.version > :since")
+    long countChangesAfter(@Param("featureType") FeatureType featureType, @Param("since") long since);
+
+    /**
+     * Neemt een advisory lock die tot het einde van de huidige transactie wordt vastgehouden.
+     * Zie {@code FeatureChangeService.recordChange} voor waarom het logboek deze lock nodig heeft.
+     */
+    @Query(value = "select 1 from pg_advisory_xact_lock(:key)", nativeQuery = true)
+    int lockForAppend(@Param("key") long key);
+
+    /**
+     * Geeft per feature alleen de laatste wijziging binnen (since, until] terug.
+     * Een feature die drie keer gewijzigd is, komt dus maar één keer mee.
+     */
+    @Query(
+        value = """
+            select distinct on (feature_type, feature_id) *
+            from feature_changes
+            where version > :since and version <= :until
+            order by feature_type, feature_id, version desc
+            """,
+        nativeQuery = true)
+    List<FeatureChangeEntity> findLatestChangesBetween(@Param("since") long since, @Param("until") long until);
+}
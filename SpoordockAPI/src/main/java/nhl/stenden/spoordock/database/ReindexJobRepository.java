@@ -0,0 +1,16 @@
+package nhl.stenden.spoordock.database;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.repository.ListCrudRepository;
+
+import nhl.stenden.spoordock.database.entities.ReindexJobEntity;
+import nhl.stenden.spoordock.services.reindex.ReindexStatus;
+
+public interface ReindexJobRepository extends ListCrudRepository<ReindexJobEntity, UUID> {
+
+    Optional<ReindexJobEntity> findFirstByOrderByStartedAtDesc();
+
+    Optional<ReindexJobEntity> findFirstByStatusOrderByStartedAtDesc(ReindexStatus status);
+}
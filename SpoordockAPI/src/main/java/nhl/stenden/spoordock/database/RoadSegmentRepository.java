@@ -1,12 +1,39 @@
 package nhl.stenden.spoordock.database;
 
+import jakarta.persistence.QueryHint;
 import nhl.stenden.spoordock.database.entities.RoadSegment;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface RoadSegmentRepository extends ListCrudRepository<RoadSegment, UUID> {
 
     // ListCrudRepository ipv CrudRepo vanwege List functionaliteit
 
+    // Eerst && (bounding box, via de GiST index op points), daarna ST_Intersects voor de exacte check
+    @Query(
+        value = """
+            select w.* from wegsegmenten w
+            where w.points && ST_MakeEnvelope(:minX, :minY, :maxX, :maxY, 4326)
+              and ST_Intersects(w.points, ST_MakeEnvelope(:minX, :minY, :maxX, :maxY, 4326))
+            """,
+        nativeQuery = true)
+    List<RoadSegment> findAllInBoundingBox(
+        @Param("minX") double minX, @Param("minY") double minY,
+        @Param("maxX") double maxX, @Param("maxY") double maxY);
+
+    // Geometrie als WKB (ST_AsBinary) voor het binaire transportformaat:
+    // [0] = UUID (wegsegment), [1] = UUID (wegtype), [2] = breedte, [3] = omschrijving, [4] = byte[] (WKB)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(
+        value = "select id, wegtype, breedte, omschrijving, ST_AsBinary(points) from wegsegmenten order by id",
+        nativeQuery = true)
+    Stream<Object[]> streamAllAsWkb();
+
 }
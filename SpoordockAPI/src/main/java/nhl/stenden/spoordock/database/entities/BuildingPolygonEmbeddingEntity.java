@@ -40,4 +40,11 @@ public class BuildingPolygonEmbeddingEntity {
     @Column(name = "embedding_updated_at")
     private OffsetDateTime embeddingUpdatedAt;
 
+    // SHA-256 (hex) van embeddingSource, om ongewijzigde teksten niet opnieuw te embedden
+    @Column(name = "source_hash", length = 64)
+    private String sourceHash;
+
+    @Column(name = "embedding_dimensions")
+    private Integer embeddingDimensions;
+
 }
@@ -14,6 +14,8 @@ import jakarta.persistence.Table;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Generated;
+import org.hibernate.generator.EventType;
 import org.locationtech.jts.geom.Polygon;
 
 /**
@@ -55,6 +57,16 @@ public class BuildingPolygonEntity {
     @Column(name = "hoogte")
     private double height;
 
+    // Generated column: oppervlakte in m² (ST_Area op geography), berekend door de database
+    @Generated(event = {EventType.INSERT, EventType.UPDATE})
+    @Column(name = "oppervlakte", insertable = false, updatable = false)
+    private Double area;
+
+    // Generated column: volume in m³ (oppervlakte * hoogte), berekend door de database
+    @Generated(event = {EventType.INSERT, EventType.UPDATE})
+    @Column(name = "volume", insertable = false, updatable = false)
+    private Double volume;
+
     /**
      * Constructor voor het aanmaken van een nieuwe entity zonder ID.
      * De database genereert automatisch een UUID bij het opslaan.
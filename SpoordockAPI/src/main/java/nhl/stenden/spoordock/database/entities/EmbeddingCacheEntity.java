@@ -0,0 +1,38 @@
+package nhl.stenden.spoordock.database.entities;
+
+import java.time.OffsetDateTime;
+
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Eén vector in de database laag van de embedding cache.
+ * De sleutel is {@code model:dimensies:sha256(tekst)}, zodat dezelfde tekst altijd dezelfde rij vindt.
+ */
+@Entity
+@Table(name = "embedding_cache")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class EmbeddingCacheEntity {
+
+    @Id
+    @Column(name = "cache_key", length = 200, updatable = false, nullable = false)
+    private String cacheKey;
+
+    // Geen vaste lengte in de kolom, de cache kan vectoren van verschillende modellen bevatten
+    @JdbcTypeCode(SqlTypes.VECTOR)
+    @Column(name = "embedding", columnDefinition = "vector", nullable = false)
+    private float[] embedding;
+
+    @Column(name = "created_at", updatable = false, nullable = false)
+    private OffsetDateTime createdAt;
+}
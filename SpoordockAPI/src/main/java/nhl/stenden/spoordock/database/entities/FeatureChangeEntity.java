@@ -0,0 +1,55 @@
+package nhl.stenden.spoordock.database.entities;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import nhl.stenden.spoordock.services.events.ChangeType;
+import nhl.stenden.spoordock.services.events.FeatureType;
+
+/**
+ * Eén regel in het append-only wijzigingslogboek.
+ * De version is oplopend over alle features heen en dient als cursor voor /api/sync.
+ * Versies worden in commit-volgorde zichtbaar, zie {@code FeatureChangeService.recordChange}.
+ */
+@Entity
+@Table(name = "feature_changes")
+@NoArgsConstructor
+@Getter
+public class FeatureChangeEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "version", updatable = false, nullable = false)
+    private Long version;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "feature_type", updatable = false, nullable = false)
+    private FeatureType featureType;
+
+    @Column(name = "feature_id", updatable = false, nullable = false)
+    private UUID featureId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", updatable = false, nullable = false)
+    private ChangeType changeType;
+
+    @Column(name = "changed_at", updatable = false, nullable = false)
+    private OffsetDateTime changedAt;
+
+    public FeatureChangeEntity(FeatureType featureType, UUID featureId, ChangeType changeType) {
+        this.featureType = featureType;
+        this.featureId = featureId;
+        this.changeType = changeType;
+        this.changedAt = OffsetDateTime.now();
+    }
+}
@@ -0,0 +1,81 @@
+package nhl.stenden.spoordock.database.entities;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import nhl.stenden.spoordock.services.reindex.ReindexStatus;
+
+/**
+ * Voortgang van het opnieuw embedden van alle gebouwen.
+ * {@code lastBuildingId} is het checkpoint: alle gebouwen met een kleiner of gelijk ID zijn verwerkt.
+ */
+@Entity
+@Table(name = "embedding_reindex_jobs")
+@NoArgsConstructor
+@Getter
+@Setter
+public class ReindexJobEntity {
+
+    @Id
+    @Column(name = "job_id", updatable = false, nullable = false)
+    private UUID jobId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private ReindexStatus status;
+
+    @Column(name = "embedding_model", updatable = false, nullable = false)
+    private String embeddingModel;
+
+    @Column(name = "embedding_dimensions", updatable = false, nullable = false)
+    private int embeddingDimensions;
+
+    // true: ook gebouwen met een actuele embedding opnieuw embedden
+    @Column(name = "force", updatable = false, nullable = false)
+    private boolean force;
+
+    @Column(name = "last_building_id")
+    private UUID lastBuildingId;
+
+    @Column(name = "total", nullable = false)
+    private long total;
+
+    @Column(name = "processed", nullable = false)
+    private long processed;
+
+    // Gebouwen die verwerkt zijn zonder Ollama aanroep omdat de embedding al actueel was
+    @Column(name = "skipped", nullable = false)
+    private long skipped;
+
+    @Column(name = "error")
+    private String error;
+
+    @Column(name = "started_at", updatable = false, nullable = false)
+    private OffsetDateTime startedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private OffsetDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private OffsetDateTime finishedAt;
+
+    public ReindexJobEntity(String embeddingModel, int embeddingDimensions, boolean force, long total) {
+        this.jobId = UUID.randomUUID();
+        this.status = ReindexStatus.RUNNING;
+        this.embeddingModel = embeddingModel;
+        this.embeddingDimensions = embeddingDimensions;
+        this.force = force;
+        this.total = total;
+        this.startedAt = OffsetDateTime.now();
+        this.updatedAt = this.startedAt;
+    }
+}
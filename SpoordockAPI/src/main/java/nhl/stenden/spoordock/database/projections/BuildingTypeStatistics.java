@@ -0,0 +1,28 @@
+package nhl.stenden.spoordock.database.projections;
+
+import java.util.UUID;
+
+/**
+ * Projectie van de per-gebouwtype aggregaten uit de statistiekenquery.
+ * De aliassen in de query moeten exact overeenkomen met de getter namen.
+ */
+public interface BuildingTypeStatistics {
+
+    UUID getBuildingTypeId();
+
+    long getBuildingCount();
+
+    // Som van de oppervlaktes in m²
+    double getTotalArea();
+
+    // Som van de volumes in m³
+    double getTotalVolume();
+
+    double getTotalHeight();
+
+    double getMinHeight();
+
+    double getMaxHeight();
+
+    double getAverageHeight();
+}
@@ -0,0 +1,18 @@
+package nhl.stenden.spoordock.database.projections;
+
+import java.util.UUID;
+
+/**
+ * Projectie van een opgeslagen embedding zonder de vector zelf.
+ * Genoeg om te bepalen of een gebouw opnieuw ge-embed moet worden.
+ */
+public interface EmbeddingFingerprint {
+
+    UUID getBuildingId();
+
+    String getSourceHash();
+
+    String getEmbeddingModel();
+
+    Integer getEmbeddingDimensions();
+}
@@ -0,0 +1,175 @@
+package nhl.stenden.spoordock.llmService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.springframework.stereotype.Component;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+import nhl.stenden.spoordock.llmService.dtos.parameters.ToolRequest.ToolRequest;
+import nhl.stenden.spoordock.llmService.historyManager.classes.OllamaMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.Role;
+
+/**
+ * Packs the chat history into the context window of the selected model. The system message is always sent;
+ * after that the newest messages are added until the token budget of the model (its {@code contextLength}
+ * minus the tokens reserved for the answer and the tool definitions) is used up.
+ * Token counts are estimates, cached per message instance so a message is only measured once.
+ */
+@Slf4j
+@Component
+public class ContextWindowAssembler {
+
+    // Rough characters per token for prose; JSON (tool results, tool definitions) splits into more tokens
+    private static final double CHARS_PER_TOKEN = 4.0;
+    private static final double CHARS_PER_TOKEN_JSON = 3.0;
+    // Role markers and separators the chat template adds around every message
+    private static final int TOKENS_PER_MESSAGE = 4;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Integer> contextLengths = new HashMap<>();
+    private final int defaultContextLength;
+    private final int responseReserve;
+    private final int maxHistoryMessages;
+
+    // Keyed by instance; entries disappear together with the message once the history drops it
+    private final Map<Object, Estimate> estimates = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public ContextWindowAssembler(LlmConfiguration configuration) {
+        LlmConfiguration.Context context = configuration.getContext();
+        this.defaultContextLength = context.getDefaultContextLength();
+        this.responseReserve = Math.max(0, context.getResponseReserve());
+        this.maxHistoryMessages = Math.max(1, context.getMaxHistoryMessages());
+        for (LlmConfiguration.Model model : configuration.getModels()) {
+            if (model.getName() != null && model.getContextLength() > 0) {
+                contextLengths.put(model.getName(), model.getContextLength());
+            }
+        }
+    }
+
+    /**
+     * Upper bound on the number of history messages worth fetching; the token budget decides how many are sent.
+     */
+    public int getMaxHistoryMessages() {
+        return maxHistoryMessages;
+    }
+
+    /**
+     * The context length configured under {@code llm.models}, or the default for models that are not listed.
+     */
+    public int getContextLength(String model) {
+        return contextLengths.getOrDefault(model, defaultContextLength);
+    }
+
+    /**
+     * Selects the messages that fit into the context window of {@code model}.
+     *
+     * @param model   the model the request is sent to
+     * @param history the history in chronological order, optionally starting with the system message
+     * @param tools   the tool definitions sent with the request, or {@code null}
+     * @return the messages to send and the {@code num_ctx} to send them with
+     */
+    public ContextWindow assemble(String model, List<OllamaMessage> history, List<ToolRequest> tools) {
+        int contextLength = getContextLength(model);
+        int budget = contextLength - responseReserve - estimateTools(tools);
+
+        int first = 0;
+        OllamaMessage systemMessage = null;
+        if (!history.isEmpty() && history.get(0).getRole() == Role.SYSTEM) {
+            systemMessage = history.get(0);
+            budget -= estimateTokens(systemMessage);
+            first = 1;
+        }
+
+        // Walk back from the newest message; the newest one is always sent, even when it does not fit
+        List<OllamaMessage> selected = new ArrayList<>();
+        int used = 0;
+        for (int i = history.size() - 1; i >= first; i--) {
+            int tokens = estimateTokens(history.get(i));
+            if (!selected.isEmpty() && used + tokens > budget) {
+                break;
+            }
+            selected.add(history.get(i));
+            used += tokens;
+        }
+        Collections.reverse(selected);
+
+        int dropped = history.size() - first - selected.size();
+        if (dropped > 0) {
+            log.debug("Context window of {} ({} tokens) holds {} of {} messages", model, contextLength, selected.size(), history.size() - first);
+        }
+
+        List<OllamaMessage> messages = new ArrayList<>(selected.size() + 1);
+        if (systemMessage != null) {
+            messages.add(systemMessage);
+            used += estimateTokens(systemMessage);
+        }
+        messages.addAll(selected);
+        return new ContextWindow(messages, contextLength, used, dropped);
+    }
+
+    /**
+     * Estimated number of tokens of a single message, including the per-message template overhead.
+     */
+    public int estimateTokens(OllamaMessage message) {
+        String content = message.getContent();
+        Estimate cached = estimates.get(message);
+        // The content is mutable; a cached estimate is only valid for the exact string it was made for
+        if (cached != null && cached.source == content) {
+            return cached.tokens;
+        }
+
+        double charsPerToken = message.getRole() == Role.TOOL ? CHARS_PER_TOKEN_JSON : CHARS_PER_TOKEN;
+        int tokens = TOKENS_PER_MESSAGE + (content == null ? 0 : (int) Math.ceil(content.length() / charsPerToken));
+        estimates.put(message, new Estimate(content, tokens));
+        return tokens;
+    }
+
+    private int estimateTools(List<ToolRequest> tools) {
+        if (tools == null) {
+            return 0;
+        }
+
+        int total = 0;
+        for (ToolRequest tool : tools) {
+            Estimate cached = estimates.get(tool);
+            if (cached == null) {
+                // No source reference here: the value must not keep its own weak key alive
+                cached = new Estimate(null, (int) Math.ceil(toJson(tool).length() / CHARS_PER_TOKEN_JSON));
+                estimates.put(tool, cached);
+            }
+            total += cached.tokens;
+        }
+        return total;
+    }
+
+    private String toJson(ToolRequest tool) {
+        try {
+            return objectMapper.writeValueAsString(tool);
+        } catch (JsonProcessingException ex) {
+            log.warn("Could not serialize tool definition for the token estimate", ex);
+            return "";
+        }
+    }
+
+    /**
+     * The messages selected for one request.
+     *
+     * @param messages        the system message (if any) followed by the newest messages that fit
+     * @param contextLength   the {@code num_ctx} for the request
+     * @param estimatedTokens estimated tokens of {@code messages}
+     * @param droppedMessages number of older messages that did not fit
+     */
+    public record ContextWindow(List<OllamaMessage> messages, int contextLength, int estimatedTokens, int droppedMessages) {
+    }
+
+    private record Estimate(Object source, int tokens) {
+    }
+}
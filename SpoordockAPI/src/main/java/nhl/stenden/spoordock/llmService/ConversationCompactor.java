@@ -0,0 +1,231 @@
+package nhl.stenden.spoordock.llmService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.stereotype.Component;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import nhl.stenden.spoordock.backgroundprocessor.BackgroundProcessor;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+import nhl.stenden.spoordock.llmService.dtos.GenerateRequest;
+import nhl.stenden.spoordock.llmService.dtos.GenerateResponse;
+import nhl.stenden.spoordock.llmService.dtos.Options;
+import nhl.stenden.spoordock.llmService.historyManager.IChatHistoryManager;
+import nhl.stenden.spoordock.llmService.historyManager.classes.OllamaMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.Role;
+import nhl.stenden.spoordock.llmService.historyManager.classes.SystemMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.ToolMessage;
+
+/**
+ * Keeps long conversations small by summarizing them in the background once their estimated size passes
+ * {@code triggerRatio} of the context length of the chat model. Everything except the newest
+ * {@code keepRecentMessages} messages (moved back to the nearest user message, so a tool call is never split from
+ * its result) is replaced by one summary message (an earlier summary is folded into the new one), and tool results
+ * in the recent messages that are longer than {@code maxToolMessageChars} are replaced by a summary of the tool result.
+ *
+ * Compaction runs on the {@link BackgroundProcessor}, at most once at a time per conversation, so the chat
+ * request that triggers it is never delayed. Messages that arrive while a summary is being generated are kept,
+ * because the history manager only replaces the exact messages that were summarized. When the history changed
+ * too much for the summary to be applied, the conversation is left alone for {@code retryBackoff}.
+ */
+@Slf4j
+@Component
+public class ConversationCompactor {
+
+    static final String SUMMARY_PREFIX = "Summary of the earlier conversation:\n";
+
+    private static final String SUMMARY_PROMPT = """
+        Summarize the following conversation between a user and an assistant about infrastructure and urban planning.
+        Keep every fact that may be needed later: names, numbers, building types, decisions and open questions.
+        Write the summary as short bullet points and do not add anything that is not in the conversation.
+        """;
+    private static final String TOOL_SUMMARY_PROMPT = """
+        Summarize the following result of the tool '%s' so it can replace the full result in a conversation.
+        Keep names, counts, totals and notable values; drop repeated structure. Answer with the summary only.
+        """;
+
+    private final IChatHistoryManager historyManager;
+    private final ContextWindowAssembler contextWindowAssembler;
+    private final BackgroundProcessor backgroundProcessor;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final URI baseUrl;
+    private final LlmConfiguration.Compaction compaction;
+    private final String model;
+    private final String defaultChatModel;
+    private final long retryBackoffNanos;
+    private final LongSupplier nanoClock;
+
+    private final Set<UUID> running = ConcurrentHashMap.newKeySet();
+    // Conversations whose last summary could not be applied, with the time (nanoClock) until which they are skipped
+    private final Map<UUID, Long> backoffUntil = new ConcurrentHashMap<>();
+    private final AtomicLong compactedConversations = new AtomicLong(0);
+    private final AtomicLong replacedMessages = new AtomicLong(0);
+
+    public ConversationCompactor(LlmConfiguration configuration, IChatHistoryManager historyManager,
+            ContextWindowAssembler contextWindowAssembler, BackgroundProcessor backgroundProcessor, HttpClient httpClient) {
+        this(configuration, historyManager, contextWindowAssembler, backgroundProcessor, httpClient, System::nanoTime);
+    }
+
+    public ConversationCompactor(LlmConfiguration configuration, IChatHistoryManager historyManager,
+            ContextWindowAssembler contextWindowAssembler, BackgroundProcessor backgroundProcessor, HttpClient httpClient,
+            LongSupplier nanoClock) {
+        this.historyManager = historyManager;
+        this.contextWindowAssembler = contextWindowAssembler;
+        this.backgroundProcessor = backgroundProcessor;
+        this.httpClient = httpClient;
+        this.baseUrl = URI.create(configuration.getBaseUrl()).normalize();
+        this.compaction = configuration.getCompaction();
+        this.model = compaction.getModel() == null || compaction.getModel().isBlank()
+            ? configuration.getDefaultModel()
+            : compaction.getModel();
+        this.defaultChatModel = configuration.getDefaultModel();
+        this.retryBackoffNanos = compaction.getRetryBackoff().toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Checks in the background whether the conversation has grown past the threshold and compacts it if so.
+     * Called after every turn; the check itself is cheap because the token estimates are cached, and nothing
+     * is scheduled while a compaction of the same conversation is still running or backing off.
+     *
+     * @param chatModel the model the conversation is sent to; its context length determines the threshold
+     */
+    public void compactIfNeeded(UUID conversationId, String chatModel) {
+        if (!compaction.isEnabled() || isBackingOff(conversationId) || !running.add(conversationId)) {
+            return;
+        }
+        int triggerTokens = (int) (compaction.getTriggerRatio()
+            * contextWindowAssembler.getContextLength(chatModel == null ? defaultChatModel : chatModel));
+        backgroundProcessor.submitTask(() -> {
+            try {
+                List<OllamaMessage> history = historyManager.getHistory(conversationId, contextWindowAssembler.getMaxHistoryMessages());
+                if (estimateTokens(history) > triggerTokens) {
+                    compact(conversationId, history);
+                }
+            } finally {
+                running.remove(conversationId);
+            }
+        });
+    }
+
+    /**
+     * Summarizes the older messages and the large tool results of the conversation, regardless of the threshold.
+     */
+    public void compact(UUID conversationId) {
+        compact(conversationId, historyManager.getHistory(conversationId, contextWindowAssembler.getMaxHistoryMessages()));
+    }
+
+    public long getCompactedConversationCount() {
+        return compactedConversations.get();
+    }
+
+    public long getReplacedMessageCount() {
+        return replacedMessages.get();
+    }
+
+    private void compact(UUID conversationId, List<OllamaMessage> history) {
+        int first = !history.isEmpty() && history.get(0).getRole() == Role.SYSTEM ? 1 : 0;
+        int keepFrom = Math.max(first, history.size() - Math.max(1, compaction.getKeepRecentMessages()));
+        // The kept part starts at a user message; otherwise a tool result could lose the assistant turn that called it
+        while (keepFrom > first && history.get(keepFrom).getRole() != Role.USER) {
+            keepFrom--;
+        }
+
+        // A single older message (usually the previous summary) is not worth another round trip
+        List<OllamaMessage> older = history.subList(first, keepFrom);
+        if (older.size() > 1) {
+            String summary = generate(SUMMARY_PROMPT, render(older));
+            replace(conversationId, older, new SystemMessage(SUMMARY_PREFIX + summary));
+        }
+
+        for (OllamaMessage message : history.subList(keepFrom, history.size())) {
+            if (message instanceof ToolMessage toolMessage
+                    && toolMessage.getContent() != null
+                    && toolMessage.getContent().length() > compaction.getMaxToolMessageChars()) {
+                String summary = generate(TOOL_SUMMARY_PROMPT.formatted(toolMessage.getToolName()), toolMessage.getContent());
+                replace(conversationId, List.of(toolMessage), new ToolMessage(toolMessage.getToolName(), summary));
+            }
+        }
+        compactedConversations.incrementAndGet();
+    }
+
+    private void replace(UUID conversationId, List<OllamaMessage> original, OllamaMessage replacement) {
+        if (historyManager.replaceMessages(conversationId, original, replacement)) {
+            replacedMessages.addAndGet(original.size());
+        } else {
+            // Without a back-off every following turn would generate (and discard) the same summary again
+            backoffUntil.put(conversationId, nanoClock.getAsLong() + retryBackoffNanos);
+            log.debug("Conversation {} changed while it was being compacted, summary of {} message(s) discarded", conversationId, original.size());
+        }
+    }
+
+    private boolean isBackingOff(UUID conversationId) {
+        Long until = backoffUntil.get(conversationId);
+        if (until == null) {
+            return false;
+        }
+        if (nanoClock.getAsLong() - until < 0) {
+            return true;
+        }
+        backoffUntil.remove(conversationId, until);
+        return false;
+    }
+
+    private int estimateTokens(List<OllamaMessage> history) {
+        int total = 0;
+        for (OllamaMessage message : history) {
+            total += contextWindowAssembler.estimateTokens(message);
+        }
+        return total;
+    }
+
+    // Tool results are cut to maxToolMessageChars so the input of the summary stays bounded as well
+    private String render(List<OllamaMessage> messages) {
+        StringBuilder builder = new StringBuilder();
+        for (OllamaMessage message : messages) {
+            String content = message.getContent() == null ? "" : message.getContent();
+            if (message.getRole() == Role.TOOL && content.length() > compaction.getMaxToolMessageChars()) {
+                content = content.substring(0, compaction.getMaxToolMessageChars()) + " [truncated]";
+            }
+            builder.append(message.getRole()).append(": ").append(content).append("\n\n");
+        }
+        return builder.toString();
+    }
+
+    private String generate(String systemPrompt, String prompt) {
+        try {
+            var request = new GenerateRequest(model, prompt, systemPrompt, false, false, new Options(contextWindowAssembler.getContextLength(model)));
+            HttpRequest httpRequest = HttpRequest.newBuilder()
+                .uri(baseUrl.resolve("/api/generate"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(request)))
+                .build();
+
+            HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new RuntimeException("Summary request failed. Status code: " + response.statusCode() + ", Body: " + response.body());
+            }
+            String summary = objectMapper.readValue(response.body(), GenerateResponse.class).getResponse();
+            if (summary == null || summary.isBlank()) {
+                throw new RuntimeException("Summary request returned an empty response");
+            }
+            return summary.strip();
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new RuntimeException("Failed to generate summary", ex);
+        }
+    }
+}
@@ -1,5 +1,22 @@
 package nhl.stenden.spoordock.llmService;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
 public interface EmbeddableTextMapper<T> {
     String toEmbeddableText(T object);
+
+    /**
+     * SHA-256 of the embeddable text as lowercase hex; equal text always gives an equal hash.
+     */
+    static String contentHash(String embeddableText) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(embeddableText.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
 }
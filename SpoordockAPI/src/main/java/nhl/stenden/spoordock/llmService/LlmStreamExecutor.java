@@ -0,0 +1,191 @@
+package nhl.stenden.spoordock.llmService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+
+/**
+ * Runs LLM streams on virtual threads with a concurrency limit per model.
+ * When all slots of a model are taken, a stream waits in a bounded queue; when that queue is full
+ * the stream is rejected so the caller can answer with 429 instead of piling up work.
+ * Cancelling the returned future (for example when the client disconnects) gives the slot back at once.
+ */
+@Slf4j
+@Component
+public class LlmStreamExecutor {
+
+    private final ExecutorService executorService;
+    // Only an executor created here is shut down here; a passed-in executor belongs to the caller
+    private final boolean ownsExecutor;
+    private final int maxConcurrentPerModel;
+    private final int maxQueuedPerModel;
+    private final Map<String, ModelSlots> slotsPerModel = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LlmStreamExecutor(LlmConfiguration configuration) {
+        this(configuration, Executors.newVirtualThreadPerTaskExecutor(), true);
+    }
+
+    public LlmStreamExecutor(LlmConfiguration configuration, ExecutorService executorService) {
+        this(configuration, executorService, false);
+    }
+
+    private LlmStreamExecutor(LlmConfiguration configuration, ExecutorService executorService, boolean ownsExecutor) {
+        LlmConfiguration.Streaming streaming = configuration.getStreaming();
+        this.maxConcurrentPerModel = Math.max(1, streaming.getMaxConcurrentPerModel());
+        this.maxQueuedPerModel = Math.max(0, streaming.getMaxQueuedPerModel());
+        this.executorService = executorService;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ownsExecutor) {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Schedules a stream for the given model.
+     *
+     * @param model  the model the stream runs against, each model has its own limit
+     * @param stream starts the stream; the slot is held until the returned future completes
+     * @return the future of the stream, or {@code null} when the model is saturated and the stream was rejected.
+     *         Cancelling it interrupts a queued or blocking stream and cancels the future of an asynchronous one,
+     *         which releases the slot without waiting for the model to finish
+     */
+    public CompletableFuture<Void> trySubmit(String model, Supplier<CompletableFuture<Void>> stream) {
+        ModelSlots slots = slotsPerModel.computeIfAbsent(model, key -> new ModelSlots());
+
+        boolean acquired = slots.permits.tryAcquire();
+        if (!acquired && slots.queued.incrementAndGet() > maxQueuedPerModel) {
+            slots.queued.decrementAndGet();
+            slots.rejected.incrementAndGet();
+            log.warn("Rejected stream for model {}: {} active, {} queued", model, slots.active.get(), slots.queued.get());
+            return null;
+        }
+
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        // Claimed either by the task when it starts or by a cancellation that comes first, which then cleans up the slot
+        AtomicBoolean claimed = new AtomicBoolean(false);
+        // The queue slot is given back once, by the task or by a cancellation, whichever is first
+        AtomicBoolean dequeued = new AtomicBoolean(acquired);
+        Runnable leaveQueue = () -> {
+            if (dequeued.compareAndSet(false, true)) {
+                slots.queued.decrementAndGet();
+            }
+        };
+        Future<?> task = executorService.submit(() -> {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (!acquired) {
+                    try {
+                        slots.permits.acquire();
+                    } finally {
+                        leaveQueue.run();
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(ex);
+                return;
+            }
+
+            if (result.isCancelled()) {
+                slots.permits.release();
+                return;
+            }
+
+            slots.active.incrementAndGet();
+            CompletableFuture<Void> running;
+            try {
+                running = stream.get();
+            } catch (Exception ex) {
+                running = CompletableFuture.failedFuture(ex);
+            }
+
+            CompletableFuture<Void> started = running;
+            result.whenComplete((ignored, ex) -> {
+                if (result.isCancelled()) {
+                    started.cancel(false);
+                }
+            });
+            started.whenComplete((ignored, ex) -> {
+                slots.active.decrementAndGet();
+                slots.completed.incrementAndGet();
+                slots.permits.release();
+
+                if (ex != null) {
+                    result.completeExceptionally(ex);
+                } else {
+                    result.complete(null);
+                }
+            });
+        });
+        result.whenComplete((ignored, ex) -> {
+            if (!result.isCancelled()) {
+                return;
+            }
+            leaveQueue.run();
+            if (!claimed.compareAndSet(false, true)) {
+                task.cancel(true);
+            } else if (acquired) {
+                slots.permits.release();
+            }
+        });
+        return result;
+    }
+
+    public List<StreamMetrics> getMetrics() {
+        return slotsPerModel.entrySet().stream()
+            .map(entry -> new StreamMetrics(
+                entry.getKey(),
+                entry.getValue().active.get(),
+                entry.getValue().queued.get(),
+                maxConcurrentPerModel,
+                maxQueuedPerModel,
+                entry.getValue().completed.get(),
+                entry.getValue().rejected.get()))
+            .toList();
+    }
+
+    private class ModelSlots {
+        private final Semaphore permits = new Semaphore(maxConcurrentPerModel, true);
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class StreamMetrics {
+        private String model;
+        private int active;
+        private int queued;
+        private int maxConcurrent;
+        private int maxQueued;
+        private long completed;
+        private long rejected;
+    }
+}
@@ -0,0 +1,139 @@
+package nhl.stenden.spoordock.llmService;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import nhl.stenden.spoordock.backgroundprocessor.BackgroundProcessor;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+
+/**
+ * Caches the model list of Ollama ({@code /api/tags}) so model validation does not cost a round trip per request.
+ * A fresh list is served from memory. A list older than the TTL is still served while a single background
+ * refresh runs, and it is kept when that refresh fails, so chats keep working while Ollama is slow.
+ * Only the very first lookup (or the first after {@link #invalidate()}) waits for Ollama.
+ * A list that could not be refreshed for longer than {@code maxStaleness} is dropped, so a lookup waits
+ * for Ollama again and fails with its error instead of serving an outdated list forever.
+ */
+@Slf4j
+@Component
+public class ModelListCache {
+
+    private final OllamaConnectorService ollamaConnectorService;
+    private final BackgroundProcessor backgroundProcessor;
+    private final Duration ttl;
+    private final Duration maxStaleness;
+    private final Clock clock;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public ModelListCache(LlmConfiguration configuration, OllamaConnectorService ollamaConnectorService, BackgroundProcessor backgroundProcessor) {
+        this(configuration, ollamaConnectorService, backgroundProcessor, Clock.systemUTC());
+    }
+
+    public ModelListCache(LlmConfiguration configuration, OllamaConnectorService ollamaConnectorService, BackgroundProcessor backgroundProcessor, Clock clock) {
+        this.ollamaConnectorService = ollamaConnectorService;
+        this.backgroundProcessor = backgroundProcessor;
+        this.ttl = configuration.getModelCache().getTtl();
+        Duration configuredMaxStaleness = configuration.getModelCache().getMaxStaleness();
+        this.maxStaleness = configuredMaxStaleness.compareTo(ttl) < 0 ? ttl : configuredMaxStaleness;
+        this.clock = clock;
+    }
+
+    public List<String> getAvailableModels() {
+        return currentSnapshot().models;
+    }
+
+    public boolean isAvailable(String model) {
+        return currentSnapshot().modelSet.contains(model);
+    }
+
+    /**
+     * Drops the cached list; the next lookup loads it again from Ollama.
+     */
+    public void invalidate() {
+        snapshot = null;
+        log.info("Model list cache invalidated");
+    }
+
+    /**
+     * Keeps the list warm so that requests rarely see an expired entry. Runs every {@code refreshInterval},
+     * but only refreshes a list that is older than the TTL.
+     */
+    @Scheduled(fixedDelayString = "${llm.modelCache.refreshInterval:PT1M}")
+    public void scheduledRefresh() {
+        Snapshot current = snapshot;
+        if (current == null || isOlderThan(current, ttl)) {
+            refreshInBackground();
+        }
+    }
+
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null && isOlderThan(current, maxStaleness)) {
+            log.warn("Model list could not be refreshed since {}, loading it again", current.loadedAt);
+            snapshot = null;
+            current = null;
+        }
+        if (current == null) {
+            return load();
+        }
+
+        if (isOlderThan(current, ttl)) {
+            refreshInBackground();
+        }
+        return current;
+    }
+
+    private boolean isOlderThan(Snapshot current, Duration age) {
+        return current.loadedAt.plus(age).isBefore(clock.instant());
+    }
+
+    private synchronized Snapshot load() {
+        // Another request may have loaded the list while this one was waiting
+        if (snapshot != null) {
+            return snapshot;
+        }
+        Snapshot loaded = new Snapshot(ollamaConnectorService.getAvailableModels(), clock.instant());
+        snapshot = loaded;
+        return loaded;
+    }
+
+    private void refreshInBackground() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        backgroundProcessor.submitTask(() -> {
+            try {
+                snapshot = new Snapshot(ollamaConnectorService.getAvailableModels(), clock.instant());
+            } catch (Exception ex) {
+                log.warn("Refreshing the model list failed, keeping the previous list", ex);
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    private static final class Snapshot {
+        private final List<String> models;
+        private final Set<String> modelSet;
+        private final Instant loadedAt;
+
+        private Snapshot(List<String> models, Instant loadedAt) {
+            this.models = List.copyOf(models);
+            this.modelSet = Set.copyOf(models);
+            this.loadedAt = loadedAt;
+        }
+    }
+}
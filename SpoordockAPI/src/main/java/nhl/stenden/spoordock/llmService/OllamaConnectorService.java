@@ -10,12 +10,16 @@ import java.net.http.HttpResponse;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
 import java.util.function.Consumer;
 
 import org.springframework.stereotype.Component;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.slf4j.Slf4j;
+import nhl.stenden.spoordock.llmService.ContextWindowAssembler.ContextWindow;
 import nhl.stenden.spoordock.llmService.ToolHandling.ToolHandlingManager;
 import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
 import nhl.stenden.spoordock.llmService.dtos.Options;
@@ -45,19 +49,26 @@ public class OllamaConnectorService {
     private final IChatHistoryManager historyManager;
     private final LlmConfiguration.SystemPrompts systemPrompts;
     private final ToolHandlingManager toolhandlingManager;
+    private final ContextWindowAssembler contextWindowAssembler;
+    private final ConversationCompactor conversationCompactor;
 
     /**
      * Constructs a new OllamaConnectorService with the given configuration and history manager.
      *
      * @param configuration  the LLM configuration containing the base URL and system prompts
      * @param historyManager the chat history manager for storing conversation history
+     * @param contextWindowAssembler selects the history that fits into the context window of the model
+     * @param conversationCompactor  summarizes long conversations in the background after a turn
      */
-    public OllamaConnectorService(LlmConfiguration configuration, IChatHistoryManager historyManager, ToolHandlingManager toolHandlingManager, HttpClient httpClient) {
+    public OllamaConnectorService(LlmConfiguration configuration, IChatHistoryManager historyManager, ToolHandlingManager toolHandlingManager,
+            ContextWindowAssembler contextWindowAssembler, ConversationCompactor conversationCompactor, HttpClient httpClient) {
         String apiUrl = configuration.getBaseUrl();
         this.baseUrl = URI.create(apiUrl).normalize();
         this.historyManager = historyManager;
         this.systemPrompts = configuration.getSystemPrompts();
         this.toolhandlingManager = toolHandlingManager;
+        this.contextWindowAssembler = contextWindowAssembler;
+        this.conversationCompactor = conversationCompactor;
         this.httpClient = httpClient;
     }
 
@@ -96,10 +107,17 @@ public class OllamaConnectorService {
      */
     public void generateDescriptionHelperStream(UUID chatId, String prompt, String model, Consumer<ChunkReceivedEventArgs> chunkReceived) {
         chatStream(chatId, prompt, systemPrompts.getDescriptionHelperPrompt(), model, chunkReceived);
+        conversationCompactor.compactIfNeeded(chatId, model);
     }
     
     public void startAnalysisStream(String prompt, String model, Consumer<ChunkReceivedEventArgs> chunkReceived) {
-        chatStreamWithTools(UUID.randomUUID(), prompt, systemPrompts.getAnalysisPrompt(), model, true, 3, chunkReceived);
+        // Every analysis is a one-off conversation; drop it afterwards instead of keeping it until it expires
+        UUID analysisId = UUID.randomUUID();
+        try {
+            chatStreamWithTools(analysisId, prompt, systemPrompts.getAnalysisPrompt(), model, true, 3, chunkReceived);
+        } finally {
+            historyManager.clearHistory(analysisId);
+        }
     }
     
 
@@ -107,6 +125,26 @@ public class OllamaConnectorService {
 
         String systemPrompt = systemPrompts.getDefaultChatPrompt();
         chatStreamWithTools(chatId, prompt, systemPrompt, model, true, 3, chunkReceived);
+        conversationCompactor.compactIfNeeded(chatId, model);
+    }
+
+    /**
+     * Non-blocking variant of {@link #startAnalysisStream}; returns immediately and completes the future
+     * once the analysis has been fully streamed.
+     */
+    public CompletableFuture<Void> startAnalysisStreamAsync(String prompt, String model, Consumer<ChunkReceivedEventArgs> chunkReceived) {
+        UUID analysisId = UUID.randomUUID();
+        return chatStreamWithToolsAsync(analysisId, prompt, systemPrompts.getAnalysisPrompt(), model, true, 3, chunkReceived)
+            .whenComplete((result, ex) -> historyManager.clearHistory(analysisId));
+    }
+
+    /**
+     * Non-blocking variant of {@link #startChatWithToolsStream}; returns immediately and completes the future
+     * once the answer (including any tool call turns) has been fully streamed.
+     */
+    public CompletableFuture<Void> startChatWithToolsStreamAsync(UUID chatId, String prompt, String model, Consumer<ChunkReceivedEventArgs> chunkReceived) {
+        return chatStreamWithToolsAsync(chatId, prompt, systemPrompts.getDefaultChatPrompt(), model, true, 3, chunkReceived)
+            .thenRun(() -> conversationCompactor.compactIfNeeded(chatId, model));
     }
 
     private void chatStream(UUID chatId, String prompt, String systemPromp, String model, Consumer<ChunkReceivedEventArgs> chunkReceived) {
@@ -120,98 +158,39 @@ public class OllamaConnectorService {
             boolean useTools, 
             int maxLoops, 
             Consumer<ChunkReceivedEventArgs> chunkReceived)  {
+        // Pinned for the whole stream, so the memory budget cannot evict the conversation between two appends
+        historyManager.pin(chatId);
         try{
 
-            OllamaMessage systemMessage = new SystemMessage(systemPrompt);
-            historyManager.createHistoryIfNotExists(chatId, systemMessage);
-
-            OllamaMessage userMessage = new UserMessage(prompt);
-            historyManager.addMessageToHistory(chatId, userMessage);
-            
-            List<ToolRequest> tools = null;
-            if (useTools){
-                tools = toolhandlingManager.getAvailableTools();
-            }
-
-
-            Options options = new Options(10000);
+            List<ToolRequest> tools = startConversation(chatId, prompt, systemPrompt, useTools);
 
             int loop = 0;
             boolean continueConversation = true;
             while(continueConversation) {
 
-                List<OllamaMessage> messages = historyManager.getHistory(chatId, 20);
-                ChatRequest request = new ChatRequest(model, messages, tools, options);
-                log.debug(objectMapper.writeValueAsString(request));
-                String jsonString = objectMapper.writeValueAsString(request);
+                HttpRequest httpRequest = buildChatRequest(chatId, model, tools, loop);
+                ChatTurn turn = new ChatTurn(chunkReceived);
 
-                HttpRequest httpRequest = HttpRequest.newBuilder()
-                    .uri(baseUrl.resolve("/api/chat"))
-                    .header("Content-Type", "application/json")
-                    .header("X-Request-ID", chatId.toString() + "-" + loop) // Track conversation
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonString))
-                    .build();
-                
-                List<ToolCall> toolCalls = new ArrayList<>();
-                String fullReceived = "";
                 // Stream the response
                 HttpResponse<InputStream> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofInputStream());
                 
                 try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body()))) {
                     String line;
                     while ((line = reader.readLine()) != null) {
-                        ChatResponse chunk = objectMapper.readValue(line, ChatResponse.class);
-                        Message message = chunk.getMessage();
-                        if (message != null) {
-
-                            if(message.getContent() != null) {
-                                String content = message.getContent();
-
-                                ChunkReceivedEventArgs args = new ChunkReceivedEventArgs(content, ChunkType.Content);
-                                chunkReceived.accept(args);
-                                fullReceived += content;
-                            }
-
-                            if(message.getThinking() != null) {
-                                ChunkReceivedEventArgs args = new ChunkReceivedEventArgs(message.getThinking(), ChunkType.Thinking);
-                               chunkReceived.accept(args);
-                            }
-
-                            if(message.getToolCalls() != null && !message.getToolCalls().isEmpty()) {
-                                toolCalls.addAll(message.getToolCalls() );
-                            }
-                        }
+                        turn.accept(line);
                     }
 
-                    log.debug("Responded with \n tool_calls: " + toolCalls.size() + "\nmessage: " + fullReceived);
-
-                    OllamaMessage message = new BotMessage(fullReceived);
-                    historyManager.addMessageToHistory(chatId, message);
+                    finishTurn(chatId, turn);
                 }
                 catch(Exception ex)
                 {
                     throw new RuntimeException("Error reading streamed response", ex);
                 }
 
-                //Process tool calls
-                for(ToolCall toolCall : toolCalls) {   
-
-                    FunctionCall functionCall = toolCall.getFunctionCall();
-                    if(functionCall == null) {
-                        continue;
-                    }
-
-                    String toolResult = toolhandlingManager.handleToolInvocation(functionCall);
-                    String toolCallData = String.format("{ \"tool_call\" : \"%s\" , \"raw_result\": \"%s\"}", functionCall.getName(), toolResult);
-                    ChunkReceivedEventArgs args = new ChunkReceivedEventArgs(toolCallData, ChunkType.ToolCall);
-                    chunkReceived.accept(args);
-
-                    OllamaMessage toolMessage = new ToolMessage(toolCall.getFunctionCall().getName(), toolResult);
-                    historyManager.addMessageToHistory(chatId, toolMessage);
-                }
+                processToolCalls(chatId, turn.toolCalls, chunkReceived);
 
                 loop++;
-                if(toolCalls.isEmpty() ||  (maxLoops > 0 && loop >= maxLoops)) {
+                if(turn.toolCalls.isEmpty() ||  (maxLoops > 0 && loop >= maxLoops)) {
                     continueConversation = false;
                 }
 
@@ -223,6 +202,240 @@ public class OllamaConnectorService {
         {
             throw new RuntimeException("Failed to generate text stream", ex);
         }
+        finally
+        {
+            historyManager.unpin(chatId);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #chatStreamWithTools}. Every turn is sent with {@code sendAsync} and the
+     * response lines are pulled one at a time by a {@link ChatLineSubscriber}; no thread waits for Ollama between
+     * two lines. The next line is only requested after {@code chunkReceived} has returned, so a slow
+     * consumer (for example an SSE client on a slow connection) throttles the read from Ollama instead of
+     * letting chunks pile up in memory.
+     *
+     * {@code chunkReceived}, {@link #finishTurn} and the tool calls do block (SSE writes, embedding requests,
+     * database queries). They run on the executor of the {@link HttpClient}, which therefore has to hand out
+     * virtual threads (see the {@code httpClient} bean) so a slow client or a tool call parks only a virtual thread.
+     *
+     * @return a future that completes after the {@link ChunkType#CompleteChunk} has been delivered,
+     *         or exceptionally when a turn fails
+     */
+    private CompletableFuture<Void> chatStreamWithToolsAsync(UUID chatId,
+            String prompt,
+            String systemPrompt,
+            String model,
+            boolean useTools,
+            int maxLoops,
+            Consumer<ChunkReceivedEventArgs> chunkReceived) {
+        historyManager.pin(chatId);
+        CompletableFuture<Void> stream;
+        try {
+            List<ToolRequest> tools = startConversation(chatId, prompt, systemPrompt, useTools);
+            stream = streamTurnAsync(chatId, model, tools, 0, maxLoops, chunkReceived)
+                .exceptionallyCompose(ex -> CompletableFuture.failedFuture(
+                    new RuntimeException("Failed to generate text stream", unwrap(ex))));
+        } catch (Exception ex) {
+            stream = CompletableFuture.failedFuture(new RuntimeException("Failed to generate text stream", ex));
+        }
+        return stream.whenComplete((result, ex) -> historyManager.unpin(chatId));
+    }
+
+    private CompletableFuture<Void> streamTurnAsync(UUID chatId,
+            String model,
+            List<ToolRequest> tools,
+            int loop,
+            int maxLoops,
+            Consumer<ChunkReceivedEventArgs> chunkReceived) {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = buildChatRequest(chatId, model, tools, loop);
+        } catch (Exception ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+
+        ChatTurn turn = new ChatTurn(chunkReceived);
+        ChatLineSubscriber subscriber = new ChatLineSubscriber(turn);
+
+        return httpClient
+            .sendAsync(httpRequest, subscriber::bodySubscriber)
+            .thenCompose(response -> subscriber.result)
+            .thenCompose(ignored -> {
+                finishTurn(chatId, turn);
+                processToolCalls(chatId, turn.toolCalls, chunkReceived);
+
+                int nextLoop = loop + 1;
+                if (turn.toolCalls.isEmpty() || (maxLoops > 0 && nextLoop >= maxLoops)) {
+                    chunkReceived.accept(new ChunkReceivedEventArgs("", ChunkType.CompleteChunk));
+                    return CompletableFuture.completedFuture(null);
+                }
+                return streamTurnAsync(chatId, model, tools, nextLoop, maxLoops, chunkReceived);
+            });
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    private List<ToolRequest> startConversation(UUID chatId, String prompt, String systemPrompt, boolean useTools) {
+        OllamaMessage systemMessage = new SystemMessage(systemPrompt);
+        historyManager.createHistoryIfNotExists(chatId, systemMessage);
+
+        OllamaMessage userMessage = new UserMessage(prompt);
+        historyManager.addMessageToHistory(chatId, userMessage);
+
+        if (useTools){
+            return toolhandlingManager.getAvailableTools();
+        }
+        return null;
+    }
+
+    private HttpRequest buildChatRequest(UUID chatId, String model, List<ToolRequest> tools, int loop) throws Exception {
+        List<OllamaMessage> history = historyManager.getHistory(chatId, contextWindowAssembler.getMaxHistoryMessages());
+        ContextWindow window = contextWindowAssembler.assemble(model, history, tools);
+        ChatRequest request = new ChatRequest(model, window.messages(), tools, new Options(window.contextLength()));
+        String jsonString = objectMapper.writeValueAsString(request);
+        log.debug(jsonString);
+
+        return HttpRequest.newBuilder()
+            .uri(baseUrl.resolve("/api/chat"))
+            .header("Content-Type", "application/json")
+            .header("X-Request-ID", chatId.toString() + "-" + loop) // Track conversation
+            .POST(HttpRequest.BodyPublishers.ofString(jsonString))
+            .build();
+    }
+
+    private void finishTurn(UUID chatId, ChatTurn turn) {
+        log.debug("Responded with \n tool_calls: " + turn.toolCalls.size() + "\nmessage: " + turn.fullReceived);
+
+        OllamaMessage message = new BotMessage(turn.fullReceived.toString());
+        historyManager.addMessageToHistory(chatId, message);
+    }
+
+    private void processToolCalls(UUID chatId, List<ToolCall> toolCalls, Consumer<ChunkReceivedEventArgs> chunkReceived) {
+        for(ToolCall toolCall : toolCalls) {   
+
+            FunctionCall functionCall = toolCall.getFunctionCall();
+            if(functionCall == null) {
+                continue;
+            }
+
+            String toolResult = toolhandlingManager.handleToolInvocation(functionCall);
+            String toolCallData = String.format("{ \"tool_call\" : \"%s\" , \"raw_result\": \"%s\"}", functionCall.getName(), toolResult);
+            ChunkReceivedEventArgs args = new ChunkReceivedEventArgs(toolCallData, ChunkType.ToolCall);
+            chunkReceived.accept(args);
+
+            OllamaMessage toolMessage = new ToolMessage(functionCall.getName(), toolResult);
+            historyManager.addMessageToHistory(chatId, toolMessage);
+        }
+    }
+
+    /**
+     * State of a single request/response turn: forwards content and thinking chunks as they arrive
+     * and collects the full answer and the requested tool calls.
+     */
+    private class ChatTurn {
+
+        private final Consumer<ChunkReceivedEventArgs> chunkReceived;
+        private final List<ToolCall> toolCalls = new ArrayList<>();
+        private final StringBuilder fullReceived = new StringBuilder();
+
+        ChatTurn(Consumer<ChunkReceivedEventArgs> chunkReceived) {
+            this.chunkReceived = chunkReceived;
+        }
+
+        void accept(String line) throws Exception {
+            if (line.isBlank()) {
+                return;
+            }
+
+            ChatResponse chunk = objectMapper.readValue(line, ChatResponse.class);
+            Message message = chunk.getMessage();
+            if (message == null) {
+                return;
+            }
+
+            if(message.getContent() != null) {
+                String content = message.getContent();
+                chunkReceived.accept(new ChunkReceivedEventArgs(content, ChunkType.Content));
+                fullReceived.append(content);
+            }
+
+            if(message.getThinking() != null) {
+                chunkReceived.accept(new ChunkReceivedEventArgs(message.getThinking(), ChunkType.Thinking));
+            }
+
+            if(message.getToolCalls() != null && !message.getToolCalls().isEmpty()) {
+                toolCalls.addAll(message.getToolCalls());
+            }
+        }
+    }
+
+    /**
+     * Pulls the NDJSON lines of a streamed chat response one at a time. Demand is raised by one only after
+     * a line has been handled, which is what propagates backpressure from the chunk consumer to the socket.
+     * A non-200 response is collected as an error body and fails {@link #result} once the body is complete.
+     */
+    private static class ChatLineSubscriber implements Flow.Subscriber<String> {
+
+        private final ChatTurn turn;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private final StringBuilder errorBody = new StringBuilder();
+        private volatile int statusCode;
+        private Flow.Subscription subscription;
+
+        ChatLineSubscriber(ChatTurn turn) {
+            this.turn = turn;
+        }
+
+        HttpResponse.BodySubscriber<Void> bodySubscriber(HttpResponse.ResponseInfo responseInfo) {
+            this.statusCode = responseInfo.statusCode();
+            return HttpResponse.BodySubscribers.fromLineSubscriber(this);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (result.isDone()) {
+                return;
+            }
+
+            if (statusCode != 200) {
+                errorBody.append(line);
+                subscription.request(1);
+                return;
+            }
+
+            try {
+                turn.accept(line);
+            } catch (Exception ex) {
+                subscription.cancel();
+                result.completeExceptionally(new RuntimeException("Error reading streamed response", ex));
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(new RuntimeException("Error reading streamed response", throwable));
+        }
+
+        @Override
+        public void onComplete() {
+            if (statusCode != 200) {
+                result.completeExceptionally(new RuntimeException(
+                    "Chat request failed. Status code: " + statusCode + ", Body: " + errorBody));
+                return;
+            }
+            result.complete(null);
+        }
     }
 
 }
@@ -4,6 +4,9 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.springframework.stereotype.Component;
 import org.springframework.util.StopWatch;
@@ -22,12 +25,14 @@ public class OllamaEmbeddingClient {
     private final HttpClient httpClient;
     private final URI baseUrl;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int batchSize;
 
     private static final String EMBEDDING_MODEL_NAME = "nomic-embed-text";
 
     public OllamaEmbeddingClient(LlmConfiguration configuration, HttpClient httpClient) {
         this.baseUrl = URI.create(configuration.getBaseUrl()).normalize();
         this.httpClient = httpClient;
+        this.batchSize = Math.max(1, configuration.getEmbedding().getBatchSize());
     }
     
     public String getEmbeddingModelName() {
@@ -36,30 +41,56 @@ public class OllamaEmbeddingClient {
 
     public float[] createEmbedding(String text, int dimensions) {
         try {
-            var body = new EmbeddingRequestBody(EMBEDDING_MODEL_NAME, text, dimensions);
+            return requestEmbeddings(List.of(text), dimensions)[0];
+        } catch (Exception ex) {
+            throw new RuntimeException("Failed to create embedding", ex);
+        }
+    }
 
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(baseUrl.resolve("/api/embed"))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
-                .build();
+    /**
+     * Creates embeddings for all texts, sending at most {@code llm.embedding.batchSize} texts per request.
+     *
+     * @return one vector per text, in the same order as {@code texts}
+     */
+    public List<float[]> createEmbeddings(List<String> texts, int dimensions) {
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+        try {
+            for (int start = 0; start < texts.size(); start += batchSize) {
+                List<String> batch = texts.subList(start, Math.min(start + batchSize, texts.size()));
+                embeddings.addAll(Arrays.asList(requestEmbeddings(batch, dimensions)));
+            }
+            return embeddings;
+        } catch (Exception ex) {
+            throw new RuntimeException("Failed to create embeddings", ex);
+        }
+    }
 
-            StopWatch sw = new StopWatch();
-            sw.start();
-            var response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            sw.stop();
+    private float[][] requestEmbeddings(List<String> texts, int dimensions) throws Exception {
+        var body = new EmbeddingRequestBody(EMBEDDING_MODEL_NAME, texts, dimensions);
 
-            if (response.statusCode() != 200) {
-                throw new RuntimeException("Failed to create embedding. Status code: " + response.statusCode() + ", Body: " + response.body());
-            }
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(baseUrl.resolve("/api/embed"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+            .build();
 
-            log.info("Embedding creation took: {} ms", sw.getTotalTimeMillis());
+        StopWatch sw = new StopWatch();
+        sw.start();
+        var response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        sw.stop();
 
-            String responseContent = response.body();
-            EmbeddingResponseBody responseBody = objectMapper.readValue(responseContent, EmbeddingResponseBody.class);
-            return responseBody.getEmbeddings()[0];
-        } catch (Exception ex) {
-            throw new RuntimeException("Failed to create embedding", ex);
+        if (response.statusCode() != 200) {
+            throw new RuntimeException("Failed to create embedding. Status code: " + response.statusCode() + ", Body: " + response.body());
+        }
+
+        log.info("Embedding creation of {} text(s) took: {} ms", texts.size(), sw.getTotalTimeMillis());
+
+        String responseContent = response.body();
+        EmbeddingResponseBody responseBody = objectMapper.readValue(responseContent, EmbeddingResponseBody.class);
+        float[][] embeddings = responseBody.getEmbeddings();
+        if (embeddings == null || embeddings.length != texts.size()) {
+            throw new RuntimeException("Expected " + texts.size() + " embeddings, received " + (embeddings == null ? 0 : embeddings.length));
         }
+        return embeddings;
     }
 }
\ No newline at end of file
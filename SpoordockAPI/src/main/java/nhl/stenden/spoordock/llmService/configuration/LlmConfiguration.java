@@ -1,6 +1,11 @@
 package nhl.stenden.spoordock.llmService.configuration;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -14,6 +19,13 @@ public class LlmConfiguration {
     private String baseUrl;
     private String defaultModel;
     private SystemPrompts systemPrompts;
+    private Streaming streaming = new Streaming();
+    private ModelCache modelCache = new ModelCache();
+    private Embedding embedding = new Embedding();
+    private History history = new History();
+    private Context context = new Context();
+    private Compaction compaction = new Compaction();
+    private List<Model> models = new ArrayList<>();
 
     @Getter @Setter
     public static class SystemPrompts {
@@ -22,4 +34,108 @@ public class LlmConfiguration {
         private String analysisPrompt;
 
     }
+
+    @Getter @Setter
+    public static class Model {
+        private String name;
+        // Contextlengte (in tokens) die het model ondersteunt; wordt als num_ctx meegestuurd
+        private int contextLength;
+    }
+
+    @Getter @Setter
+    public static class Context {
+        // num_ctx voor modellen die niet onder llm.models staan
+        private int defaultContextLength = 8192;
+        // Tokens die vrij blijven voor het antwoord van het model
+        private int responseReserve = 1024;
+        // Maximaal aantal berichten uit de geschiedenis dat in het contextvenster kan komen
+        private int maxHistoryMessages = 200;
+    }
+
+    @Getter @Setter
+    public static class Compaction {
+        // Oudere berichten samenvatten zodra een gesprek boven triggerRatio van het context window uitkomt
+        private boolean enabled = true;
+        // Deel van de contextLength van het chat model (llm.models) waarboven de geschiedenis samengevat wordt
+        private double triggerRatio = 0.75;
+        // Wachttijd voordat een gesprek waarvan de samenvatting niet toegepast kon worden opnieuw wordt geprobeerd
+        private Duration retryBackoff = Duration.ofMinutes(1);
+        // Zoveel nieuwste berichten blijven letterlijk staan
+        private int keepRecentMessages = 6;
+        // Tool resultaten die langer zijn (in tekens) worden ook in de recente berichten samengevat
+        private int maxToolMessageChars = 2000;
+        // Model voor de samenvattingen; leeg = defaultModel
+        private String model;
+    }
+
+    @Getter @Setter
+    public static class Streaming {
+        // Gebruik sendAsync met backpressure i.p.v. een blokkerende thread per chat sessie
+        private boolean async = true;
+        // Aantal gelijktijdige streams per model, daarboven wordt er gewacht in de wachtrij
+        private int maxConcurrentPerModel = 4;
+        // Maximale wachtrij per model, daarboven krijgt de client een 429
+        private int maxQueuedPerModel = 8;
+    }
+
+    @Getter @Setter
+    public static class ModelCache {
+        // Na deze tijd wordt de modellenlijst op de achtergrond ververst, de oude lijst blijft tot dan bruikbaar
+        private Duration ttl = Duration.ofMinutes(5);
+        // Hoe vaak gecontroleerd wordt of de lijst ouder is dan de ttl; ververst zelf niet eerder dan de ttl
+        private Duration refreshInterval = Duration.ofMinutes(1);
+        // Lukt verversen zo lang niet, dan vervalt de lijst en krijgt de volgende aanvraag de fout van Ollama
+        private Duration maxStaleness = Duration.ofMinutes(30);
+    }
+
+    @Getter @Setter
+    public static class History {
+        // Maximaal aantal berichten per gesprek, inclusief het systeembericht; de oudste berichten vervallen eerst
+        private int maxMessagesPerConversation = 200;
+        // Gesprekken die zo lang niet gebruikt zijn worden opgeruimd
+        private Duration idleTtl = Duration.ofMinutes(30);
+        // Geschatte bovengrens voor alle gesprekken samen; daarboven worden de minst recent gebruikte gesprekken verwijderd
+        private DataSize maxMemory = DataSize.ofMegabytes(64);
+        // in-memory, of postgres: gesprekken in de tabel chat_messages met de in-memory opslag als cache
+        private String backend = "in-memory";
+        // Interval waarmee gebufferde berichten naar de database geschreven worden (alleen backend postgres)
+        private Duration flushInterval = Duration.ofMillis(200);
+        // Maximaal aantal berichten dat op de database wacht; daarboven vervallen de oudste (alleen backend postgres)
+        private int maxPendingWrites = 10_000;
+        // Aantal pogingen voordat een door de database geweigerd bericht wordt opgegeven (alleen backend postgres)
+        private int maxWriteAttempts = 3;
+    }
+
+    @Getter @Setter
+    public static class Embedding {
+        // Aantal teksten per /api/embed aanroep
+        private int batchSize = 64;
+        // Wachttijd na de laatste wijziging van een gebouw voordat het ge-embed wordt
+        private Duration debounce = Duration.ofSeconds(2);
+        // Maximaal aantal vectoren in de LRU embedding cache in het geheugen (0 = uit)
+        private int cacheMaxEntries = 2000;
+        // Embeddings ook in de tabel embedding_cache bewaren, zodat ze een herstart overleven
+        private boolean cacheDatabaseTier = false;
+        // Rijen in embedding_cache ouder dan dit worden opgeruimd
+        private Duration cacheDatabaseMaxAge = Duration.ofDays(30);
+        // Maximaal aantal rijen in embedding_cache; daarboven worden de oudste verwijderd
+        private int cacheDatabaseMaxEntries = 100_000;
+        // Aantal gebouwen per pagina (en per checkpoint) bij een volledige re-index
+        private int reindexPageSize = 500;
+        // Maximaal aantal gelijktijdige /api/embed aanroepen tijdens een re-index
+        private int reindexConcurrency = 2;
+        // Kandidatenlijst van de HNSW index per zoekopdracht: hoger = betere recall, trager (pgvector standaard 40)
+        private int hnswEfSearch = 40;
+        // Aantal lijsten dat doorzocht wordt als er (nog) een ivfflat index is (pgvector standaard 1)
+        private int ivfflatProbes = 10;
+        // Waar de semantische zoekopdracht naar gebouwen uitgevoerd wordt
+        private SearchBackend searchBackend = SearchBackend.PGVECTOR;
+    }
+
+    public enum SearchBackend {
+        // Via de HNSW index in PostgreSQL
+        PGVECTOR,
+        // Exacte scan over een kopie van polygon_embeddings in het geheugen, zonder database round-trip
+        IN_MEMORY
+    }
 }
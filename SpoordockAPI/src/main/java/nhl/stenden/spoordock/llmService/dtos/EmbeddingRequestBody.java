@@ -1,5 +1,7 @@
 package nhl.stenden.spoordock.llmService.dtos;
 
+import java.util.List;
+
 import lombok.Setter;
 import lombok.Getter;
 
@@ -7,10 +9,15 @@ import lombok.Getter;
 @Setter
 public class EmbeddingRequestBody {
     public String model;
-    public String input;
+    // /api/embed accepteert een lijst met invoer en geeft per invoer een vector terug
+    public List<String> input;
     public int dimensions;
 
     public EmbeddingRequestBody(String model, String input, int dimensions) {
+        this(model, List.of(input), dimensions);
+    }
+
+    public EmbeddingRequestBody(String model, List<String> input, int dimensions) {
         this.model = model;
         this.input = input;
         this.dimensions = dimensions;
@@ -27,5 +27,11 @@ public class GenerateRequest {
     @JsonProperty("stream")
     private boolean stream = true;
 
+    @JsonProperty("think")
+    private boolean think = false;
+
+    @JsonProperty("options")
+    private Options options;
+
 
 }
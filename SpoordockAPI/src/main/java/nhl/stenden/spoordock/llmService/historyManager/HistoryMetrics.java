@@ -0,0 +1,28 @@
+package nhl.stenden.spoordock.llmService.historyManager;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Size and eviction counters of a chat history store, served on {@code /api/ai/history}.
+ * The write-behind counters are only used by a store that writes to a database; they stay 0 otherwise.
+ */
+@Getter
+@AllArgsConstructor
+public class HistoryMetrics {
+    private int liveConversations;
+    private long estimatedBytes;
+    private long maxMemoryBytes;
+    // Removed by the idle TTL sweep
+    private long expiredConversations;
+    // Removed because the memory budget was exceeded
+    private long evictedConversations;
+    // Oldest messages dropped because a conversation hit the message cap
+    private long trimmedMessages;
+    // Messages waiting in the write-behind buffer
+    private int pendingWrites;
+    // Dropped from the write-behind buffer because it was full
+    private long droppedWrites;
+    // Dropped because the database rejected them maxWriteAttempts times
+    private long deadLetteredWrites;
+}
@@ -12,5 +12,21 @@ public interface IChatHistoryManager {
     public void clearHistory(UUID conversationId);
     public List<OllamaMessage> getHistory(UUID conversationId, int maxMessages);
 
-    
+    /**
+     * Replaces a contiguous run of messages (matched by instance, as returned by {@link #getHistory}) with a single
+     * message, for example a summary of older turns. Messages appended in the meantime are kept.
+     *
+     * @return false when the run is no longer in the history, for example because it was trimmed or cleared
+     */
+    public boolean replaceMessages(UUID conversationId, List<OllamaMessage> original, OllamaMessage replacement);
+
+    /**
+     * Keeps the conversation from being evicted (memory budget or idle TTL) until {@link #unpin} is called, so a
+     * running stream can keep appending to it. Pins are counted per conversation and may be taken before the
+     * conversation exists; {@link #clearHistory} still removes a pinned conversation.
+     */
+    public void pin(UUID conversationId);
+    public void unpin(UUID conversationId);
+
+    public HistoryMetrics getMetrics();
 }
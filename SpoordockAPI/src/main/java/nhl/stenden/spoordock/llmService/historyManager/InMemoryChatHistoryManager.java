@@ -1,69 +1,256 @@
 package nhl.stenden.spoordock.llmService.historyManager;
 
-import java.util.ArrayDeque;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 
+import lombok.extern.slf4j.Slf4j;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
 import nhl.stenden.spoordock.llmService.historyManager.classes.OllamaMessage;
 
+/**
+ * Thread-safe, bounded chat history store.
+ *
+ * Every conversation has its own lock, so SSE handlers of different conversations never wait on each other.
+ * The store is bounded in three ways: a conversation keeps at most {@code maxMessagesPerConversation} messages
+ * (the system message is always kept), conversations that have been idle longer than {@code idleTtl} are removed
+ * by a periodic sweep, and when the estimated size of all messages exceeds {@code maxMemory} the least recently
+ * used conversations are evicted. Conversations that are pinned by a running stream are never evicted.
+ * The system message is pinned and the other messages live in a {@link MessageRingBuffer}, so reading the
+ * window for a chat request costs O(window) instead of a copy of the whole conversation.
+ */
+@Slf4j
 @Repository
 public class InMemoryChatHistoryManager implements IChatHistoryManager {
 
-    private Map<UUID, Queue<OllamaMessage>> conversationHistories = new HashMap<UUID, Queue<OllamaMessage>>();
+    // Rough per-message overhead: object header, role, string header and deque slot
+    private static final long MESSAGE_OVERHEAD_BYTES = 64;
+
+    private final int maxMessagesPerConversation;
+    private final long idleTtlNanos;
+    private final long maxMemoryBytes;
+    private final LongSupplier nanoClock;
+
+    private final Map<UUID, Conversation> conversations = new ConcurrentHashMap<>();
+    private final AtomicLong estimatedBytes = new AtomicLong(0);
+    // Number of running streams per conversation; kept apart from the conversations so a pin can precede the create
+    private final Map<UUID, Integer> pins = new ConcurrentHashMap<>();
+
+    private final AtomicLong expiredConversations = new AtomicLong(0);
+    private final AtomicLong evictedConversations = new AtomicLong(0);
+    private final AtomicLong trimmedMessages = new AtomicLong(0);
+
+    public InMemoryChatHistoryManager() {
+        this(new LlmConfiguration.History(), System::nanoTime);
+    }
+
+    @Autowired
+    public InMemoryChatHistoryManager(LlmConfiguration configuration) {
+        this(configuration.getHistory(), System::nanoTime);
+    }
+
+    public InMemoryChatHistoryManager(LlmConfiguration.History history, LongSupplier nanoClock) {
+        // At least the system message and one other message
+        this.maxMessagesPerConversation = Math.max(2, history.getMaxMessagesPerConversation());
+        this.idleTtlNanos = history.getIdleTtl().toNanos();
+        this.maxMemoryBytes = history.getMaxMemory().toBytes();
+        this.nanoClock = nanoClock;
+    }
 
     @Override
     public void createHistoryIfNotExists(UUID conversationId, OllamaMessage systemMessage) {
-        if (!conversationHistories.containsKey(conversationId)) {
-            Queue<OllamaMessage> newHistory = new ArrayDeque<>();
-            newHistory.add(systemMessage);
-            conversationHistories.put(conversationId, newHistory);
-        }
+        Conversation conversation = conversations.computeIfAbsent(conversationId, id -> {
+            long bytes = estimateBytes(systemMessage);
+            estimatedBytes.addAndGet(bytes);
+            // The system message is pinned outside the ring buffer, so the buffer holds one message less than the cap
+            return new Conversation(systemMessage, maxMessagesPerConversation - 1, bytes, nanoClock.getAsLong());
+        });
+        conversation.touch(nanoClock.getAsLong());
     }
 
     @Override
     public void addMessageToHistory(UUID conversationId, OllamaMessage message) {
-        if (!conversationHistories.containsKey(conversationId)) {
+        Conversation conversation = conversations.get(conversationId);
+        if (conversation == null) {
             throw new IllegalArgumentException("Conversation ID does not exist: " + conversationId.toString());
         }
 
-        conversationHistories.get(conversationId).add(message);
+        synchronized (conversation) {
+            if (conversation.removed) {
+                throw new IllegalArgumentException("Conversation ID does not exist: " + conversationId.toString());
+            }
+            long added = estimateBytes(message);
+            OllamaMessage overwritten = conversation.messages.add(message);
+            if (overwritten != null) {
+                added -= estimateBytes(overwritten);
+                trimmedMessages.incrementAndGet();
+            }
+            conversation.bytes += added;
+            estimatedBytes.addAndGet(added);
+            conversation.touch(nanoClock.getAsLong());
+        }
+
+        if (estimatedBytes.get() > maxMemoryBytes) {
+            evictLeastRecentlyUsed(conversationId);
+        }
     }
 
     @Override
     public void clearHistory(UUID conversationId) {
-        conversationHistories.remove(conversationId);
+        Conversation conversation = conversations.remove(conversationId);
+        if (conversation != null) {
+            release(conversation);
+        }
     }
 
     @Override
     public List<OllamaMessage> getHistory(UUID conversationId, int maxMessages) {
-        if (!conversationHistories.containsKey(conversationId)) {
-            return new LinkedList<OllamaMessage>();
+        Conversation conversation = conversations.get(conversationId);
+        if (conversation == null) {
+            return new ArrayList<>();
         }
 
-        Queue<OllamaMessage> fullHistory = conversationHistories.get(conversationId);
+        synchronized (conversation) {
+            if (conversation.removed) {
+                return new ArrayList<>();
+            }
+            conversation.touch(nanoClock.getAsLong());
 
-        if (fullHistory.size() <= maxMessages) {
-            return new LinkedList<>(fullHistory);
+            // Always include the system message + the last (maxMessages - 1) messages, in O(maxMessages)
+            int tail = Math.min(conversation.messages.size(), Math.max(0, maxMessages - 1));
+            List<OllamaMessage> result = new ArrayList<>(tail + 1);
+            result.add(conversation.systemMessage);
+            conversation.messages.copyTail(tail, result);
+            return result;
         }
+    }
 
-        // Always include first message (system) + last (maxMessages - 1) messages
-        List<OllamaMessage> result = new LinkedList<>();
-        List<OllamaMessage> historyList = new LinkedList<>(fullHistory);
+    @Override
+    public boolean replaceMessages(UUID conversationId, List<OllamaMessage> original, OllamaMessage replacement) {
+        Conversation conversation = conversations.get(conversationId);
+        if (conversation == null) {
+            return false;
+        }
 
-        result.add(historyList.get(0)); // System message
+        synchronized (conversation) {
+            if (conversation.removed || !conversation.messages.replace(original, replacement)) {
+                return false;
+            }
+            // Not a touch: compaction runs in the background and is no sign that the conversation is in use
+            long delta = estimateBytes(replacement);
+            for (OllamaMessage message : original) {
+                delta -= estimateBytes(message);
+            }
+            conversation.bytes += delta;
+            estimatedBytes.addAndGet(delta);
+            return true;
+        }
+    }
 
-        int skipCount = historyList.size() - (maxMessages - 1);
-        historyList.stream()
-                .skip(Math.max(1, skipCount)) // Skip from index 1, keep last (maxMessages-1)
-                .forEach(result::add);
+    @Override
+    public void pin(UUID conversationId) {
+        pins.merge(conversationId, 1, Integer::sum);
+    }
 
-        return result;
+    @Override
+    public void unpin(UUID conversationId) {
+        pins.computeIfPresent(conversationId, (id, count) -> count > 1 ? count - 1 : null);
     }
 
+    /**
+     * Removes conversations that have not been read or written for longer than the idle TTL.
+     */
+    @Scheduled(fixedDelayString = "${llm.history.sweepInterval:PT1M}")
+    public void evictIdleConversations() {
+        long now = nanoClock.getAsLong();
+        for (Map.Entry<UUID, Conversation> entry : conversations.entrySet()) {
+            if (now - entry.getValue().lastAccessNanos > idleTtlNanos
+                    && !pins.containsKey(entry.getKey())
+                    && conversations.remove(entry.getKey(), entry.getValue())) {
+                release(entry.getValue());
+                expiredConversations.incrementAndGet();
+            }
+        }
+    }
+
+    public int getMaxMessagesPerConversation() {
+        return maxMessagesPerConversation;
+    }
+
+    @Override
+    public HistoryMetrics getMetrics() {
+        return new HistoryMetrics(
+            conversations.size(),
+            estimatedBytes.get(),
+            maxMemoryBytes,
+            expiredConversations.get(),
+            evictedConversations.get(),
+            trimmedMessages.get(),
+            0, 0, 0);
+    }
+
+    // Scans for the oldest conversation; this only runs when the memory budget is exceeded
+    private void evictLeastRecentlyUsed(UUID activeConversationId) {
+        while (estimatedBytes.get() > maxMemoryBytes) {
+            Map.Entry<UUID, Conversation> oldest = null;
+            for (Map.Entry<UUID, Conversation> entry : conversations.entrySet()) {
+                if (entry.getKey().equals(activeConversationId) || pins.containsKey(entry.getKey())) {
+                    continue;
+                }
+                if (oldest == null || entry.getValue().lastAccessNanos < oldest.getValue().lastAccessNanos) {
+                    oldest = entry;
+                }
+            }
+            if (oldest == null) {
+                // Only the active and pinned conversations are left; the message cap keeps those bounded
+                return;
+            }
+            if (conversations.remove(oldest.getKey(), oldest.getValue())) {
+                release(oldest.getValue());
+                evictedConversations.incrementAndGet();
+                log.debug("Evicted conversation {} to stay within the history memory budget", oldest.getKey());
+            }
+        }
+    }
+
+    private void release(Conversation conversation) {
+        synchronized (conversation) {
+            conversation.removed = true;
+            estimatedBytes.addAndGet(-conversation.bytes);
+            conversation.bytes = 0;
+        }
+    }
+
+    private static long estimateBytes(OllamaMessage message) {
+        String content = message.getContent();
+        return MESSAGE_OVERHEAD_BYTES + (content == null ? 0 : 2L * content.length());
+    }
+
+    private static class Conversation {
+        private final OllamaMessage systemMessage;
+        private final MessageRingBuffer messages;
+        private long bytes;
+        private volatile long lastAccessNanos;
+        // Set once the conversation has been removed from the map, so late writers do not leak memory into it
+        private boolean removed;
+
+        private Conversation(OllamaMessage systemMessage, int maxMessages, long bytes, long now) {
+            this.systemMessage = systemMessage;
+            this.messages = new MessageRingBuffer(maxMessages);
+            this.bytes = bytes;
+            this.lastAccessNanos = now;
+        }
+
+        private void touch(long now) {
+            lastAccessNanos = now;
+        }
+    }
 }
@@ -0,0 +1,127 @@
+package nhl.stenden.spoordock.llmService.historyManager;
+
+import java.util.List;
+
+import nhl.stenden.spoordock.llmService.historyManager.classes.OllamaMessage;
+
+/**
+ * Ring buffer with the non-system messages of one conversation.
+ *
+ * The backing array grows (doubling) up to {@code maxCapacity}; once it is full the oldest message is overwritten.
+ * The last k messages are read by index arithmetic, so a history window costs O(k) regardless of how long the
+ * conversation is.
+ *
+ * This class is not thread-safe; the InMemoryChatHistoryManager guards it with the conversation lock.
+ */
+class MessageRingBuffer {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int maxCapacity;
+    private OllamaMessage[] slots;
+    // Index of the oldest message
+    private int head;
+    private int size;
+
+    MessageRingBuffer(int maxCapacity) {
+        this.maxCapacity = Math.max(1, maxCapacity);
+        this.slots = new OllamaMessage[Math.min(INITIAL_CAPACITY, this.maxCapacity)];
+    }
+
+    /**
+     * Appends a message.
+     *
+     * @return the oldest message when it had to make room, otherwise null
+     */
+    OllamaMessage add(OllamaMessage message) {
+        if (size == slots.length && slots.length < maxCapacity) {
+            grow();
+        }
+        if (size == slots.length) {
+            OllamaMessage overwritten = slots[head];
+            slots[head] = message;
+            head = next(head);
+            return overwritten;
+        }
+        slots[index(size)] = message;
+        size++;
+        return null;
+    }
+
+    /**
+     * Adds the last {@code count} messages to {@code target}, oldest first.
+     */
+    void copyTail(int count, List<OllamaMessage> target) {
+        int tail = Math.min(Math.max(0, count), size);
+        for (int i = size - tail; i < size; i++) {
+            target.add(slots[index(i)]);
+        }
+    }
+
+    /**
+     * Replaces the contiguous run {@code original} (matched by instance) with {@code replacement}. This rebuilds
+     * the buffer in O(size), which is fine for the occasional compaction but not for the append path.
+     *
+     * @return false when the run is not in the buffer
+     */
+    boolean replace(List<OllamaMessage> original, OllamaMessage replacement) {
+        int start = indexOfRun(original);
+        if (start < 0) {
+            return false;
+        }
+
+        OllamaMessage[] rebuilt = new OllamaMessage[slots.length];
+        int count = 0;
+        for (int i = 0; i < start; i++) {
+            rebuilt[count++] = slots[index(i)];
+        }
+        rebuilt[count++] = replacement;
+        for (int i = start + original.size(); i < size; i++) {
+            rebuilt[count++] = slots[index(i)];
+        }
+        slots = rebuilt;
+        head = 0;
+        size = count;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Position of the first message of the run, counted from the oldest message, or -1
+    private int indexOfRun(List<OllamaMessage> run) {
+        if (run.isEmpty()) {
+            return -1;
+        }
+        for (int start = 0; start + run.size() <= size; start++) {
+            int matched = 0;
+            while (matched < run.size() && slots[index(start + matched)] == run.get(matched)) {
+                matched++;
+            }
+            if (matched == run.size()) {
+                return start;
+            }
+        }
+        return -1;
+    }
+
+    // Physical slot of the i-th oldest message
+    private int index(int i) {
+        int slot = head + i;
+        return slot < slots.length ? slot : slot - slots.length;
+    }
+
+    private int next(int slot) {
+        return slot + 1 == slots.length ? 0 : slot + 1;
+    }
+
+    private void grow() {
+        OllamaMessage[] grown = new OllamaMessage[(int) Math.min((long) slots.length * 2, maxCapacity)];
+        for (int i = 0; i < size; i++) {
+            grown[i] = slots[index(i)];
+        }
+        slots = grown;
+        head = 0;
+    }
+}
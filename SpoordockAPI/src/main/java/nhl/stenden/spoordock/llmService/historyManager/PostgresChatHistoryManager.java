@@ -0,0 +1,492 @@
+package nhl.stenden.spoordock.llmService.historyManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+import nhl.stenden.spoordock.llmService.historyManager.classes.BotMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.OllamaMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.Role;
+import nhl.stenden.spoordock.llmService.historyManager.classes.SystemMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.ToolMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.UserMessage;
+
+/**
+ * Chat history in PostgreSQL (table chat_messages), so conversations survive a restart.
+ * Enabled with {@code llm.history.backend: postgres}.
+ *
+ * Appends never wait for the database: they go to the in-memory store, which doubles as a hot tail cache,
+ * and to a write-behind buffer that is flushed in JDBC batches every {@code flushInterval}. {@link #getHistory}
+ * is served from the tail cache as long as the requested window fits in it; only a conversation that is not
+ * cached (for example after a restart) or a larger window is read from the database.
+ *
+ * The tail cache is never invalidated by other instances, so a conversation has to be served by one replica
+ * at a time (sticky sessions). Another replica only sees its messages once its own cached copy, if any, has
+ * been removed by the idle TTL.
+ *
+ * The buffer holds at most {@code maxPendingWrites} messages; while the database is down the oldest are dropped
+ * from it (they stay in the tail cache). A message the database rejects is retried on the next flushes and
+ * dropped with an error after {@code maxWriteAttempts}, so it cannot hold up the rest of the buffer.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(prefix = "llm.history", name = "backend", havingValue = "postgres")
+public class PostgresChatHistoryManager implements IChatHistoryManager {
+
+    private static final String INSERT = """
+        INSERT INTO chat_messages (conversation_id, role, content, tool_name) VALUES (?, ?, ?, ?)
+        """;
+    private static final String SELECT_FIRST = """
+        SELECT sequence_number, role, content, tool_name FROM chat_messages
+        WHERE conversation_id = ? ORDER BY sequence_number LIMIT 1
+        """;
+    private static final String SELECT_TAIL = """
+        SELECT sequence_number, role, content, tool_name FROM chat_messages
+        WHERE conversation_id = ? AND sequence_number > ? ORDER BY sequence_number DESC LIMIT ?
+        """;
+    // The replacement takes the place (sequence number) of the first message of the run, the rest of the run is deleted
+    private static final String REPLACE_RUN = """
+        WITH replaced AS (
+            UPDATE chat_messages SET role = ?, content = ?, tool_name = ? WHERE sequence_number = ?
+        )
+        DELETE FROM chat_messages WHERE conversation_id = ? AND sequence_number > ? AND sequence_number <= ?
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InMemoryChatHistoryManager tailCache;
+    private final ScheduledExecutorService flusher;
+    private final long flushIntervalMillis;
+    private final int maxPendingWrites;
+    private final int maxWriteAttempts;
+
+    // Messages that are in the tail cache but not yet in the database, in append order
+    private final Deque<PendingMessage> pending = new ArrayDeque<>();
+
+    // Held while a batch is written, so clearHistory cannot delete rows that a running flush is about to insert
+    private final Object writeLock = new Object();
+
+    // Loading a conversation from the database happens at most once at a time per stripe
+    private final Object[] loadLocks = new Object[64];
+
+    private final AtomicLong droppedWrites = new AtomicLong(0);
+    private final AtomicLong deadLetteredWrites = new AtomicLong(0);
+
+    @Autowired
+    public PostgresChatHistoryManager(JdbcTemplate jdbcTemplate, InMemoryChatHistoryManager tailCache, LlmConfiguration configuration) {
+        this(jdbcTemplate, tailCache, configuration.getHistory(),
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("chat-history-writer").factory()));
+    }
+
+    public PostgresChatHistoryManager(JdbcTemplate jdbcTemplate, InMemoryChatHistoryManager tailCache,
+            LlmConfiguration.History history, ScheduledExecutorService flusher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tailCache = tailCache;
+        this.flusher = flusher;
+        this.flushIntervalMillis = Math.max(1, history.getFlushInterval().toMillis());
+        this.maxPendingWrites = Math.max(1, history.getMaxPendingWrites());
+        this.maxWriteAttempts = Math.max(1, history.getMaxWriteAttempts());
+        for (int i = 0; i < loadLocks.length; i++) {
+            loadLocks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void createHistoryIfNotExists(UUID conversationId, OllamaMessage systemMessage) {
+        synchronized (loadLock(conversationId)) {
+            if (ensureCached(conversationId)) {
+                return;
+            }
+            tailCache.createHistoryIfNotExists(conversationId, systemMessage);
+            enqueue(conversationId, systemMessage);
+        }
+    }
+
+    @Override
+    public void addMessageToHistory(UUID conversationId, OllamaMessage message) {
+        // Under the conversation lock, so replaceMessages sees the tail cache and the buffer in the same state
+        synchronized (loadLock(conversationId)) {
+            if (!ensureCached(conversationId)) {
+                throw new IllegalArgumentException("Conversation ID does not exist: " + conversationId.toString());
+            }
+            tailCache.addMessageToHistory(conversationId, message);
+            enqueue(conversationId, message);
+        }
+    }
+
+    @Override
+    public void clearHistory(UUID conversationId) {
+        synchronized (loadLock(conversationId)) {
+            tailCache.clearHistory(conversationId);
+            // Waits for a running flush, which may hold messages of this conversation that are not in pending anymore
+            synchronized (writeLock) {
+                synchronized (pending) {
+                    pending.removeIf(message -> message.conversationId.equals(conversationId));
+                }
+                jdbcTemplate.update("DELETE FROM chat_messages WHERE conversation_id = ?", conversationId);
+            }
+        }
+    }
+
+    @Override
+    public List<OllamaMessage> getHistory(UUID conversationId, int maxMessages) {
+        if (maxMessages <= tailCache.getMaxMessagesPerConversation()) {
+            if (!ensureCached(conversationId)) {
+                return new ArrayList<>();
+            }
+            List<OllamaMessage> cached = tailCache.getHistory(conversationId, maxMessages);
+            if (!cached.isEmpty()) {
+                return cached;
+            }
+        }
+
+        // Window is larger than the tail cache (or the conversation was evicted in the meantime)
+        flush();
+        return loadFromDatabase(conversationId, maxMessages);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The run is located once, by instance, in the tail cache. The table has no message identity, so that position
+     * is translated to sequence numbers by counting back from the newest stored message (after a flush the table
+     * ends with the same messages as the cache); the stored rows are checked against the run before the run is
+     * replaced in a single statement, and the tail cache is then updated at the same position.
+     */
+    @Override
+    public boolean replaceMessages(UUID conversationId, List<OllamaMessage> original, OllamaMessage replacement) {
+        if (original.isEmpty()) {
+            return false;
+        }
+        synchronized (loadLock(conversationId)) {
+            List<OllamaMessage> cached = tailCache.getHistory(conversationId, tailCache.getMaxMessagesPerConversation());
+            int cachedStart = indexOfRun(cached, original);
+            if (cachedStart < 0) {
+                return false;
+            }
+            int newerMessages = cached.size() - cachedStart - original.size();
+
+            flush();
+            List<StoredMessage> first = jdbcTemplate.query(SELECT_FIRST, PostgresChatHistoryManager::mapRow, conversationId);
+            if (first.isEmpty()) {
+                return false;
+            }
+            List<StoredMessage> tail = new ArrayList<>(jdbcTemplate.query(SELECT_TAIL, PostgresChatHistoryManager::mapRow,
+                conversationId, first.get(0).sequenceNumber, tailCache.getMaxMessagesPerConversation()));
+            Collections.reverse(tail);
+
+            // Same position as in the cache; a mismatch means the table misses messages (for example a dropped write)
+            int start = tail.size() - newerMessages - original.size();
+            if (start < 0 || !storedRunMatches(tail, start, original)) {
+                return false;
+            }
+            jdbcTemplate.update(REPLACE_RUN,
+                replacement.getRole().name(),
+                replacement.getContent(),
+                replacement instanceof ToolMessage toolMessage ? toolMessage.getToolName() : null,
+                tail.get(start).sequenceNumber,
+                conversationId,
+                tail.get(start).sequenceNumber,
+                tail.get(start + original.size() - 1).sequenceNumber);
+
+            tailCache.replaceMessages(conversationId, original, replacement);
+            return true;
+        }
+    }
+
+    /**
+     * Writes all buffered messages to the database in one JDBC batch.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            List<PendingMessage> batch;
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = new ArrayList<>(pending);
+                pending.clear();
+            }
+
+            try {
+                jdbcTemplate.batchUpdate(INSERT, batch, batch.size(), (statement, message) -> {
+                    statement.setObject(1, message.conversationId);
+                    statement.setString(2, message.message.getRole().name());
+                    statement.setString(3, message.message.getContent());
+                    statement.setString(4, message.message instanceof ToolMessage toolMessage ? toolMessage.getToolName() : null);
+                });
+            } catch (DataIntegrityViolationException ex) {
+                // One rejected row fails the whole batch; row by row only that row (and its conversation) is held back
+                writeIndividually(batch);
+            } catch (RuntimeException ex) {
+                // Database unavailable: put the batch back in front, so the order within a conversation is preserved
+                requeue(batch);
+                throw ex;
+            }
+        }
+    }
+
+    public int getPendingWriteCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Messages dropped from the buffer because it was full; they are still in the tail cache but not in the table.
+     */
+    public long getDroppedWriteCount() {
+        return droppedWrites.get();
+    }
+
+    /**
+     * Messages dropped because the database rejected them {@code maxWriteAttempts} times.
+     */
+    public long getDeadLetteredWriteCount() {
+        return deadLetteredWrites.get();
+    }
+
+    // The database copy cannot be evicted; pinning only keeps the tail cache (and its unflushed messages) in memory
+    @Override
+    public void pin(UUID conversationId) {
+        tailCache.pin(conversationId);
+    }
+
+    @Override
+    public void unpin(UUID conversationId) {
+        tailCache.unpin(conversationId);
+    }
+
+    /**
+     * Metrics of the tail cache together with the state of the write-behind buffer.
+     */
+    @Override
+    public HistoryMetrics getMetrics() {
+        HistoryMetrics cache = tailCache.getMetrics();
+        return new HistoryMetrics(
+            cache.getLiveConversations(),
+            cache.getEstimatedBytes(),
+            cache.getMaxMemoryBytes(),
+            cache.getExpiredConversations(),
+            cache.getEvictedConversations(),
+            cache.getTrimmedMessages(),
+            getPendingWriteCount(),
+            droppedWrites.get(),
+            deadLetteredWrites.get());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flushSafely();
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception ex) {
+            log.error("Writing {} chat message(s) to the database failed, retrying on the next flush ({} dropped so far because the buffer was full)",
+                getPendingWriteCount(), droppedWrites.get(), ex);
+        }
+    }
+
+    private void writeIndividually(List<PendingMessage> batch) {
+        List<PendingMessage> retry = new ArrayList<>();
+        // A later message must not overtake a held back message of the same conversation
+        Set<UUID> heldBack = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            PendingMessage message = batch.get(i);
+            if (heldBack.contains(message.conversationId)) {
+                retry.add(message);
+                continue;
+            }
+            try {
+                jdbcTemplate.update(INSERT, insertParameters(message));
+            } catch (DataIntegrityViolationException ex) {
+                if (++message.attempts >= maxWriteAttempts) {
+                    deadLetteredWrites.incrementAndGet();
+                    log.error("Chat message ({}) of conversation {} was rejected {} times and is not stored",
+                        message.message.getRole(), message.conversationId, message.attempts, ex);
+                } else {
+                    retry.add(message);
+                    heldBack.add(message.conversationId);
+                }
+            } catch (RuntimeException ex) {
+                retry.addAll(batch.subList(i, batch.size()));
+                requeue(retry);
+                throw ex;
+            }
+        }
+        requeue(retry);
+    }
+
+    private void enqueue(UUID conversationId, OllamaMessage message) {
+        synchronized (pending) {
+            pending.addLast(new PendingMessage(conversationId, message));
+            trimPending();
+        }
+    }
+
+    private void requeue(List<PendingMessage> messages) {
+        synchronized (pending) {
+            for (int i = messages.size() - 1; i >= 0; i--) {
+                pending.addFirst(messages.get(i));
+            }
+            trimPending();
+        }
+    }
+
+    // Caller holds the pending lock
+    private void trimPending() {
+        while (pending.size() > maxPendingWrites) {
+            pending.removeFirst();
+            droppedWrites.incrementAndGet();
+        }
+    }
+
+    private static Object[] insertParameters(PendingMessage message) {
+        return new Object[] {
+            message.conversationId,
+            message.message.getRole().name(),
+            message.message.getContent(),
+            message.message instanceof ToolMessage toolMessage ? toolMessage.getToolName() : null
+        };
+    }
+
+    /**
+     * Makes sure the conversation is in the tail cache, loading it from the database when needed.
+     *
+     * @return false when the conversation does not exist at all
+     */
+    private boolean ensureCached(UUID conversationId) {
+        if (!tailCache.getHistory(conversationId, 1).isEmpty()) {
+            return true;
+        }
+        synchronized (loadLock(conversationId)) {
+            if (!tailCache.getHistory(conversationId, 1).isEmpty()) {
+                return true;
+            }
+            // Messages of an evicted conversation may still be buffered; they have to be in the table before we read it
+            flush();
+            List<OllamaMessage> stored = loadFromDatabase(conversationId, tailCache.getMaxMessagesPerConversation());
+            if (stored.isEmpty()) {
+                return false;
+            }
+            tailCache.createHistoryIfNotExists(conversationId, stored.get(0));
+            for (OllamaMessage message : stored.subList(1, stored.size())) {
+                tailCache.addMessageToHistory(conversationId, message);
+            }
+            return true;
+        }
+    }
+
+    // The first message (system) + the last (maxMessages - 1) messages, oldest first
+    private List<OllamaMessage> loadFromDatabase(UUID conversationId, int maxMessages) {
+        List<StoredMessage> first = jdbcTemplate.query(SELECT_FIRST, PostgresChatHistoryManager::mapRow, conversationId);
+        if (first.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<StoredMessage> tail = new ArrayList<>(jdbcTemplate.query(SELECT_TAIL, PostgresChatHistoryManager::mapRow,
+            conversationId, first.get(0).sequenceNumber, Math.max(0, maxMessages - 1)));
+        Collections.reverse(tail);
+
+        List<OllamaMessage> messages = new ArrayList<>(tail.size() + 1);
+        messages.add(first.get(0).message);
+        tail.forEach(stored -> messages.add(stored.message));
+        return messages;
+    }
+
+    // By instance, like the ring buffer of the tail cache; the system message (index 0) is never part of a run
+    private static int indexOfRun(List<OllamaMessage> cached, List<OllamaMessage> run) {
+        for (int start = 1; start + run.size() <= cached.size(); start++) {
+            int matched = 0;
+            while (matched < run.size() && cached.get(start + matched) == run.get(matched)) {
+                matched++;
+            }
+            if (matched == run.size()) {
+                return start;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean storedRunMatches(List<StoredMessage> stored, int start, List<OllamaMessage> run) {
+        for (int i = 0; i < run.size(); i++) {
+            if (!sameMessage(stored.get(start + i).message, run.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameMessage(OllamaMessage stored, OllamaMessage message) {
+        return stored.getRole() == message.getRole()
+            && Objects.equals(stored.getContent(), message.getContent())
+            && Objects.equals(
+                stored instanceof ToolMessage storedTool ? storedTool.getToolName() : null,
+                message instanceof ToolMessage tool ? tool.getToolName() : null);
+    }
+
+    private static StoredMessage mapRow(ResultSet resultSet, int rowNumber) throws SQLException {
+        String content = resultSet.getString("content");
+        OllamaMessage message = switch (Role.valueOf(resultSet.getString("role"))) {
+            case SYSTEM -> new SystemMessage(content);
+            case USER -> new UserMessage(content);
+            case ASSISTANT -> new BotMessage(content);
+            case TOOL -> new ToolMessage(resultSet.getString("tool_name"), content);
+        };
+        return new StoredMessage(resultSet.getLong("sequence_number"), message);
+    }
+
+    private Object loadLock(UUID conversationId) {
+        return loadLocks[Math.floorMod(conversationId.hashCode(), loadLocks.length)];
+    }
+
+    private static class PendingMessage {
+        private final UUID conversationId;
+        private final OllamaMessage message;
+        // Number of times the database rejected this message
+        private int attempts;
+
+        private PendingMessage(UUID conversationId, OllamaMessage message) {
+            this.conversationId = conversationId;
+            this.message = message;
+        }
+    }
+
+    private static class StoredMessage {
+        private final long sequenceNumber;
+        private final OllamaMessage message;
+
+        private StoredMessage(long sequenceNumber, OllamaMessage message) {
+            this.sequenceNumber = sequenceNumber;
+            this.message = message;
+        }
+    }
+}
@@ -2,6 +2,9 @@ package nhl.stenden.spoordock.llmService.historyManager.classes;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import lombok.Getter;
+
+@Getter
 public class ToolMessage extends OllamaMessage {
 
     @JsonProperty("tool_name")
@@ -1,43 +1,90 @@
 package nhl.stenden.spoordock.services;
 
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import nhl.stenden.spoordock.backgroundprocessor.BackgroundProcessor;
+import nhl.stenden.spoordock.backgroundprocessor.CoalescingWorkQueue;
+import nhl.stenden.spoordock.controllers.dtos.EmbeddingStatsDTO;
 import nhl.stenden.spoordock.database.BuildingPolygonEmbeddingRepository;
 import nhl.stenden.spoordock.database.BuildingPolygonRepository;
 import nhl.stenden.spoordock.database.entities.BuildingPolygonEmbeddingEntity;
+import nhl.stenden.spoordock.database.entities.BuildingPolygonEntity;
+import nhl.stenden.spoordock.database.projections.EmbeddingFingerprint;
+import nhl.stenden.spoordock.llmService.EmbeddableTextMapper;
 import nhl.stenden.spoordock.llmService.OllamaEmbeddingClient;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
 import nhl.stenden.spoordock.services.mappers.BuildingEmbeddingMapper;
 
 @Slf4j
 @Component
 public class BuildingEmbeddingService {
 
-    private static final int EMBEDDING_DIMENSIONS = 768;
+    public static final int EMBEDDING_DIMENSIONS = 768;
 
     private final BackgroundProcessor backgroundProcessor;
     private final OllamaEmbeddingClient ollamaEmbeddingClient;
     private final BuildingPolygonEmbeddingRepository buildingPolygonEmbeddingRepository;
     private final BuildingPolygonRepository buildingPolygonRepository;
+    private final EmbeddingCacheService embeddingCacheService;
+    private final VectorSearchService vectorSearchService;
+    private final InMemoryVectorIndexService inMemoryVectorIndexService;
+    private final LlmConfiguration.Embedding embeddingConfiguration;
+    // Wordt in start() aangemaakt: de flush handler verwijst naar deze instantie en mag niet uit de constructor lekken
+    private CoalescingWorkQueue<UUID> embeddingQueue;
+
+    // Hit: tekst ongewijzigd, geen aanroep naar Ollama. Miss: tekst (of model) gewijzigd, wel ge-embed.
+    private final AtomicLong unchangedSourceCount = new AtomicLong(0);
+    private final AtomicLong embeddedSourceCount = new AtomicLong(0);
 
     public BuildingEmbeddingService(
         BackgroundProcessor backgroundProcessor,
         OllamaEmbeddingClient ollamaEmbeddingClient,
         BuildingPolygonEmbeddingRepository buildingPolygonEmbeddingRepository,
-        BuildingPolygonRepository buildingPolygonRepository){
+        BuildingPolygonRepository buildingPolygonRepository,
+        EmbeddingCacheService embeddingCacheService,
+        VectorSearchService vectorSearchService,
+        InMemoryVectorIndexService inMemoryVectorIndexService,
+        LlmConfiguration llmConfiguration){
         this.backgroundProcessor = backgroundProcessor;
         this.ollamaEmbeddingClient = ollamaEmbeddingClient;
         this.buildingPolygonEmbeddingRepository = buildingPolygonEmbeddingRepository;
         this.buildingPolygonRepository = buildingPolygonRepository;
+        this.embeddingCacheService = embeddingCacheService;
+        this.vectorSearchService = vectorSearchService;
+        this.inMemoryVectorIndexService = inMemoryVectorIndexService;
+        this.embeddingConfiguration = llmConfiguration.getEmbedding();
+    }
+
+    @PostConstruct
+    public void start() {
+        this.embeddingQueue = new CoalescingWorkQueue<>(
+            embeddingConfiguration.getDebounce(),
+            embeddingConfiguration.getBatchSize(),
+            this::scheduleEmbeddingTasks);
     }
 
     public List<String> getBuildingsBasedOnDescription(String prompt, int limit){
         try{
-            float[] promptEmbedding = ollamaEmbeddingClient.createEmbedding(prompt, EMBEDDING_DIMENSIONS);
-            return buildingPolygonEmbeddingRepository
-            .findNearestByEmbedding(promptEmbedding, limit)
+            // Het model herhaalt vaak dezelfde zoekvraag binnen één analyse, die komt dan uit de cache
+            float[] promptEmbedding = embeddingCacheService.getEmbedding(prompt, EMBEDDING_DIMENSIONS);
+            if (inMemoryVectorIndexService.isReady()) {
+                return inMemoryVectorIndexService.findNearest(promptEmbedding, limit)
+                    .stream().map(x->x.getSource()).toList();
+            }
+            return vectorSearchService
+            .findNearest(promptEmbedding, limit)
             .stream().map(x->x.getEmbeddingSource()).toList();
         }catch(Exception e){
             log.error("Error during getBuildingsBasedOnDescription: " + e.getMessage());
@@ -48,33 +95,147 @@ public class BuildingEmbeddingService {
 
     //Embedding takes a long time, hence the need to do this in the background
     //In general conversations don't start immediately after creating/updating a building, so this should be fine
+    //Opeenvolgende wijzigingen van hetzelfde gebouw (bijv. polygon verslepen) worden samengevoegd tot één embedding
     public void scheduleEmbeddingTask(java.util.UUID buildingId) {
+        embeddingQueue.submit(buildingId);
+    }
+
+    public int getPendingEmbeddingCount() {
+        return embeddingQueue.getPendingCount();
+    }
+
+    public long getCoalescedEmbeddingCount() {
+        return embeddingQueue.getCoalescedCount();
+    }
+
+    public EmbeddingStatsDTO getStats() {
+        return new EmbeddingStatsDTO(
+            unchangedSourceCount.get(),
+            embeddedSourceCount.get(),
+            embeddingQueue.getPendingCount(),
+            embeddingQueue.getCoalescedCount(),
+            embeddingCacheService.getStats());
+    }
+
+    // Wachtende gebouwen bij het afsluiten nog aanbieden, zodat er geen wijziging zonder embedding blijft
+    @PreDestroy
+    public void shutdown() {
+        embeddingQueue.close();
+    }
+
+    /**
+     * Embedt meerdere gebouwen in één achtergrondtaak. De teksten gaan in batches naar Ollama,
+     * zodat duizenden gebouwen tientallen requests kosten in plaats van duizenden.
+     */
+    public void scheduleEmbeddingTasks(Collection<UUID> buildingIds) {
+        if (buildingIds.isEmpty()) {
+            return;
+        }
         backgroundProcessor.submitTask(() -> {
             // Haal verse data op binnen de achtergrondtaak (inclusief gebouwtype)
-            var buildingOpt = buildingPolygonRepository.findByIdIncludingBuildingType(buildingId);
-            
-            // Null-check: als het gebouw ondertussen is verwijderd, slaan we de embedding over
-            if (buildingOpt.isEmpty()) {
-                System.out.println("Polygon " + buildingId + " niet meer gevonden, embedding wordt overgeslagen");
-                return;
+            var buildings = buildingPolygonRepository.findAllByIdIncludingBuildingType(buildingIds);
+
+            // Gebouwen die ondertussen zijn verwijderd komen niet terug, die slaan we over
+            if (buildings.size() < buildingIds.size()) {
+                log.info("{} van de {} polygonen niet meer gevonden, embedding wordt overgeslagen", buildingIds.size() - buildings.size(), buildingIds.size());
             }
-            
-            var building = buildingOpt.get();
-            
-            String source = new BuildingEmbeddingMapper().toEmbeddableText(building);
-            float[] embedding = ollamaEmbeddingClient.createEmbedding(source, EMBEDDING_DIMENSIONS);
-            String modelName = ollamaEmbeddingClient.getEmbeddingModelName();
-
-            BuildingPolygonEmbeddingEntity embeddingEntity = new BuildingPolygonEmbeddingEntity(
-                building.getBuildingId(),
-                embedding,
-                modelName,
-                source,
-                java.time.OffsetDateTime.now()
-            );
 
-            buildingPolygonEmbeddingRepository.save(embeddingEntity);
+            embedBuildings(buildings);
         });
     }
 
+    /**
+     * Maakt en bewaart de embeddings van de gegeven gebouwen. Het gebouwtype moet geladen zijn.
+     * Gebouwen waarvan de tekst, het model en de dimensies gelijk zijn aan de opgeslagen embedding worden overgeslagen.
+     */
+    public void embedBuildings(List<BuildingPolygonEntity> buildings) {
+        if (buildings.isEmpty()) {
+            return;
+        }
+
+        String modelName = ollamaEmbeddingClient.getEmbeddingModelName();
+        List<ChangedBuilding> changedBuildings = findChangedBuildings(buildings, modelName, false);
+        unchangedSourceCount.addAndGet(buildings.size() - changedBuildings.size());
+
+        if (changedBuildings.isEmpty()) {
+            log.debug("Embedding van {} gebouw(en) overgeslagen, tekst ongewijzigd", buildings.size());
+            return;
+        }
+        embeddedSourceCount.addAndGet(changedBuildings.size());
+
+        List<String> sources = changedBuildings.stream().map(ChangedBuilding::source).toList();
+        List<float[]> embeddings = embeddingCacheService.getEmbeddings(sources, EMBEDDING_DIMENSIONS);
+        List<BuildingPolygonEmbeddingEntity> embeddingEntities = toEmbeddingEntities(changedBuildings, embeddings, modelName, EMBEDDING_DIMENSIONS);
+
+        buildingPolygonEmbeddingRepository.saveAll(embeddingEntities);
+        inMemoryVectorIndexService.index(embeddingEntities);
+    }
+
+    /**
+     * Bepaalt de tekst en hash van elk gebouw en laat de gebouwen weg waarvan de opgeslagen embedding al actueel is.
+     * Het gebouwtype moet geladen zijn.
+     *
+     * @param force ook gebouwen met een actuele embedding teruggeven; de opgeslagen hashes worden dan niet opgevraagd
+     * @return de gebouwen die (opnieuw) ge-embed moeten worden, in dezelfde volgorde als {@code buildings}
+     */
+    public List<ChangedBuilding> findChangedBuildings(List<BuildingPolygonEntity> buildings, String modelName, boolean force) {
+        Map<UUID, String> upToDate = force
+            ? Map.of()
+            : findUpToDateHashes(buildings.stream().map(BuildingPolygonEntity::getBuildingId).toList(), modelName);
+
+        BuildingEmbeddingMapper mapper = new BuildingEmbeddingMapper();
+        List<ChangedBuilding> changedBuildings = new ArrayList<>();
+        for (BuildingPolygonEntity building : buildings) {
+            String source = mapper.toEmbeddableText(building);
+            String hash = EmbeddableTextMapper.contentHash(source);
+            if (!hash.equals(upToDate.get(building.getBuildingId()))) {
+                changedBuildings.add(new ChangedBuilding(building, source, hash));
+            }
+        }
+        return changedBuildings;
+    }
+
+    /**
+     * Koppelt de embeddings (in de volgorde van {@code changedBuildings}) aan hun gebouw, tekst en hash.
+     */
+    public static List<BuildingPolygonEmbeddingEntity> toEmbeddingEntities(List<ChangedBuilding> changedBuildings,
+            List<float[]> embeddings, String modelName, int dimensions) {
+        OffsetDateTime now = OffsetDateTime.now();
+        List<BuildingPolygonEmbeddingEntity> embeddingEntities = new ArrayList<>(changedBuildings.size());
+        for (int i = 0; i < changedBuildings.size(); i++) {
+            ChangedBuilding changed = changedBuildings.get(i);
+            embeddingEntities.add(new BuildingPolygonEmbeddingEntity(
+                changed.building().getBuildingId(),
+                embeddings.get(i),
+                modelName,
+                changed.source(),
+                now,
+                changed.hash(),
+                dimensions
+            ));
+        }
+        return embeddingEntities;
+    }
+
+    /**
+     * Hashes van opgeslagen embeddings die met hetzelfde model en aantal dimensies gemaakt zijn.
+     * Een gebouw waarvan de huidige tekst dezelfde hash heeft hoeft niet opnieuw ge-embed te worden.
+     */
+    public Map<UUID, String> findUpToDateHashes(Collection<UUID> buildingIds, String modelName) {
+        Map<UUID, String> hashes = new HashMap<>();
+        for (EmbeddingFingerprint fingerprint : buildingPolygonEmbeddingRepository.findFingerprintsByBuildingIds(buildingIds)) {
+            if (fingerprint.getSourceHash() != null
+                    && modelName.equals(fingerprint.getEmbeddingModel())
+                    && Integer.valueOf(EMBEDDING_DIMENSIONS).equals(fingerprint.getEmbeddingDimensions())) {
+                hashes.put(fingerprint.getBuildingId(), fingerprint.getSourceHash());
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Een gebouw waarvan de embedding (opnieuw) gemaakt moet worden, met de tekst die ge-embed wordt en de hash daarvan.
+     */
+    public record ChangedBuilding(BuildingPolygonEntity building, String source, String hash) {
+    }
 }
@@ -1,13 +1,30 @@
 package nhl.stenden.spoordock.services;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
 
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManager;
 import nhl.stenden.spoordock.controllers.dtos.BuildingPolygonDTO;
 import nhl.stenden.spoordock.controllers.dtos.BuildingTypeDTO;
+import nhl.stenden.spoordock.controllers.dtos.common.BoundingBox;
 import nhl.stenden.spoordock.database.BuildingPolygonRepository;
 import nhl.stenden.spoordock.database.BuildingTypeRepository;
+import nhl.stenden.spoordock.database.entities.BuildingPolygonEntity;
+import nhl.stenden.spoordock.services.binary.WkbFeatureWriter;
+import nhl.stenden.spoordock.services.events.BuildingChangedEvent;
+import nhl.stenden.spoordock.services.events.ChangeType;
+import nhl.stenden.spoordock.services.events.FeatureType;
 import nhl.stenden.spoordock.services.mappers.BuildingPolygonMapper;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,17 +35,26 @@ public class BuildingService {
     private final BuildingTypeRepository buildingTypeRepository;
     private final BuildingPolygonMapper buildingPolygonMapper;
     private final BuildingEmbeddingService buildingEmbeddingService;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FeatureChangeService featureChangeService;
     
 
     public BuildingService(BuildingPolygonRepository buildingPolygonRepository, 
                 BuildingTypeRepository buildingTypeRepository, 
                 BuildingEmbeddingService buildingEmbeddingService,
-                BuildingPolygonMapper buildingPolygonMapper
+                BuildingPolygonMapper buildingPolygonMapper,
+                EntityManager entityManager,
+                ApplicationEventPublisher eventPublisher,
+                FeatureChangeService featureChangeService
             ) {
         this.buildingPolygonRepository = buildingPolygonRepository;
         this.buildingTypeRepository = buildingTypeRepository;
         this.buildingPolygonMapper = buildingPolygonMapper;
         this.buildingEmbeddingService = buildingEmbeddingService;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.featureChangeService = featureChangeService;
     }
 
     public List<BuildingPolygonDTO> getBuildingPolygons(boolean embedTypes){
@@ -43,6 +69,76 @@ public class BuildingService {
         }
     }
 
+    /**
+     * Haalt één pagina gebouwen op via keyset-paginatie (gesorteerd op ID).
+     *
+     * @param after cursor: het laatste gebouw-ID van de vorige pagina, of null voor de eerste pagina
+     * @param limit maximaal aantal gebouwen in deze pagina
+     * @param embedTypes gebouwtypes in dezelfde query meenemen, net als bij {@link #getBuildingPolygons(boolean)}
+     */
+    @Transactional(readOnly = true)
+    public Slice<BuildingPolygonDTO> getBuildingPolygonsPage(UUID after, int limit, boolean embedTypes) {
+        var pageable = PageRequest.ofSize(limit);
+        Slice<BuildingPolygonEntity> entities;
+        if(embedTypes) {
+            entities = after == null
+                ? buildingPolygonRepository.findFirstPageIncludingBuildingType(pageable)
+                : buildingPolygonRepository.findPageAfterIncludingBuildingType(after, pageable);
+        } else {
+            entities = after == null
+                ? buildingPolygonRepository.findFirstPage(pageable)
+                : buildingPolygonRepository.findPageAfter(after, pageable);
+        }
+        return entities.map(buildingPolygonMapper::toDTO);
+    }
+
+    /**
+     * Streamt alle gebouwen één voor één naar de consumer.
+     * Elke entity wordt na het mappen losgekoppeld van de persistence context,
+     * zodat het geheugengebruik vlak blijft, ongeacht het aantal gebouwen.
+     */
+    @Transactional(readOnly = true)
+    public void streamBuildingPolygons(Consumer<BuildingPolygonDTO> consumer) {
+        try (var entities = buildingPolygonRepository.streamAllIncludingBuildingType()) {
+            entities.forEach(entity -> {
+                consumer.accept(buildingPolygonMapper.toDTO(entity));
+                entityManager.detach(entity);
+            });
+        }
+    }
+
+    /**
+     * Schrijft alle gebouwen in het binaire formaat van {@link WkbFeatureWriter} naar de output stream.
+     * De geometrie komt als WKB direct uit PostGIS, zonder tussenkomst van JTS of DTO's.
+     */
+    @Transactional(readOnly = true)
+    public void writeBuildingPolygonsAsWkb(OutputStream out) throws IOException {
+        var writer = WkbFeatureWriter.forBuildings(out);
+        try (var rows = buildingPolygonRepository.streamAllAsWkb()) {
+            for (var iterator = rows.iterator(); iterator.hasNext(); ) {
+                Object[] row = iterator.next();
+                writer.writeBuilding(
+                    (UUID) row[0],
+                    (UUID) row[1],
+                    row[2] != null ? ((Number) row[2]).doubleValue() : 0.0,
+                    (String) row[3],
+                    (String) row[4],
+                    (byte[]) row[5]);
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Haalt alleen de gebouwen op die binnen de opgegeven bounding box vallen.
+     */
+    @Transactional(readOnly = true)
+    public List<BuildingPolygonDTO> getBuildingPolygonsInBoundingBox(BoundingBox bbox) {
+        var entities = buildingPolygonRepository.findAllInBoundingBox(
+            bbox.getMinX(), bbox.getMinY(), bbox.getMaxX(), bbox.getMaxY());
+        return buildingPolygonMapper.toDTOs(entities);
+    }
+
     public boolean buildingTypeExists(BuildingTypeDTO buildingTypeDTO) {
 
         if(buildingTypeDTO == null) {
@@ -74,7 +170,11 @@ public class BuildingService {
         var savedEntity = buildingPolygonRepository.save(entity);
         // Geef alleen de ID door aan de achtergrondtaak om race conditions te voorkomen
         buildingEmbeddingService.scheduleEmbeddingTask(savedEntity.getBuildingId());
-        return buildingPolygonMapper.toDTO(savedEntity);
+        var savedDTO = buildingPolygonMapper.toDTO(savedEntity);
+        long version = featureChangeService.recordChange(FeatureType.BUILDING, savedEntity.getBuildingId(), ChangeType.CREATED);
+        eventPublisher.publishEvent(new BuildingChangedEvent(
+            version, savedEntity.getBuildingId(), ChangeType.CREATED, Set.of(savedEntity.getBuildingType().getTypeId()), savedDTO));
+        return savedDTO;
     }
 
     /**
@@ -93,6 +193,7 @@ public class BuildingService {
         var existingEntity = buildingPolygonRepository.findById(buildingDTO.getBuildingId())
             .orElseThrow(() -> new IllegalArgumentException(
                 "Gebouw niet gevonden: " + buildingDTO.getBuildingId()));
+        UUID previousTypeId = existingEntity.getBuildingType().getTypeId();
 
         // Update de velden van de BESTAANDE entity (niet een nieuwe aanmaken!)
         existingEntity.setName(buildingDTO.getName());
@@ -118,11 +219,27 @@ public class BuildingService {
         var savedEntity = buildingPolygonRepository.save(existingEntity);
         // Geef alleen de ID door aan de achtergrondtaak om race conditions te voorkomen
         buildingEmbeddingService.scheduleEmbeddingTask(savedEntity.getBuildingId());
-        return buildingPolygonMapper.toDTO(savedEntity);
+        Set<UUID> typeIds = new HashSet<>(List.of(previousTypeId, savedEntity.getBuildingType().getTypeId()));
+        var savedDTO = buildingPolygonMapper.toDTO(savedEntity);
+        long version = featureChangeService.recordChange(FeatureType.BUILDING, savedEntity.getBuildingId(), ChangeType.UPDATED);
+        eventPublisher.publishEvent(new BuildingChangedEvent(
+            version, savedEntity.getBuildingId(), ChangeType.UPDATED, typeIds, savedDTO));
+        return savedDTO;
     }
 
+    @Transactional
     public void deleteBuildingById(java.util.UUID buildingId) {
+        // Gebouwtype vooraf ophalen, zodat de statistieken van dat type bijgewerkt kunnen worden
+        var entityOpt = buildingPolygonRepository.findById(buildingId);
+        if (entityOpt.isEmpty()) {
+            // Niets verwijderd, dus ook niets in het logboek of de change feed
+            return;
+        }
+        Set<UUID> typeIds = Set.of(entityOpt.get().getBuildingType().getTypeId());
+
         buildingPolygonRepository.deleteById(buildingId);
+        long version = featureChangeService.recordChange(FeatureType.BUILDING, buildingId, ChangeType.DELETED);
+        eventPublisher.publishEvent(new BuildingChangedEvent(version, buildingId, ChangeType.DELETED, typeIds, null));
     }
 
     public Optional<BuildingPolygonDTO> getBuildingById(java.util.UUID buildingId) {
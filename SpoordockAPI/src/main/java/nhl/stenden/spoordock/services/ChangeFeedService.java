@@ -0,0 +1,172 @@
+package nhl.stenden.spoordock.services;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import nhl.stenden.spoordock.backgroundprocessor.BackgroundProcessor;
+import nhl.stenden.spoordock.controllers.dtos.ChangeEventDTO;
+import nhl.stenden.spoordock.services.events.BuildingChangedEvent;
+import nhl.stenden.spoordock.services.events.ChangeType;
+import nhl.stenden.spoordock.services.events.FeatureType;
+import nhl.stenden.spoordock.services.events.RoadChangedEvent;
+
+/**
+ * Verstuurt wijzigingen aan gebouwen en wegen naar alle verbonden clients via Server-Sent Events.
+ *
+ * Events worden pas na de commit verstuurd. Het volgnummer is de versie uit het wijzigingslogboek,
+ * zodat clients deltas kunnen toepassen en na een reconnect via /api/sync?since= kunnen bijwerken.
+ *
+ * Het versturen gebeurt niet op de thread die de commit doet: elke client heeft een eigen wachtrij die door de
+ * BackgroundProcessor geleegd wordt. Een client die meer dan {@code changes.max-queued-events} events achterloopt
+ * of waarnaar het schrijven mislukt, wordt afgesloten; na een reconnect haalt die de rest op via /api/sync.
+ */
+@Slf4j
+@Service
+public class ChangeFeedService {
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BackgroundProcessor backgroundProcessor;
+    private final int maxQueuedEvents;
+
+    public ChangeFeedService(BackgroundProcessor backgroundProcessor,
+                             @Value("${changes.max-queued-events:256}") int maxQueuedEvents) {
+        this.backgroundProcessor = backgroundProcessor;
+        this.maxQueuedEvents = Math.max(1, maxQueuedEvents);
+    }
+
+    /**
+     * Registreert een nieuwe client. De verbinding blijft open totdat de client hem sluit.
+     */
+    public SseEmitter subscribe() {
+        return register(new SseEmitter(0L)); // Geen timeout, de feed blijft open
+    }
+
+    SseEmitter register(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBuildingChanged(BuildingChangedEvent event) {
+        publish(event.getVersion(), FeatureType.BUILDING, event.getChangeType(), event.getBuildingId(), event.getBuilding());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoadChanged(RoadChangedEvent event) {
+        publish(event.getVersion(), FeatureType.ROAD, event.getChangeType(), event.getRoadId(), event.getRoad());
+    }
+
+    /**
+     * Stuurt periodiek een SSE comment, zodat proxies de verbinding niet sluiten
+     * en verbroken clients opgeruimd worden.
+     */
+    @Scheduled(fixedDelayString = "${changes.heartbeat-interval:PT30S}")
+    public void sendHeartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    private void publish(long version, FeatureType featureType, ChangeType changeType, UUID featureId, Object data) {
+        ChangeEventDTO change = new ChangeEventDTO(version, featureType, changeType, featureId, data);
+
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(change);
+        } catch (IOException e) {
+            log.warn("Kon wijziging niet serialiseren: " + e.getMessage());
+            return;
+        }
+
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(SseEmitter.event()
+                .id(Long.toString(change.getSequence()))
+                .name(featureType.name().toLowerCase() + "." + changeType.name().toLowerCase())
+                .data(json));
+        }
+    }
+
+    private void remove(Subscriber subscriber, Exception cause) {
+        // Verwijderen zodat we er niet meer naar proberen te schrijven
+        if (subscribers.remove(subscriber)) {
+            subscriber.emitter.completeWithError(cause);
+        }
+    }
+
+    /**
+     * Eén verbonden client met zijn eigen begrensde wachtrij. Er draait per client hooguit één taak die de
+     * wachtrij leegt, zodat de events in volgorde aankomen.
+     */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Queue<SseEmitter.SseEventBuilder> queue = new ArrayDeque<>();
+        private boolean draining;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(SseEmitter.SseEventBuilder event) {
+            boolean overflow;
+            boolean startDrain = false;
+            synchronized (this) {
+                overflow = queue.size() >= maxQueuedEvents;
+                if (overflow) {
+                    queue.clear();
+                } else {
+                    queue.add(event);
+                    startDrain = !draining;
+                    draining = true;
+                }
+            }
+            if (overflow) {
+                // Client loopt te ver achter; na een reconnect haalt die de gemiste wijzigingen op via /api/sync
+                remove(this, new IllegalStateException("Client loopt meer dan " + maxQueuedEvents + " events achter"));
+            } else if (startDrain) {
+                backgroundProcessor.submitTask(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                SseEmitter.SseEventBuilder event;
+                synchronized (this) {
+                    event = queue.poll();
+                    if (event == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(event);
+                } catch (Exception e) {
+                    // Client is weg
+                    remove(this, e);
+                    return;
+                }
+            }
+        }
+    }
+}
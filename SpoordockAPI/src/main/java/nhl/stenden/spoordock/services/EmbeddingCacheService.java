@@ -0,0 +1,195 @@
+package nhl.stenden.spoordock.services;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import nhl.stenden.spoordock.controllers.dtos.EmbeddingCacheStatsDTO;
+import nhl.stenden.spoordock.database.EmbeddingCacheRepository;
+import nhl.stenden.spoordock.database.entities.EmbeddingCacheEntity;
+import nhl.stenden.spoordock.llmService.EmbeddableTextMapper;
+import nhl.stenden.spoordock.llmService.OllamaEmbeddingClient;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+
+/**
+ * Content-addressed cache voor embeddings, gedeeld door de prompt zoekopdrachten en de gebouw embeddings.
+ * De sleutel is (model, dimensies, SHA-256 van de tekst). Eerst wordt een LRU in het geheugen bekeken,
+ * daarna (optioneel) de tabel embedding_cache, en pas daarna gaan de ontbrekende teksten in één batch naar Ollama.
+ * De tabel wordt periodiek begrensd op leeftijd en aantal rijen.
+ * Aanroepers krijgen een kopie van de vector, zodat een aanpassing de gedeelde cache niet kan beschadigen.
+ */
+@Slf4j
+@Service
+public class EmbeddingCacheService {
+
+    private final OllamaEmbeddingClient ollamaEmbeddingClient;
+    private final EmbeddingCacheRepository embeddingCacheRepository;
+    private final boolean databaseTier;
+    private final int maxEntries;
+    private final Duration databaseMaxAge;
+    private final int databaseMaxEntries;
+
+    // LinkedHashMap in access-order: de eerste entry is de minst recent gebruikte
+    private final LinkedHashMap<String, float[]> memory;
+
+    private final AtomicLong memoryHits = new AtomicLong(0);
+    private final AtomicLong databaseHits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    public EmbeddingCacheService(
+        OllamaEmbeddingClient ollamaEmbeddingClient,
+        EmbeddingCacheRepository embeddingCacheRepository,
+        LlmConfiguration llmConfiguration) {
+        this.ollamaEmbeddingClient = ollamaEmbeddingClient;
+        this.embeddingCacheRepository = embeddingCacheRepository;
+
+        LlmConfiguration.Embedding embeddingConfiguration = llmConfiguration.getEmbedding();
+        this.databaseTier = embeddingConfiguration.isCacheDatabaseTier();
+        this.maxEntries = Math.max(0, embeddingConfiguration.getCacheMaxEntries());
+        this.databaseMaxAge = embeddingConfiguration.getCacheDatabaseMaxAge();
+        this.databaseMaxEntries = Math.max(0, embeddingConfiguration.getCacheDatabaseMaxEntries());
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public float[] getEmbedding(String text, int dimensions) {
+        return getEmbeddings(List.of(text), dimensions).get(0);
+    }
+
+    /**
+     * Geeft per tekst een embedding terug, in dezelfde volgorde als {@code texts}.
+     * Alleen de teksten die in geen enkele laag gevonden worden gaan naar Ollama.
+     */
+    public List<float[]> getEmbeddings(List<String> texts, int dimensions) {
+        String model = ollamaEmbeddingClient.getEmbeddingModelName();
+        List<String> keys = texts.stream().map(text -> cacheKey(model, dimensions, text)).toList();
+        float[][] result = new float[texts.size()][];
+
+        // Laag 1: geheugen
+        Map<String, List<Integer>> missing = new LinkedHashMap<>();
+        synchronized (memory) {
+            for (int i = 0; i < keys.size(); i++) {
+                float[] cached = memory.get(keys.get(i));
+                if (cached != null) {
+                    result[i] = cached;
+                    memoryHits.incrementAndGet();
+                } else {
+                    // Dezelfde tekst kan meerdere keren in één aanvraag voorkomen, die wordt maar één keer ge-embed
+                    missing.computeIfAbsent(keys.get(i), key -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return copies(result);
+        }
+
+        // Laag 2: database
+        if (databaseTier) {
+            for (EmbeddingCacheEntity entity : embeddingCacheRepository.findAllById(missing.keySet())) {
+                List<Integer> positions = missing.remove(entity.getCacheKey());
+                if (positions == null) {
+                    continue;
+                }
+                positions.forEach(i -> result[i] = entity.getEmbedding());
+                databaseHits.addAndGet(positions.size());
+                remember(entity.getCacheKey(), entity.getEmbedding());
+            }
+        }
+
+        // Laag 3: Ollama, alle ontbrekende teksten in één (gebatchte) aanroep
+        if (!missing.isEmpty()) {
+            List<String> missingKeys = new ArrayList<>(missing.keySet());
+            List<String> missingTexts = missingKeys.stream().map(key -> texts.get(missing.get(key).get(0))).toList();
+            List<float[]> embeddings = ollamaEmbeddingClient.createEmbeddings(missingTexts, dimensions);
+
+            Map<String, float[]> created = new HashMap<>();
+            for (int i = 0; i < missingKeys.size(); i++) {
+                String key = missingKeys.get(i);
+                float[] embedding = embeddings.get(i);
+                missing.get(key).forEach(position -> result[position] = embedding);
+                misses.addAndGet(missing.get(key).size());
+                remember(key, embedding);
+                created.put(key, embedding);
+            }
+            storeInDatabase(created);
+        }
+
+        return copies(result);
+    }
+
+    /**
+     * Begrenst de tabel embedding_cache: eerst op leeftijd, daarna op aantal rijen (de oudste gaan eerst).
+     */
+    @Scheduled(fixedDelayString = "${llm.embedding.cacheCleanupInterval:PT1H}")
+    public void cleanupDatabaseTier() {
+        if (!databaseTier) {
+            return;
+        }
+        try {
+            int expired = embeddingCacheRepository.deleteCreatedBefore(OffsetDateTime.now().minus(databaseMaxAge));
+            int overflow = embeddingCacheRepository.deleteAllButNewest(databaseMaxEntries);
+            if (expired + overflow > 0) {
+                log.info("Embedding cache tabel opgeruimd: {} verlopen en {} overtollige rij(en)", expired, overflow);
+            }
+        } catch (Exception ex) {
+            log.warn("Opruimen van de embedding cache tabel mislukt", ex);
+        }
+    }
+
+    public EmbeddingCacheStatsDTO getStats() {
+        int size;
+        synchronized (memory) {
+            size = memory.size();
+        }
+        return new EmbeddingCacheStatsDTO(memoryHits.get(), databaseHits.get(), misses.get(), size, maxEntries, databaseTier);
+    }
+
+    static String cacheKey(String model, int dimensions, String text) {
+        return model + ":" + dimensions + ":" + EmbeddableTextMapper.contentHash(text);
+    }
+
+    private static List<float[]> copies(float[][] embeddings) {
+        List<float[]> result = new ArrayList<>(embeddings.length);
+        for (float[] embedding : embeddings) {
+            result.add(embedding.clone());
+        }
+        return result;
+    }
+
+    private void remember(String key, float[] embedding) {
+        if (maxEntries == 0) {
+            return;
+        }
+        synchronized (memory) {
+            memory.put(key, embedding);
+        }
+    }
+
+    private void storeInDatabase(Map<String, float[]> created) {
+        if (!databaseTier || created.isEmpty()) {
+            return;
+        }
+        try {
+            OffsetDateTime now = OffsetDateTime.now();
+            embeddingCacheRepository.saveAll(created.entrySet().stream()
+                .map(entry -> new EmbeddingCacheEntity(entry.getKey(), entry.getValue(), now))
+                .toList());
+        } catch (Exception ex) {
+            // De cache is een optimalisatie; een mislukte write mag de aanvraag niet laten falen
+            log.warn("Opslaan van {} embedding(s) in de cache tabel mislukt", created.size(), ex);
+        }
+    }
+}
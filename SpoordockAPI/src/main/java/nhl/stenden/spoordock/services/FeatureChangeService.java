@@ -0,0 +1,49 @@
+package nhl.stenden.spoordock.services;
+
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import nhl.stenden.spoordock.database.FeatureChangeRepository;
+import nhl.stenden.spoordock.database.entities.FeatureChangeEntity;
+import nhl.stenden.spoordock.services.events.ChangeType;
+import nhl.stenden.spoordock.services.events.FeatureType;
+
+/**
+ * Schrijft wijzigingen aan gebouwen en wegsegmenten naar het append-only wijzigingslogboek.
+ */
+@Service
+public class FeatureChangeService {
+
+    // Vaste sleutel voor pg_advisory_xact_lock; moet uniek zijn binnen de database
+    static final long CHANGE_LOG_LOCK_KEY = 0x53706f6f72L;
+
+    private final FeatureChangeRepository featureChangeRepository;
+
+    public FeatureChangeService(FeatureChangeRepository featureChangeRepository) {
+        this.featureChangeRepository = featureChangeRepository;
+    }
+
+    /**
+     * Legt een wijziging vast binnen de transactie van de aanroeper, zodat het logboek
+     * alleen wijzigingen bevat die ook echt gecommit zijn.
+     *
+     * De version wordt bij de INSERT uitgedeeld, maar transacties committen niet per se in die volgorde.
+     * Zonder lock kan /api/sync versie 8 al zien terwijl versie 7 nog niet gecommit is; een client die 8 als
+     * cursor bewaart mist 7 dan voorgoed. Daarom houdt elke schrijvende transactie een advisory lock vast
+     * tot de commit, zodat versies in commit-volgorde zichtbaar worden en max(version) een veilige cursor is.
+     *
+     * @return de nieuwe versie; wordt ook als volgnummer in de change feed gebruikt
+     */
+    @Transactional
+    public long recordChange(FeatureType featureType, UUID featureId, ChangeType changeType) {
+        featureChangeRepository.lockForAppend(CHANGE_LOG_LOCK_KEY);
+        var change = featureChangeRepository.save(new FeatureChangeEntity(featureType, featureId, changeType));
+        return change.getVersion();
+    }
+
+    public long getLatestVersion() {
+        return featureChangeRepository.findLatestVersion();
+    }
+}
@@ -0,0 +1,164 @@
+package nhl.stenden.spoordock.services;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import lombok.extern.slf4j.Slf4j;
+import nhl.stenden.spoordock.backgroundprocessor.BackgroundProcessor;
+import nhl.stenden.spoordock.database.BuildingPolygonEmbeddingRepository;
+import nhl.stenden.spoordock.database.entities.BuildingPolygonEmbeddingEntity;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+import nhl.stenden.spoordock.services.events.BuildingChangedEvent;
+import nhl.stenden.spoordock.services.events.ChangeType;
+import nhl.stenden.spoordock.services.vectorindex.FlatVectorIndex;
+import nhl.stenden.spoordock.services.vectorindex.VectorMatch;
+
+/**
+ * Kopie van polygon_embeddings in het geheugen, voor semantisch zoeken zonder database round-trip.
+ * Alleen actief met {@code llm.embedding.searchBackend: in-memory}. De index wordt bij het opstarten op de
+ * achtergrond gevuld; tot die klaar is gaan zoekopdrachten naar pgvector.
+ * Nieuwe embeddings komen binnen via {@link #index(Collection)}, verwijderde gebouwen via het BuildingChangedEvent.
+ */
+@Slf4j
+@Service
+public class InMemoryVectorIndexService {
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private final BuildingPolygonEmbeddingRepository buildingPolygonEmbeddingRepository;
+    private final BackgroundProcessor backgroundProcessor;
+    private final boolean enabled;
+
+    private final FlatVectorIndex index = new FlatVectorIndex(BuildingEmbeddingService.EMBEDDING_DIMENSIONS, LOAD_PAGE_SIZE);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready = false;
+
+    // Gebouwen die tijdens het laden verwijderd zijn; die mogen niet alsnog uit een eerder gelezen pagina terugkomen
+    private final Set<UUID> removedWhileLoading = new HashSet<>();
+
+    public InMemoryVectorIndexService(
+        BuildingPolygonEmbeddingRepository buildingPolygonEmbeddingRepository,
+        BackgroundProcessor backgroundProcessor,
+        LlmConfiguration llmConfiguration) {
+        this.buildingPolygonEmbeddingRepository = buildingPolygonEmbeddingRepository;
+        this.backgroundProcessor = backgroundProcessor;
+        this.enabled = llmConfiguration.getEmbedding().getSearchBackend() == LlmConfiguration.SearchBackend.IN_MEMORY;
+    }
+
+    /**
+     * true als zoekopdrachten uit het geheugen beantwoord kunnen worden.
+     */
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            backgroundProcessor.submitTask(this::load);
+        }
+    }
+
+    void load() {
+        long started = System.nanoTime();
+        UUID cursor = new UUID(0, 0);
+        List<BuildingPolygonEmbeddingEntity> page;
+        do {
+            page = buildingPolygonEmbeddingRepository.findEmbeddingPageAfter(cursor, PageRequest.of(0, LOAD_PAGE_SIZE));
+            lock.writeLock().lock();
+            try {
+                for (BuildingPolygonEmbeddingEntity embedding : page) {
+                    if (isIndexable(embedding) && !removedWhileLoading.contains(embedding.getBuildingId())) {
+                        // Een embedding die tijdens het laden al via index() binnenkwam is nieuwer dan deze pagina
+                        index.putIfAbsent(embedding.getBuildingId(), embedding.getEmbedding(), embedding.getEmbeddingSource());
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (!page.isEmpty()) {
+                cursor = page.get(page.size() - 1).getBuildingId();
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+
+        lock.writeLock().lock();
+        try {
+            removedWhileLoading.clear();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Vector index in het geheugen gevuld met {} embeddings ({} MB) in {} ms",
+            index.size(), index.vectorBytes() / (1024 * 1024), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Neemt net opgeslagen embeddings over in de index.
+     */
+    public void index(Collection<BuildingPolygonEmbeddingEntity> embeddings) {
+        if (!enabled || embeddings.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (BuildingPolygonEmbeddingEntity embedding : embeddings) {
+                if (isIndexable(embedding)) {
+                    index.upsert(embedding.getBuildingId(), embedding.getEmbedding(), embedding.getEmbeddingSource());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // De embedding wordt door de database verwijderd (ON DELETE CASCADE), de index volgt na de commit
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBuildingChanged(BuildingChangedEvent event) {
+        if (!enabled || event.getChangeType() != ChangeType.DELETED) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            index.remove(event.getBuildingId());
+            if (!ready) {
+                removedWhileLoading.add(event.getBuildingId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<VectorMatch> findNearest(float[] query, int limit) {
+        lock.readLock().lock();
+        try {
+            return index.search(query, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Embeddings met andere dimensies (bv. van een ander model) passen niet in de index
+    private boolean isIndexable(BuildingPolygonEmbeddingEntity embedding) {
+        return embedding.getEmbedding() != null && embedding.getEmbedding().length == index.getDimensions();
+    }
+}
@@ -2,13 +2,23 @@ package nhl.stenden.spoordock.services;
 
 import nhl.stenden.spoordock.controllers.dtos.RoadSegmentDTO;
 import nhl.stenden.spoordock.controllers.dtos.RoadTypeDTO;
+import nhl.stenden.spoordock.controllers.dtos.common.BoundingBox;
 import nhl.stenden.spoordock.database.RoadSegmentRepository;
 import nhl.stenden.spoordock.database.RoadTypeRepository;
+import nhl.stenden.spoordock.services.binary.WkbFeatureWriter;
+import nhl.stenden.spoordock.services.events.ChangeType;
+import nhl.stenden.spoordock.services.events.FeatureType;
+import nhl.stenden.spoordock.services.events.RoadChangedEvent;
 import nhl.stenden.spoordock.services.mappers.RoadSegmentMapper;
 import nhl.stenden.spoordock.services.mappers.RoadTypeMapper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.UUID;
 
 @Component
 public class RoadService {
@@ -18,13 +28,17 @@ public class RoadService {
     private final RoadSegmentRepository roadSegmentRepository;
     private final RoadSegmentMapper roadSegmentMapper;
     private final RoadTypeMapper roadTypeMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FeatureChangeService featureChangeService;
 
-    public RoadService(RoadTypeRepository roadTypeRepository, RoadSegmentRepository roadSegmentRepository, RoadSegmentMapper roadSegmentMapper, RoadTypeMapper roadTypeMapper)
+    public RoadService(RoadTypeRepository roadTypeRepository, RoadSegmentRepository roadSegmentRepository, RoadSegmentMapper roadSegmentMapper, RoadTypeMapper roadTypeMapper, ApplicationEventPublisher eventPublisher, FeatureChangeService featureChangeService)
     {
         this.roadTypeRepository = roadTypeRepository;
         this.roadSegmentRepository = roadSegmentRepository;
         this.roadSegmentMapper = roadSegmentMapper;
         this.roadTypeMapper = roadTypeMapper;
+        this.eventPublisher = eventPublisher;
+        this.featureChangeService = featureChangeService;
     }
 
     public List<RoadSegmentDTO> getRoadDTOs () {
@@ -32,11 +46,37 @@ public class RoadService {
         return roadSegmentMapper.toDTOs(roadSegments);
     }
 
+    // Alleen de wegsegmenten binnen de viewport van de client
+    public List<RoadSegmentDTO> getRoadDTOsInBoundingBox(BoundingBox bbox) {
+        var roadSegments = roadSegmentRepository.findAllInBoundingBox(
+            bbox.getMinX(), bbox.getMinY(), bbox.getMaxX(), bbox.getMaxY());
+        return roadSegmentMapper.toDTOs(roadSegments);
+    }
+
+    // Alle wegsegmenten in het binaire formaat (WKB geometrie rechtstreeks uit PostGIS), zie WkbFeatureWriter
+    @Transactional(readOnly = true)
+    public void writeRoadSegmentsAsWkb(OutputStream out) throws IOException {
+        var writer = WkbFeatureWriter.forRoads(out);
+        try (var rows = roadSegmentRepository.streamAllAsWkb()) {
+            for (var iterator = rows.iterator(); iterator.hasNext(); ) {
+                Object[] row = iterator.next();
+                writer.writeRoad(
+                    (UUID) row[0],
+                    (UUID) row[1],
+                    row[2] != null ? ((Number) row[2]).intValue() : 0,
+                    (String) row[3],
+                    (byte[]) row[4]);
+            }
+        }
+        writer.flush();
+    }
+
     public List<RoadTypeDTO> getRoadTypeDTOs() {
         var roadTypes = roadTypeRepository.findAll();
         return roadTypeMapper.toDTOs(roadTypes);
     }
 
+    @Transactional
     public void addRoadSegment(RoadSegmentDTO roadSegmentDTO) throws IllegalArgumentException {
         if(roadSegmentRepository.existsById(roadSegmentDTO.getId())){
             throw new IllegalArgumentException("Road segment with ID " + roadSegmentDTO.getId() + " already exists.");
@@ -58,12 +98,23 @@ public class RoadService {
 
         var entity = roadSegmentMapper.toEntity(roadSegmentDTO);
         roadSegmentRepository.save(entity);
+        long version = featureChangeService.recordChange(FeatureType.ROAD, roadSegmentDTO.getId(), ChangeType.CREATED);
+        eventPublisher.publishEvent(new RoadChangedEvent(version, roadSegmentDTO.getId(), ChangeType.CREATED, roadSegmentDTO));
     }
 
-    public void deleteRoadSegment(RoadSegmentDTO roadSegmentDTO)  {
+    @Transactional
+    public void deleteRoadSegment(RoadSegmentDTO roadSegmentDTO) throws IllegalArgumentException {
+        // Zonder deze controle komt een verwijdering van een onbekend segment in het logboek en de change feed
+        if(!roadSegmentRepository.existsById(roadSegmentDTO.getId())){
+            throw new IllegalArgumentException("Road segment with ID " + roadSegmentDTO.getId() + " does not exist.");
+        }
+
         roadSegmentRepository.deleteById(roadSegmentDTO.getId());
+        long version = featureChangeService.recordChange(FeatureType.ROAD, roadSegmentDTO.getId(), ChangeType.DELETED);
+        eventPublisher.publishEvent(new RoadChangedEvent(version, roadSegmentDTO.getId(), ChangeType.DELETED, null));
     }
 
+    @Transactional
     public void updateRoadSegment(RoadSegmentDTO roadSegmentDTO) throws IllegalArgumentException {
         if(!roadSegmentRepository.existsById(roadSegmentDTO.getId())){
             throw new IllegalArgumentException("Road segment with ID " + roadSegmentDTO.getId() + " does not exist.");
@@ -85,6 +136,8 @@ public class RoadService {
 
         var entity = roadSegmentMapper.toEntity(roadSegmentDTO);
         roadSegmentRepository.save(entity);
+        long version = featureChangeService.recordChange(FeatureType.ROAD, roadSegmentDTO.getId(), ChangeType.UPDATED);
+        eventPublisher.publishEvent(new RoadChangedEvent(version, roadSegmentDTO.getId(), ChangeType.UPDATED, roadSegmentDTO));
     }
 
 }
@@ -3,146 +3,201 @@ package nhl.stenden.spoordock.services;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import lombok.extern.slf4j.Slf4j;
 import nhl.stenden.spoordock.controllers.dtos.StatisticsDTO;
 import nhl.stenden.spoordock.database.BuildingPolygonRepository;
-import nhl.stenden.spoordock.database.entities.BuildingPolygonEntity;
+import nhl.stenden.spoordock.database.BuildingTypeRepository;
+import nhl.stenden.spoordock.database.FeatureChangeRepository;
 import nhl.stenden.spoordock.database.entities.BuildingTypeEntity;
+import nhl.stenden.spoordock.database.projections.BuildingTypeStatistics;
+import nhl.stenden.spoordock.services.events.BuildingChangedEvent;
+import nhl.stenden.spoordock.services.events.FeatureType;
+import nhl.stenden.spoordock.services.statistics.BuildingTypeTotals;
+import nhl.stenden.spoordock.services.statistics.StatisticsAggregate;
 
 /**
  * Service voor het berekenen van statistieken voor het Gegevens panel.
+ *
+ * De database berekent de totalen per gebouwtype (GROUP BY); die rijen worden in een
+ * in-memory aggregaat bewaard. Bij een wijziging aan een gebouw worden alleen de rijen van
+ * de betrokken gebouwtypes opnieuw opgehaald, inclusief het gebouwtype zelf zodat gewijzigde kosten
+ * meegenomen worden. Alleen bij het opstarten of wanneer drift gedetecteerd wordt, worden alle
+ * gebouwtypes opnieuw berekend.
  */
+@Slf4j
 @Service
 public class StatisticsService {
 
     private final BuildingPolygonRepository buildingPolygonRepository;
-
-    public StatisticsService(BuildingPolygonRepository buildingPolygonRepository) {
+    private final BuildingTypeRepository buildingTypeRepository;
+    private final FeatureChangeRepository featureChangeRepository;
+    private final StatisticsAggregate aggregate = new StatisticsAggregate();
+
+    // true zolang het aggregaat (nog) niet betrouwbaar is en opnieuw opgebouwd moet worden
+    private boolean dirty = true;
+    private StatisticsDTO cachedStatistics;
+
+    // Versie van het wijzigingslogboek bij de laatste herberekening, en het aantal gebouwwijzigingen daarna dat verwerkt is
+    private long rebuildVersion;
+    private long appliedChanges;
+    // Vingerafdruk van de gebouwtypes bij de laatste herberekening
+    private String buildingTypesHash;
+
+    public StatisticsService(BuildingPolygonRepository buildingPolygonRepository,
+                             BuildingTypeRepository buildingTypeRepository,
+                             FeatureChangeRepository featureChangeRepository) {
         this.buildingPolygonRepository = buildingPolygonRepository;
+        this.buildingTypeRepository = buildingTypeRepository;
+        this.featureChangeRepository = featureChangeRepository;
     }
 
     /**
-     * Berekent alle statistieken voor het Gegevens panel.
+     * Geeft alle statistieken voor het Gegevens panel terug.
+     * Normaal gesproken zonder database werk; alleen als het aggregaat vervuild is wordt het herbouwd.
      *
      * @return StatisticsDTO met alle berekende statistieken
      */
-    @Transactional(readOnly = true)
-    public StatisticsDTO calculateStatistics() {
-        // Haal alle gebouwen op inclusief hun gebouwtypes (eager load)
-        List<BuildingPolygonEntity> buildings = buildingPolygonRepository.findAllIncludingBuildingType();
-
-        if (buildings.isEmpty()) {
-            return StatisticsDTO.builder()
-                .totalCost(0)
-                .averageCost(0)
-                .averageCostPerCitizen(0)
-                .totalCapacity(0)
-                .totalPoints(0)
-                .totalLiveableBuildings(0)
-                .tallestBuilding(0)
-                .lowestBuilding(0)
-                .averageHeight(0)
-                .totalBuildings(0)
-                .buildingTypeCounts(new HashMap<>())
-                .build();
+    public synchronized StatisticsDTO calculateStatistics() {
+        if (dirty) {
+            rebuild();
+        }
+        if (cachedStatistics == null) {
+            cachedStatistics = aggregate.toStatistics();
         }
+        return cachedStatistics;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            synchronized (this) {
+                rebuild();
+            }
+        } catch (Exception e) {
+            // Database nog niet beschikbaar; de eerstvolgende aanvraag probeert het opnieuw
+            log.warn("Kon statistieken niet opbouwen bij het opstarten: " + e.getMessage());
+        }
+    }
 
-        // Haal oppervlaktes op via PostGIS (in vierkante meters)
-        // ST_Area(punten::geography) berekent de oppervlakte correct voor WGS84 coördinaten
-        Map<UUID, Double> areaMap = new HashMap<>();
-        List<Object[]> areaResults = buildingPolygonRepository.findAllBuildingAreasInSquareMeters();
-        for (Object[] row : areaResults) {
-            UUID id = (UUID) row[0];
-            Double area = ((Number) row[1]).doubleValue();
-            areaMap.put(id, area);
+    /**
+     * Verwerkt een wijziging aan één gebouw, pas nadat de transactie gecommit is.
+     * Alleen de totalen van de betrokken gebouwtypes worden opnieuw door de database berekend.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onBuildingChanged(BuildingChangedEvent event) {
+        if (dirty) {
+            return; // Wordt bij de volgende aanvraag toch volledig herbouwd
+        }
+        if (event.getBuildingTypeIds() == null || event.getBuildingTypeIds().isEmpty()) {
+            dirty = true; // Onbekend welke types geraakt zijn
+            cachedStatistics = null;
+            return;
+        }
+
+        try {
+            refreshBuildingTypes(event.getBuildingTypeIds());
+            cachedStatistics = null;
+            if (event.getVersion() > rebuildVersion) {
+                appliedChanges++;
+            }
+        } catch (Exception e) {
+            log.warn("Statistieken konden niet incrementeel bijgewerkt worden, volledige herberekening volgt", e);
+            dirty = true;
         }
+    }
 
-        double totalCost = 0;
-        double totalCapacity = 0;
-        double totalPoints = 0;
-        int totalLiveableBuildings = 0;
-        double totalResidents = 0;
-
-        double tallestBuilding = Double.MIN_VALUE;
-        double lowestBuilding = Double.MAX_VALUE;
-        double totalHeight = 0;
-
-        // Map voor het tellen van gebouwen per type
-        Map<String, Integer> buildingTypeCounts = new HashMap<>();
-
-        for (BuildingPolygonEntity building : buildings) {
-            double height = building.getHeight();
-            BuildingTypeEntity type = building.getBuildingType();
-
-            // Tel gebouwen per type
-            String typeName = type.getName();
-            buildingTypeCounts.merge(typeName, 1, Integer::sum);
-
-            // Haal oppervlakte op uit de PostGIS resultaten (in vierkante meters)
-            double area = areaMap.getOrDefault(building.getBuildingId(), 0.0);
-            double volume = area * height;
-
-            // Bepaal meetwaarde op basis van eenheid (m2 of m3)
-            String unit = type.getUnit() != null ? type.getUnit() : "m3";
-            double measureValue = unit.equalsIgnoreCase("m2") ? area : volume;
-
-            // Totale kosten
-            double cost = type.getCostPerUnit() * measureValue;
-            totalCost += cost;
-
-            // Capaciteit en bewoners (alleen voor bewoonbare gebouwen)
-            if (type.isInhabitable()) {
-                Double residentsPerUnit = type.getResidentsPerUnit();
-                if (residentsPerUnit != null) {
-                    double residents = residentsPerUnit * measureValue;
-                    totalCapacity += residents;
-                    totalResidents += residents;
-                }
-                totalLiveableBuildings++;
+    /**
+     * Vergelijkt periodiek het aggregaat met de database: het aantal gebouwwijzigingen in het logboek sinds
+     * de laatste herberekening moet gelijk zijn aan het aantal verwerkte events, en de gebouwtypes mogen niet
+     * veranderd zijn. Wijkt dat af (bv. door wijzigingen via een andere API replica of aangepaste kosten
+     * in de database), dan wordt het aggregaat bij de volgende aanvraag opnieuw opgebouwd.
+     * In tegenstelling tot het aantal gebouwen mist dit ook wijzigingen die het aantal gelijk laten.
+     */
+    @Scheduled(
+        initialDelayString = "${statistics.drift-check-interval:PT5M}",
+        fixedDelayString = "${statistics.drift-check-interval:PT5M}")
+    public void checkForDrift() {
+        long since;
+        synchronized (this) {
+            if (dirty) {
+                return;
             }
+            since = rebuildVersion;
+        }
 
-            // Totale punten
-            Integer points = type.getPoints();
-            if (points != null) {
-                totalPoints += points;
+        long databaseChanges = featureChangeRepository.countChangesAfter(FeatureType.BUILDING, since);
+        String typesHash = buildingTypeRepository.findContentHash();
+        synchronized (this) {
+            if (dirty || since != rebuildVersion) {
+                return; // Intussen opnieuw opgebouwd
             }
+            if (databaseChanges != appliedChanges) {
+                log.info("Drift gedetecteerd in statistieken ({} gebouwwijzigingen verwerkt, {} in het logboek)", appliedChanges, databaseChanges);
+            } else if (!Objects.equals(typesHash, buildingTypesHash)) {
+                log.info("Gebouwtypes zijn gewijzigd, statistieken worden opnieuw berekend");
+            } else {
+                return;
+            }
+            dirty = true;
+            cachedStatistics = null;
+        }
+    }
 
-            // Track hoogtes voor min/max/gem
-            if (height > tallestBuilding) {
-                tallestBuilding = height;
+    private void refreshBuildingTypes(Set<UUID> typeIds) {
+        Map<UUID, BuildingTypeStatistics> rows = new HashMap<>();
+        for (BuildingTypeStatistics row : buildingPolygonRepository.findStatisticsForBuildingTypes(typeIds)) {
+            rows.put(row.getBuildingTypeId(), row);
+        }
+
+        // Altijd vers ophalen: een eerder bewaard gebouwtype kan inmiddels andere kosten hebben
+        Map<UUID, BuildingTypeEntity> types = new HashMap<>();
+        for (BuildingTypeEntity type : buildingTypeRepository.findAllById(rows.keySet())) {
+            types.put(type.getTypeId(), type);
+        }
+
+        for (UUID typeId : typeIds) {
+            BuildingTypeStatistics row = rows.get(typeId);
+            if (row == null) {
+                aggregate.removeType(typeId); // Geen gebouwen meer van dit type
+                continue;
             }
-            if (height < lowestBuilding) {
-                lowestBuilding = height;
+
+            BuildingTypeEntity type = types.get(typeId);
+            if (type == null) {
+                throw new IllegalStateException("Gebouwtype niet gevonden: " + typeId);
             }
-            totalHeight += height;
+            aggregate.put(BuildingTypeTotals.from(row), type);
         }
+    }
 
-        // Bereken afgeleide statistieken
-        int totalBuildings = buildings.size();
-        double averageCost = totalCost / totalBuildings;
-        double averageCostPerCitizen = totalResidents > 0 ? totalCost / totalResidents : 0;
-        double averageHeight = totalHeight / totalBuildings;
-
-        // Handel edge cases af
-        if (tallestBuilding == Double.MIN_VALUE) tallestBuilding = 0;
-        if (lowestBuilding == Double.MAX_VALUE) lowestBuilding = 0;
-
-        return StatisticsDTO.builder()
-            .totalCost(totalCost)
-            .averageCost(averageCost)
-            .averageCostPerCitizen(averageCostPerCitizen)
-            .totalCapacity(totalCapacity)
-            .totalPoints(totalPoints)
-            .totalLiveableBuildings(totalLiveableBuildings)
-            .tallestBuilding(tallestBuilding)
-            .lowestBuilding(lowestBuilding)
-            .averageHeight(averageHeight)
-            .totalBuildings(totalBuildings)
-            .buildingTypeCounts(buildingTypeCounts)
-            .build();
+    private void rebuild() {
+        // Eerst de versie en de gebouwtypes: wat daarna nog verandert, komt via events of de volgende drift check binnen
+        long version = featureChangeRepository.findLatestVersion();
+        String typesHash = buildingTypeRepository.findContentHash();
+
+        // Eén GROUP BY query: de database levert één rij per gebouwtype,
+        // er worden geen gebouwen of geometrieën naar de applicatie gestuurd
+        List<BuildingTypeTotals> totals = buildingPolygonRepository.findStatisticsPerBuildingType().stream()
+            .map(BuildingTypeTotals::from)
+            .toList();
+
+        List<BuildingTypeEntity> types = buildingTypeRepository.findAll();
+        aggregate.replaceAll(totals, types);
+        cachedStatistics = null;
+        rebuildVersion = version;
+        appliedChanges = 0;
+        buildingTypesHash = typesHash;
+        dirty = false;
+        log.debug("Statistieken opnieuw opgebouwd voor {} gebouwtypes", totals.size());
     }
 }
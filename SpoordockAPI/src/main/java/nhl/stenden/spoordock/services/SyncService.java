@@ -0,0 +1,90 @@
+package nhl.stenden.spoordock.services;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import nhl.stenden.spoordock.controllers.dtos.BuildingPolygonDTO;
+import nhl.stenden.spoordock.controllers.dtos.RoadSegmentDTO;
+import nhl.stenden.spoordock.controllers.dtos.SyncDTO;
+import nhl.stenden.spoordock.database.BuildingPolygonRepository;
+import nhl.stenden.spoordock.database.FeatureChangeRepository;
+import nhl.stenden.spoordock.database.RoadSegmentRepository;
+import nhl.stenden.spoordock.database.entities.FeatureChangeEntity;
+import nhl.stenden.spoordock.services.events.ChangeType;
+import nhl.stenden.spoordock.services.events.FeatureType;
+import nhl.stenden.spoordock.services.mappers.BuildingPolygonMapper;
+import nhl.stenden.spoordock.services.mappers.RoadSegmentMapper;
+
+/**
+ * Bepaalt welke gebouwen en wegsegmenten een client moet ophalen om weer bij te zijn,
+ * op basis van het wijzigingslogboek.
+ */
+@Service
+public class SyncService {
+
+    private final FeatureChangeRepository featureChangeRepository;
+    private final BuildingPolygonRepository buildingPolygonRepository;
+    private final RoadSegmentRepository roadSegmentRepository;
+    private final BuildingPolygonMapper buildingPolygonMapper;
+    private final RoadSegmentMapper roadSegmentMapper;
+
+    public SyncService(FeatureChangeRepository featureChangeRepository,
+                       BuildingPolygonRepository buildingPolygonRepository,
+                       RoadSegmentRepository roadSegmentRepository,
+                       BuildingPolygonMapper buildingPolygonMapper,
+                       RoadSegmentMapper roadSegmentMapper) {
+        this.featureChangeRepository = featureChangeRepository;
+        this.buildingPolygonRepository = buildingPolygonRepository;
+        this.roadSegmentRepository = roadSegmentRepository;
+        this.buildingPolygonMapper = buildingPolygonMapper;
+        this.roadSegmentMapper = roadSegmentMapper;
+    }
+
+    /**
+     * Geeft de wijzigingen sinds {@code since} terug, of een volledige snapshot als {@code since} null is.
+     */
+    @Transactional(readOnly = true)
+    public SyncDTO getChangesSince(Long since) {
+        long version = featureChangeRepository.findLatestVersion();
+
+        if (since == null) {
+            return new SyncDTO(version, true,
+                buildingPolygonMapper.toDTOs(buildingPolygonRepository.findAllIncludingBuildingType()),
+                roadSegmentMapper.toDTOs(roadSegmentRepository.findAll()),
+                List.of(), List.of());
+        }
+
+        Set<UUID> changedBuildingIds = new HashSet<>();
+        Set<UUID> changedRoadIds = new HashSet<>();
+        List<UUID> deletedBuildingIds = new ArrayList<>();
+        List<UUID> deletedRoadIds = new ArrayList<>();
+
+        for (FeatureChangeEntity change : featureChangeRepository.findLatestChangesBetween(since, version)) {
+            boolean deleted = change.getChangeType() == ChangeType.DELETED;
+            if (change.getFeatureType() == FeatureType.BUILDING) {
+                (deleted ? deletedBuildingIds : changedBuildingIds).add(change.getFeatureId());
+            } else {
+                (deleted ? deletedRoadIds : changedRoadIds).add(change.getFeatureId());
+            }
+        }
+
+        List<BuildingPolygonDTO> buildings = buildingPolygonMapper.toDTOs(
+            buildingPolygonRepository.findAllByIdIncludingBuildingType(changedBuildingIds));
+        List<RoadSegmentDTO> roads = roadSegmentMapper.toDTOs(
+            roadSegmentRepository.findAllById(changedRoadIds));
+
+        // Features die in het logboek als gewijzigd staan maar inmiddels niet meer bestaan, zijn verwijderd
+        buildings.forEach(building -> changedBuildingIds.remove(building.getBuildingId()));
+        roads.forEach(road -> changedRoadIds.remove(road.getId()));
+        deletedBuildingIds.addAll(changedBuildingIds);
+        deletedRoadIds.addAll(changedRoadIds);
+
+        return new SyncDTO(version, false, buildings, roads, deletedBuildingIds, deletedRoadIds);
+    }
+}
@@ -0,0 +1,36 @@
+package nhl.stenden.spoordock.services;
+
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import nhl.stenden.spoordock.database.BuildingPolygonEmbeddingRepository;
+import nhl.stenden.spoordock.database.entities.BuildingPolygonEmbeddingEntity;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+
+/**
+ * Nearest-neighbour zoekopdrachten op polygon_embeddings met instelbare recall.
+ * De pgvector instellingen worden per transactie gezet, zodat ze niet op de gedeelde connectie in de pool blijven staan.
+ */
+@Service
+public class VectorSearchService {
+
+    private final BuildingPolygonEmbeddingRepository buildingPolygonEmbeddingRepository;
+    private final int efSearch;
+    private final int probes;
+
+    public VectorSearchService(BuildingPolygonEmbeddingRepository buildingPolygonEmbeddingRepository, LlmConfiguration llmConfiguration) {
+        this.buildingPolygonEmbeddingRepository = buildingPolygonEmbeddingRepository;
+        this.efSearch = Math.max(1, llmConfiguration.getEmbedding().getHnswEfSearch());
+        this.probes = Math.max(1, llmConfiguration.getEmbedding().getIvfflatProbes());
+    }
+
+    @Transactional(readOnly = true)
+    public List<BuildingPolygonEmbeddingEntity> findNearest(float[] query, int limit) {
+        // HNSW geeft nooit meer dan ef_search resultaten terug, dus ef_search moet minimaal de limit zijn
+        buildingPolygonEmbeddingRepository.setLocalSearchSetting("hnsw.ef_search", String.valueOf(Math.max(efSearch, limit)));
+        buildingPolygonEmbeddingRepository.setLocalSearchSetting("ivfflat.probes", String.valueOf(probes));
+        return buildingPolygonEmbeddingRepository.findNearestByEmbedding(query, limit);
+    }
+}
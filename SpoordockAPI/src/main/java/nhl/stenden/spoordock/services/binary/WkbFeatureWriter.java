@@ -0,0 +1,90 @@
+package nhl.stenden.spoordock.services.binary;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Schrijft gebouwen en wegsegmenten in een compact binair formaat, met de geometrie als WKB
+ * rechtstreeks uit PostGIS (ST_AsBinary). Er worden dus geen JTS objecten of Coordinate DTO's aangemaakt.
+ *
+ * Formaat (big-endian):
+ * <pre>
+ * header:   4 bytes magic "SPDK", 1 byte formaatversie, 1 byte featuretype ('B' = gebouw, 'R' = weg)
+ * gebouw:   uuid id, uuid gebouwtype, double hoogte, string naam, string omschrijving, bytes wkb
+ * weg:      uuid id, uuid wegtype, int breedte, string omschrijving, bytes wkb
+ *
+ * uuid   = 16 bytes (most significant bits eerst), alle bits 0 als er geen waarde is
+ * string = int lengte + UTF-8 bytes, lengte -1 voor null
+ * bytes  = int lengte + bytes
+ * </pre>
+ * Records volgen elkaar op tot het einde van de stream.
+ */
+public class WkbFeatureWriter {
+
+    public static final String MEDIA_TYPE = "application/octet-stream";
+
+    private static final byte[] MAGIC = { 'S', 'P', 'D', 'K' };
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte FEATURE_BUILDING = 'B';
+    private static final byte FEATURE_ROAD = 'R';
+
+    private final DataOutputStream out;
+
+    private WkbFeatureWriter(OutputStream out, byte featureType) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.out.write(MAGIC);
+        this.out.writeByte(FORMAT_VERSION);
+        this.out.writeByte(featureType);
+    }
+
+    public static WkbFeatureWriter forBuildings(OutputStream out) throws IOException {
+        return new WkbFeatureWriter(out, FEATURE_BUILDING);
+    }
+
+    public static WkbFeatureWriter forRoads(OutputStream out) throws IOException {
+        return new WkbFeatureWriter(out, FEATURE_ROAD);
+    }
+
+    public void writeBuilding(UUID id, UUID buildingTypeId, double height, String name, String description, byte[] wkb)
+            throws IOException {
+        writeUuid(id);
+        writeUuid(buildingTypeId);
+        out.writeDouble(height);
+        writeString(name);
+        writeString(description);
+        writeBytes(wkb);
+    }
+
+    public void writeRoad(UUID id, UUID roadTypeId, int width, String description, byte[] wkb) throws IOException {
+        writeUuid(id);
+        writeUuid(roadTypeId);
+        out.writeInt(width);
+        writeString(description);
+        writeBytes(wkb);
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private void writeUuid(UUID uuid) throws IOException {
+        out.writeLong(uuid != null ? uuid.getMostSignificantBits() : 0L);
+        out.writeLong(uuid != null ? uuid.getLeastSignificantBits() : 0L);
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeBytes(byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+}
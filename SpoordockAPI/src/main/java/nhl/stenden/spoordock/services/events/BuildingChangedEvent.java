@@ -0,0 +1,30 @@
+package nhl.stenden.spoordock.services.events;
+
+import java.util.Set;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import nhl.stenden.spoordock.controllers.dtos.BuildingPolygonDTO;
+
+/**
+ * Wordt gepubliceerd door de BuildingService wanneer een gebouw is aangemaakt, gewijzigd of verwijderd.
+ * Listeners gebruiken @TransactionalEventListener zodat ze pas na de commit reageren.
+ */
+@Getter
+@AllArgsConstructor
+public class BuildingChangedEvent {
+
+    // Versie in het wijzigingslogboek (feature_changes); oplopend over alle features
+    private final long version;
+
+    private final UUID buildingId;
+    private final ChangeType changeType;
+
+    // Gebouwtypes waarvan de totalen door deze wijziging veranderd zijn (oud en nieuw type bij een typewijziging)
+    private final Set<UUID> buildingTypeIds;
+
+    // Nieuwe toestand van het gebouw; null bij een delete
+    private final BuildingPolygonDTO building;
+
+}
@@ -0,0 +1,10 @@
+package nhl.stenden.spoordock.services.events;
+
+/**
+ * Soort wijziging aan een feature (gebouw of weg).
+ */
+public enum ChangeType {
+    CREATED,
+    UPDATED,
+    DELETED
+}
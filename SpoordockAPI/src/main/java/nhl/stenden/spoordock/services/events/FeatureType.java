@@ -0,0 +1,9 @@
+package nhl.stenden.spoordock.services.events;
+
+/**
+ * Soort feature waarop een wijziging betrekking heeft.
+ */
+public enum FeatureType {
+    BUILDING,
+    ROAD
+}
@@ -0,0 +1,26 @@
+package nhl.stenden.spoordock.services.events;
+
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import nhl.stenden.spoordock.controllers.dtos.RoadSegmentDTO;
+
+/**
+ * Wordt gepubliceerd door de RoadService wanneer een wegsegment is aangemaakt, gewijzigd of verwijderd.
+ * Listeners gebruiken @TransactionalEventListener zodat ze pas na de commit reageren.
+ */
+@Getter
+@AllArgsConstructor
+public class RoadChangedEvent {
+
+    // Versie in het wijzigingslogboek (feature_changes); oplopend over alle features
+    private final long version;
+
+    private final UUID roadId;
+    private final ChangeType changeType;
+
+    // Nieuwe toestand van het wegsegment; null bij een delete
+    private final RoadSegmentDTO road;
+
+}
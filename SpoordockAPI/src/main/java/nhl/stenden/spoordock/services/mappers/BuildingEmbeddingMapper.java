@@ -1,7 +1,6 @@
 package nhl.stenden.spoordock.services.mappers;
 
-import org.locationtech.jts.geom.Polygon;
-
+import nhl.stenden.spoordock.controllers.dtos.common.CoordinateSequenceList;
 import nhl.stenden.spoordock.database.entities.BuildingPolygonEntity;
 import nhl.stenden.spoordock.llmService.EmbeddableTextMapper;
 
@@ -27,17 +26,17 @@ public class BuildingEmbeddingMapper implements EmbeddableTextMapper<BuildingPol
         embeddableText.append("Name: ").append(building.getName()).append("\n");
         embeddableText.append("Description: ").append(building.getDescription()).append("\n");
 
-        Polygon polygon = building.getPolygon();
+        // Eén keer een view op de CoordinateSequence, i.p.v. per punt de hele coordinate array te kopiëren
+        CoordinateSequenceList coordinates = CoordinateSequenceList.of(building.getPolygon());
         embeddableText.append("Polygon Coordinates: ").append("\n")
             .append("[");
 
-        for (int i = 0; i < polygon.getNumPoints(); i++) {
-            var coord = polygon.getCoordinates()[i];
-            embeddableText.append("(").append(coord.x).append(", ").append(coord.y).append(")");
-            if (i < polygon.getNumPoints() - 1) {
+        for (int i = 0; i < coordinates.size(); i++) {
+            embeddableText.append("(").append(coordinates.getX(i)).append(", ").append(coordinates.getY(i)).append(")");
+            if (i < coordinates.size() - 1) {
                 embeddableText.append(", ");
             }
-        }   
+        }
         embeddableText.append("]");
         return embeddableText.toString();
     }
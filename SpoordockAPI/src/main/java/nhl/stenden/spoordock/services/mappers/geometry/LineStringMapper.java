@@ -1,12 +1,12 @@
 package nhl.stenden.spoordock.services.mappers.geometry;
 
-import java.util.Arrays;
 import java.util.List;
 
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
 import org.springframework.stereotype.Component;
 import nhl.stenden.spoordock.controllers.dtos.common.Coordinate;
+import nhl.stenden.spoordock.controllers.dtos.common.CoordinateSequenceList;
 import nhl.stenden.spoordock.services.mappers.Mapper;
 
 @Component
@@ -20,16 +20,8 @@ public class LineStringMapper implements Mapper<List<Coordinate>, LineString> {
     
     @Override
     public List<Coordinate> toDTO(LineString lineString) {
-        return Arrays.stream(lineString.getCoordinates())
-                .map(
-                    x-> {
-                        Coordinate coord = new Coordinate();
-                        coord.setX(x.getX());
-                        coord.setY(x.getY());
-                        coord.setZ(x.getZ());
-                        return coord;
-                    }
-                ).toList();
+        // View op de CoordinateSequence; coördinaten worden pas bij het serialiseren gelezen
+        return CoordinateSequenceList.of(lineString);
     }
 
     @Override
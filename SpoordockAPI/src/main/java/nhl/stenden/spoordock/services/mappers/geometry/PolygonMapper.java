@@ -1,13 +1,12 @@
 package nhl.stenden.spoordock.services.mappers.geometry;
 
-import java.util.Arrays;
 import java.util.List;
 
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Polygon;
 import org.springframework.stereotype.Component;
 
-import nhl.stenden.spoordock.controllers.dtos.common.Coordinate;
+import nhl.stenden.spoordock.controllers.dtos.common.CoordinateSequenceList;
 import nhl.stenden.spoordock.controllers.dtos.polygon.PolygonDTO;
 import nhl.stenden.spoordock.services.mappers.Mapper;
 
@@ -23,18 +22,9 @@ public class PolygonMapper implements Mapper<PolygonDTO, Polygon> {
     @Override
     public PolygonDTO toDTO(Polygon polygon) {
 
-        var coordinates = Arrays.stream(polygon.getCoordinates())
-            .map(coord -> {
-                var dto = new Coordinate();
-                dto.setX(coord.getX());
-                dto.setY(coord.getY());
-                dto.setZ(coord.getZ());
-                return dto;
-            })
-            .toList();
-
+        // View op de CoordinateSequence; coördinaten worden pas bij het serialiseren gelezen
         var polygonDTO = new PolygonDTO();
-        polygonDTO.setCoordinates(coordinates);
+        polygonDTO.setCoordinates(CoordinateSequenceList.of(polygon));
         return polygonDTO;
     }
 
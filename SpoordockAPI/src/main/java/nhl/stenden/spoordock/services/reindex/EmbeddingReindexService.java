@@ -0,0 +1,278 @@
+package nhl.stenden.spoordock.services.reindex;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import nhl.stenden.spoordock.backgroundprocessor.BackgroundProcessor;
+import nhl.stenden.spoordock.controllers.dtos.ReindexProgressDTO;
+import nhl.stenden.spoordock.database.BuildingPolygonRepository;
+import nhl.stenden.spoordock.database.ReindexJobRepository;
+import nhl.stenden.spoordock.database.entities.BuildingPolygonEmbeddingEntity;
+import nhl.stenden.spoordock.database.entities.BuildingPolygonEntity;
+import nhl.stenden.spoordock.database.entities.ReindexJobEntity;
+import nhl.stenden.spoordock.llmService.OllamaEmbeddingClient;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+import nhl.stenden.spoordock.services.BuildingEmbeddingService;
+import nhl.stenden.spoordock.services.BuildingEmbeddingService.ChangedBuilding;
+import nhl.stenden.spoordock.services.InMemoryVectorIndexService;
+
+/**
+ * Bouwt polygon_embeddings volledig opnieuw op, bijvoorbeeld na het wisselen van embedding model.
+ * De gebouwen worden per pagina (keyset op ID) opgehaald en in batches naar Ollama gestuurd, met een
+ * maximum aantal gelijktijdige aanroepen. Na elke pagina wordt het laatste ID als checkpoint opgeslagen,
+ * zodat een job die door een herstart is onderbroken bij het opstarten verder gaat waar hij gebleven was.
+ */
+@Slf4j
+@Service
+public class EmbeddingReindexService {
+
+    private final BuildingPolygonRepository buildingPolygonRepository;
+    private final ReindexJobRepository reindexJobRepository;
+    private final OllamaEmbeddingClient ollamaEmbeddingClient;
+    private final BuildingEmbeddingService buildingEmbeddingService;
+    private final PolygonEmbeddingBatchWriter batchWriter;
+    private final InMemoryVectorIndexService inMemoryVectorIndexService;
+    private final BackgroundProcessor backgroundProcessor;
+
+    private final int pageSize;
+    private final int batchSize;
+    private final Semaphore ollamaPermits;
+
+    // Job die in deze applicatie draait; er loopt er maximaal één tegelijk
+    private final AtomicReference<UUID> runningJobId = new AtomicReference<>();
+    private volatile boolean cancelRequested;
+
+    // Doorvoer van de huidige run; na een herstart begint deze opnieuw
+    private volatile long runStartedNanos;
+    private final AtomicLong runProcessed = new AtomicLong(0);
+
+    public EmbeddingReindexService(
+        BuildingPolygonRepository buildingPolygonRepository,
+        ReindexJobRepository reindexJobRepository,
+        OllamaEmbeddingClient ollamaEmbeddingClient,
+        BuildingEmbeddingService buildingEmbeddingService,
+        PolygonEmbeddingBatchWriter batchWriter,
+        InMemoryVectorIndexService inMemoryVectorIndexService,
+        BackgroundProcessor backgroundProcessor,
+        LlmConfiguration llmConfiguration) {
+        this.buildingPolygonRepository = buildingPolygonRepository;
+        this.reindexJobRepository = reindexJobRepository;
+        this.ollamaEmbeddingClient = ollamaEmbeddingClient;
+        this.buildingEmbeddingService = buildingEmbeddingService;
+        this.batchWriter = batchWriter;
+        this.inMemoryVectorIndexService = inMemoryVectorIndexService;
+        this.backgroundProcessor = backgroundProcessor;
+
+        LlmConfiguration.Embedding embeddingConfiguration = llmConfiguration.getEmbedding();
+        this.pageSize = Math.max(1, embeddingConfiguration.getReindexPageSize());
+        this.batchSize = Math.max(1, embeddingConfiguration.getBatchSize());
+        this.ollamaPermits = new Semaphore(Math.max(1, embeddingConfiguration.getReindexConcurrency()));
+    }
+
+    /**
+     * Start een nieuwe re-index job op de achtergrond.
+     *
+     * @param force ook gebouwen opnieuw embedden waarvan de embedding al met het huidige model en de huidige tekst gemaakt is
+     * @throws IllegalStateException als er al een job loopt
+     */
+    public synchronized ReindexProgressDTO start(boolean force) {
+        if (runningJobId.get() != null) {
+            throw new IllegalStateException("Er loopt al een re-index job");
+        }
+
+        ReindexJobEntity job = new ReindexJobEntity(
+            ollamaEmbeddingClient.getEmbeddingModelName(),
+            BuildingEmbeddingService.EMBEDDING_DIMENSIONS,
+            force,
+            buildingPolygonRepository.count());
+        reindexJobRepository.save(job);
+        log.info("Re-index job {} gestart voor {} gebouwen (force={})", job.getJobId(), job.getTotal(), force);
+
+        launch(job);
+        return toProgress(job);
+    }
+
+    /**
+     * Vraagt de lopende job om te stoppen; de huidige pagina wordt nog afgemaakt.
+     *
+     * @return false als er geen job loopt
+     */
+    public boolean cancel() {
+        if (runningJobId.get() == null) {
+            return false;
+        }
+        cancelRequested = true;
+        return true;
+    }
+
+    public Optional<ReindexProgressDTO> getProgress() {
+        return reindexJobRepository.findFirstByOrderByStartedAtDesc().map(this::toProgress);
+    }
+
+    // Een job die nog op RUNNING staat is onderbroken door een herstart, die gaat verder vanaf het checkpoint
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void resumeInterruptedJob() {
+        reindexJobRepository.findFirstByStatusOrderByStartedAtDesc(ReindexStatus.RUNNING).ifPresent(job -> {
+            if (!job.getEmbeddingModel().equals(ollamaEmbeddingClient.getEmbeddingModelName())
+                    || job.getEmbeddingDimensions() != BuildingEmbeddingService.EMBEDDING_DIMENSIONS) {
+                // Verder gaan zou twee soorten embeddings door elkaar opleveren
+                log.warn("Re-index job {} niet hervat, het embedding model of de dimensies zijn gewijzigd", job.getJobId());
+                finish(job, ReindexStatus.FAILED, "Embedding model of dimensies gewijzigd sinds de start van de job");
+                return;
+            }
+            log.info("Re-index job {} hervat na gebouw {} ({}/{})", job.getJobId(), job.getLastBuildingId(), job.getProcessed(), job.getTotal());
+            launch(job);
+        });
+    }
+
+    private void launch(ReindexJobEntity job) {
+        cancelRequested = false;
+        runStartedNanos = System.nanoTime();
+        runProcessed.set(0);
+        runningJobId.set(job.getJobId());
+        backgroundProcessor.submitTask(() -> run(job));
+    }
+
+    void run(ReindexJobEntity job) {
+        try {
+            UUID cursor = job.getLastBuildingId();
+            while (!cancelRequested) {
+                Pageable page = PageRequest.of(0, pageSize);
+                Slice<BuildingPolygonEntity> buildings = cursor == null
+                    ? buildingPolygonRepository.findFirstPageIncludingBuildingType(page)
+                    : buildingPolygonRepository.findPageAfterIncludingBuildingType(cursor, page);
+                if (buildings.isEmpty()) {
+                    break;
+                }
+
+                int skipped = reindexPage(job, buildings.getContent());
+                cursor = buildings.getContent().get(buildings.getNumberOfElements() - 1).getBuildingId();
+
+                // Checkpoint: pas na het wegschrijven van de pagina, zodat een herstart nooit gebouwen overslaat
+                job.setLastBuildingId(cursor);
+                job.setProcessed(job.getProcessed() + buildings.getNumberOfElements());
+                job.setSkipped(job.getSkipped() + skipped);
+                job.setUpdatedAt(OffsetDateTime.now());
+                reindexJobRepository.save(job);
+                runProcessed.addAndGet(buildings.getNumberOfElements());
+
+                if (!buildings.hasNext()) {
+                    break;
+                }
+            }
+
+            if (cancelRequested) {
+                log.info("Re-index job {} geannuleerd na {} gebouwen", job.getJobId(), job.getProcessed());
+                finish(job, ReindexStatus.CANCELLED, null);
+            } else {
+                log.info("Re-index job {} voltooid: {} gebouwen, {} overgeslagen", job.getJobId(), job.getProcessed(), job.getSkipped());
+                finish(job, ReindexStatus.COMPLETED, null);
+            }
+        } catch (Exception ex) {
+            log.error("Re-index job {} mislukt na gebouw {}", job.getJobId(), job.getLastBuildingId(), ex);
+            finish(job, ReindexStatus.FAILED, ex.getMessage());
+        } finally {
+            runningJobId.set(null);
+        }
+    }
+
+    /**
+     * Embedt één pagina gebouwen en schrijft die in één JDBC batch weg.
+     *
+     * @return het aantal gebouwen dat overgeslagen is omdat de embedding al actueel was
+     */
+    private int reindexPage(ReindexJobEntity job, List<BuildingPolygonEntity> buildings) throws InterruptedException, ExecutionException {
+        String modelName = job.getEmbeddingModel();
+        List<ChangedBuilding> changedBuildings = buildingEmbeddingService.findChangedBuildings(buildings, modelName, job.isForce());
+        if (changedBuildings.isEmpty()) {
+            return buildings.size();
+        }
+
+        List<String> sources = changedBuildings.stream().map(ChangedBuilding::source).toList();
+        List<float[]> embeddings = embedInParallel(sources, job.getEmbeddingDimensions());
+        List<BuildingPolygonEmbeddingEntity> embeddingEntities = BuildingEmbeddingService.toEmbeddingEntities(
+            changedBuildings, embeddings, modelName, job.getEmbeddingDimensions());
+        List<BuildingPolygonEmbeddingEntity> written = batchWriter.upsert(embeddingEntities);
+        if (written.size() < embeddingEntities.size()) {
+            log.info("{} gebouw(en) verwijderd tijdens re-index job {}, embedding niet opgeslagen",
+                embeddingEntities.size() - written.size(), job.getJobId());
+        }
+        inMemoryVectorIndexService.index(written);
+
+        return buildings.size() - changedBuildings.size();
+    }
+
+    // De batches van een pagina gaan gelijktijdig naar Ollama, maar nooit meer dan reindexConcurrency tegelijk.
+    // De cache wordt bewust overgeslagen: een re-index zou anders de LRU volledig vervangen.
+    private List<float[]> embedInParallel(List<String> sources, int dimensions) throws InterruptedException, ExecutionException {
+        List<Future<List<float[]>>> batches = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int start = 0; start < sources.size(); start += batchSize) {
+                List<String> batch = sources.subList(start, Math.min(start + batchSize, sources.size()));
+                batches.add(executor.submit(() -> {
+                    ollamaPermits.acquire();
+                    try {
+                        return ollamaEmbeddingClient.createEmbeddings(batch, dimensions);
+                    } finally {
+                        ollamaPermits.release();
+                    }
+                }));
+            }
+        }
+
+        List<float[]> embeddings = new ArrayList<>(sources.size());
+        for (Future<List<float[]>> batch : batches) {
+            embeddings.addAll(batch.get());
+        }
+        return embeddings;
+    }
+
+    private void finish(ReindexJobEntity job, ReindexStatus status, String error) {
+        OffsetDateTime now = OffsetDateTime.now();
+        job.setStatus(status);
+        job.setError(error);
+        job.setUpdatedAt(now);
+        job.setFinishedAt(now);
+        reindexJobRepository.save(job);
+    }
+
+    private ReindexProgressDTO toProgress(ReindexJobEntity job) {
+        double itemsPerSecond = 0.0;
+        if (job.getJobId().equals(runningJobId.get())) {
+            double seconds = (System.nanoTime() - runStartedNanos) / 1_000_000_000.0;
+            itemsPerSecond = seconds > 0 ? runProcessed.get() / seconds : 0.0;
+        }
+        return new ReindexProgressDTO(
+            job.getJobId(),
+            job.getStatus(),
+            job.getEmbeddingModel(),
+            job.getEmbeddingDimensions(),
+            job.isForce(),
+            job.getTotal(),
+            job.getProcessed(),
+            job.getSkipped(),
+            itemsPerSecond,
+            job.getError(),
+            job.getStartedAt(),
+            job.getUpdatedAt(),
+            job.getFinishedAt());
+    }
+}
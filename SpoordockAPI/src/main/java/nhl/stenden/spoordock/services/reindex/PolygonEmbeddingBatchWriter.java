@@ -0,0 +1,80 @@
+package nhl.stenden.spoordock.services.reindex;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import nhl.stenden.spoordock.database.entities.BuildingPolygonEmbeddingEntity;
+
+/**
+ * Schrijft embeddings met één JDBC batch upsert weg, in plaats van een select + insert/update per entity via JPA.
+ * Een gebouw dat verwijderd is terwijl de embeddings gemaakt werden wordt overgeslagen in plaats van de hele batch
+ * op de foreign key te laten falen.
+ */
+@Component
+public class PolygonEmbeddingBatchWriter {
+
+    // FOR KEY SHARE houdt een gelijktijdige delete van het gebouw tegen tot de insert gecommit is
+    private static final String UPSERT = """
+        INSERT INTO polygon_embeddings
+            (polygon_id, embedding, embedding_model, embedding_source, embedding_updated_at, source_hash, embedding_dimensions)
+        SELECT ?, ?::vector, ?, ?, ?, ?, ?
+        WHERE EXISTS (SELECT 1 FROM polygones WHERE id = ? FOR KEY SHARE)
+        ON CONFLICT (polygon_id) DO UPDATE SET
+            embedding = EXCLUDED.embedding,
+            embedding_model = EXCLUDED.embedding_model,
+            embedding_source = EXCLUDED.embedding_source,
+            embedding_updated_at = EXCLUDED.embedding_updated_at,
+            source_hash = EXCLUDED.source_hash,
+            embedding_dimensions = EXCLUDED.embedding_dimensions
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PolygonEmbeddingBatchWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return de embeddings die weggeschreven zijn; zonder de embeddings van gebouwen die niet meer bestaan
+     */
+    public List<BuildingPolygonEmbeddingEntity> upsert(List<BuildingPolygonEmbeddingEntity> embeddings) {
+        if (embeddings.isEmpty()) {
+            return List.of();
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(UPSERT, embeddings, embeddings.size(), (statement, embedding) -> {
+            statement.setObject(1, embedding.getBuildingId());
+            statement.setString(2, toVectorLiteral(embedding.getEmbedding()));
+            statement.setString(3, embedding.getEmbeddingModel());
+            statement.setString(4, embedding.getEmbeddingSource());
+            statement.setTimestamp(5, Timestamp.from(embedding.getEmbeddingUpdatedAt().toInstant()));
+            statement.setString(6, embedding.getSourceHash());
+            statement.setObject(7, embedding.getEmbeddingDimensions());
+            statement.setObject(8, embedding.getBuildingId());
+        });
+
+        // 0 rijen: het gebouw bestaat niet meer. De driver kan ook SUCCESS_NO_INFO (-2) teruggeven, dat telt als geschreven.
+        List<BuildingPolygonEmbeddingEntity> written = new ArrayList<>(embeddings.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            if (counts[0][i] != 0) {
+                written.add(embeddings.get(i));
+            }
+        }
+        return written;
+    }
+
+    // pgvector tekstformaat: [0.1,0.2,0.3]
+    static String toVectorLiteral(float[] vector) {
+        StringBuilder literal = new StringBuilder(vector.length * 10).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                literal.append(',');
+            }
+            literal.append(vector[i]);
+        }
+        return literal.append(']').toString();
+    }
+}
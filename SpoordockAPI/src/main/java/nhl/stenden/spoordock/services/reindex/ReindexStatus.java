@@ -0,0 +1,8 @@
+package nhl.stenden.spoordock.services.reindex;
+
+public enum ReindexStatus {
+    RUNNING,
+    COMPLETED,
+    CANCELLED,
+    FAILED
+}
@@ -0,0 +1,39 @@
+package nhl.stenden.spoordock.services.statistics;
+
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import nhl.stenden.spoordock.database.projections.BuildingTypeStatistics;
+
+/**
+ * De totalen van alle gebouwen van één gebouwtype, zoals berekend door de statistiekenquery.
+ */
+@Getter
+@AllArgsConstructor
+public class BuildingTypeTotals {
+
+    private final UUID buildingTypeId;
+    private final long buildingCount;
+
+    // Som van de oppervlaktes in m²
+    private final double totalArea;
+
+    // Som van de volumes in m³
+    private final double totalVolume;
+
+    private final double totalHeight;
+    private final double minHeight;
+    private final double maxHeight;
+
+    public static BuildingTypeTotals from(BuildingTypeStatistics statistics) {
+        return new BuildingTypeTotals(
+            statistics.getBuildingTypeId(),
+            statistics.getBuildingCount(),
+            statistics.getTotalArea(),
+            statistics.getTotalVolume(),
+            statistics.getTotalHeight(),
+            statistics.getMinHeight(),
+            statistics.getMaxHeight());
+    }
+}
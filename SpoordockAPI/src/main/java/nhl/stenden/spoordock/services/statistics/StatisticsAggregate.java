@@ -0,0 +1,135 @@
+package nhl.stenden.spoordock.services.statistics;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import nhl.stenden.spoordock.controllers.dtos.StatisticsDTO;
+import nhl.stenden.spoordock.database.entities.BuildingTypeEntity;
+
+/**
+ * In-memory aggregaat van de gebouwstatistieken.
+ *
+ * Bevat één rij totalen per gebouwtype (berekend door de database met GROUP BY),
+ * zodat het opbouwen van de StatisticsDTO alleen O(aantal gebouwtypes) kost.
+ * Na een wijziging worden alleen de rijen van de betrokken gebouwtypes vervangen.
+ *
+ * Deze klasse is niet thread-safe; de StatisticsService regelt de synchronisatie.
+ */
+public class StatisticsAggregate {
+
+    private final Map<UUID, BuildingTypeTotals> totalsPerType = new HashMap<>();
+    private final Map<UUID, BuildingTypeEntity> buildingTypes = new HashMap<>();
+
+    /**
+     * Het totaal aantal gebouwen over alle gebouwtypes.
+     */
+    public long size() {
+        long size = 0;
+        for (BuildingTypeTotals totals : totalsPerType.values()) {
+            size += totals.getBuildingCount();
+        }
+        return size;
+    }
+
+    public void clear() {
+        totalsPerType.clear();
+        buildingTypes.clear();
+    }
+
+    public BuildingTypeEntity getBuildingType(UUID typeId) {
+        return buildingTypes.get(typeId);
+    }
+
+    /**
+     * Vervangt de totalen van één gebouwtype.
+     */
+    public void put(BuildingTypeTotals totals, BuildingTypeEntity buildingType) {
+        buildingTypes.put(buildingType.getTypeId(), buildingType);
+        if (totals.getBuildingCount() > 0) {
+            totalsPerType.put(buildingType.getTypeId(), totals);
+        } else {
+            totalsPerType.remove(buildingType.getTypeId());
+        }
+    }
+
+    /**
+     * Verwijdert de totalen van een gebouwtype, bv. omdat er geen gebouwen meer van dat type zijn.
+     */
+    public void removeType(UUID typeId) {
+        totalsPerType.remove(typeId);
+    }
+
+    public StatisticsDTO toStatistics() {
+        double totalCost = 0;
+        double totalCapacity = 0;
+        double totalPoints = 0;
+        int totalLiveableBuildings = 0;
+        int totalBuildings = 0;
+        double totalHeight = 0;
+        double tallestBuilding = 0;
+        double lowestBuilding = Double.MAX_VALUE;
+        Map<String, Integer> buildingTypeCounts = new HashMap<>();
+
+        for (var entry : totalsPerType.entrySet()) {
+            BuildingTypeEntity type = buildingTypes.get(entry.getKey());
+            BuildingTypeTotals totals = entry.getValue();
+            int count = (int) totals.getBuildingCount();
+
+            buildingTypeCounts.merge(type.getName(), count, Integer::sum);
+            totalBuildings += count;
+            totalHeight += totals.getTotalHeight();
+            tallestBuilding = Math.max(tallestBuilding, totals.getMaxHeight());
+            lowestBuilding = Math.min(lowestBuilding, totals.getMinHeight());
+
+            // Bepaal meetwaarde op basis van eenheid (m2 of m3)
+            String unit = type.getUnit() != null ? type.getUnit() : "m3";
+            double measureValue = unit.equalsIgnoreCase("m2") ? totals.getTotalArea() : totals.getTotalVolume();
+
+            totalCost += type.getCostPerUnit() * measureValue;
+
+            // Capaciteit (alleen voor bewoonbare gebouwen)
+            if (type.isInhabitable()) {
+                if (type.getResidentsPerUnit() != null) {
+                    totalCapacity += type.getResidentsPerUnit() * measureValue;
+                }
+                totalLiveableBuildings += count;
+            }
+
+            if (type.getPoints() != null) {
+                totalPoints += (double) type.getPoints() * count;
+            }
+        }
+
+        if (totalBuildings == 0) {
+            lowestBuilding = 0;
+        }
+
+        return StatisticsDTO.builder()
+            .totalCost(totalCost)
+            .averageCost(totalBuildings > 0 ? totalCost / totalBuildings : 0)
+            .averageCostPerCitizen(totalCapacity > 0 ? totalCost / totalCapacity : 0)
+            .totalCapacity(totalCapacity)
+            .totalPoints(totalPoints)
+            .totalLiveableBuildings(totalLiveableBuildings)
+            .tallestBuilding(tallestBuilding)
+            .lowestBuilding(lowestBuilding)
+            .averageHeight(totalBuildings > 0 ? totalHeight / totalBuildings : 0)
+            .totalBuildings(totalBuildings)
+            .buildingTypeCounts(buildingTypeCounts)
+            .build();
+    }
+
+    public void replaceAll(Collection<BuildingTypeTotals> totals, Collection<BuildingTypeEntity> types) {
+        clear();
+        for (BuildingTypeEntity type : types) {
+            buildingTypes.put(type.getTypeId(), type);
+        }
+        for (BuildingTypeTotals typeTotals : totals) {
+            if (buildingTypes.containsKey(typeTotals.getBuildingTypeId())) {
+                totalsPerType.put(typeTotals.getBuildingTypeId(), typeTotals);
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package nhl.stenden.spoordock.services.vectorindex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Exacte nearest-neighbour index in het geheugen.
+ *
+ * Alle vectoren staan achter elkaar in één float[] (rij i begint op i * dimensions), zodat een zoekopdracht
+ * één lineaire scan door aaneengesloten geheugen is. Bij een verwijdering wordt de laatste rij naar het
+ * vrijgekomen slot verplaatst, zodat er geen gaten ontstaan.
+ *
+ * Deze klasse is niet thread-safe; de InMemoryVectorIndexService regelt de synchronisatie.
+ */
+public class FlatVectorIndex {
+
+    private final int dimensions;
+
+    private float[] vectors;
+    private UUID[] ids;
+    private String[] sources;
+    private int size;
+    private final Map<UUID, Integer> slots = new HashMap<>();
+
+    public FlatVectorIndex(int dimensions, int initialCapacity) {
+        this.dimensions = dimensions;
+        int capacity = Math.max(16, initialCapacity);
+        this.vectors = new float[capacity * dimensions];
+        this.ids = new UUID[capacity];
+        this.sources = new String[capacity];
+    }
+
+    /**
+     * Voegt een vector toe of vervangt de bestaande vector van hetzelfde gebouw.
+     */
+    public void upsert(UUID buildingId, float[] vector, String source) {
+        checkDimensions(vector);
+        Integer slot = slots.get(buildingId);
+        if (slot == null) {
+            ensureCapacity(size + 1);
+            slot = size++;
+            slots.put(buildingId, slot);
+            ids[slot] = buildingId;
+        }
+        System.arraycopy(vector, 0, vectors, slot * dimensions, dimensions);
+        sources[slot] = source;
+    }
+
+    /**
+     * Voegt een vector alleen toe als het gebouw nog niet in de index staat.
+     *
+     * @return false als er al een (nieuwere) vector voor het gebouw was
+     */
+    public boolean putIfAbsent(UUID buildingId, float[] vector, String source) {
+        if (slots.containsKey(buildingId)) {
+            return false;
+        }
+        upsert(buildingId, vector, source);
+        return true;
+    }
+
+    public boolean remove(UUID buildingId) {
+        Integer slot = slots.remove(buildingId);
+        if (slot == null) {
+            return false;
+        }
+        int last = --size;
+        if (slot != last) {
+            System.arraycopy(vectors, last * dimensions, vectors, slot * dimensions, dimensions);
+            ids[slot] = ids[last];
+            sources[slot] = sources[last];
+            slots.put(ids[slot], slot);
+        }
+        ids[last] = null;
+        sources[last] = null;
+        return true;
+    }
+
+    /**
+     * Geeft de {@code limit} dichtstbijzijnde vectoren terug, gesorteerd op oplopende afstand.
+     */
+    public List<VectorMatch> search(float[] query, int limit) {
+        checkDimensions(query);
+        int k = Math.min(limit, size);
+        if (k <= 0) {
+            return List.of();
+        }
+
+        // De k beste tot nu toe, oplopend gesorteerd; k is klein dus invoegen is goedkoper dan een heap
+        float[] bestDistances = new float[k];
+        int[] bestSlots = new int[k];
+        Arrays.fill(bestDistances, Float.POSITIVE_INFINITY);
+
+        for (int slot = 0; slot < size; slot++) {
+            float distance = squaredDistance(query, slot * dimensions);
+            if (distance >= bestDistances[k - 1]) {
+                continue;
+            }
+            int position = k - 1;
+            while (position > 0 && bestDistances[position - 1] > distance) {
+                bestDistances[position] = bestDistances[position - 1];
+                bestSlots[position] = bestSlots[position - 1];
+                position--;
+            }
+            bestDistances[position] = distance;
+            bestSlots[position] = slot;
+        }
+
+        List<VectorMatch> matches = new ArrayList<>(k);
+        for (int i = 0; i < k; i++) {
+            matches.add(new VectorMatch(ids[bestSlots[i]], sources[bestSlots[i]], bestDistances[i]));
+        }
+        return matches;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    // Alleen de vectoren; ids en teksten komen daar nog bij
+    public long vectorBytes() {
+        return (long) vectors.length * Float.BYTES;
+    }
+
+    // Vier onafhankelijke sommen, zodat de JIT de vermenigvuldigingen niet op één optelketen hoeft te laten wachten
+    private float squaredDistance(float[] query, int offset) {
+        float sum0 = 0f, sum1 = 0f, sum2 = 0f, sum3 = 0f;
+        int d = 0;
+        for (; d + 3 < dimensions; d += 4) {
+            float diff0 = vectors[offset + d] - query[d];
+            float diff1 = vectors[offset + d + 1] - query[d + 1];
+            float diff2 = vectors[offset + d + 2] - query[d + 2];
+            float diff3 = vectors[offset + d + 3] - query[d + 3];
+            sum0 += diff0 * diff0;
+            sum1 += diff1 * diff1;
+            sum2 += diff2 * diff2;
+            sum3 += diff3 * diff3;
+        }
+        for (; d < dimensions; d++) {
+            float diff = vectors[offset + d] - query[d];
+            sum0 += diff * diff;
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length + (ids.length >> 1));
+        vectors = Arrays.copyOf(vectors, capacity * dimensions);
+        ids = Arrays.copyOf(ids, capacity);
+        sources = Arrays.copyOf(sources, capacity);
+    }
+
+    private void checkDimensions(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Vector heeft " + vector.length + " dimensies, verwacht " + dimensions);
+        }
+    }
+}
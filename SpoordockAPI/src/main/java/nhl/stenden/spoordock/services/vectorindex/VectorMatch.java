@@ -0,0 +1,20 @@
+package nhl.stenden.spoordock.services.vectorindex;
+
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Eén resultaat van een zoekopdracht in de FlatVectorIndex.
+ */
+@Getter
+@AllArgsConstructor
+public class VectorMatch {
+
+    private final UUID buildingId;
+    private final String source;
+
+    // Gekwadrateerde L2 afstand; zelfde volgorde als de <-> operator van pgvector
+    private final float distance;
+}
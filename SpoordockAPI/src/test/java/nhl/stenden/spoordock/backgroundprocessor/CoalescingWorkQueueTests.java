@@ -0,0 +1,158 @@
+package nhl.stenden.spoordock.backgroundprocessor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CoalescingWorkQueueTests {
+
+    private final AtomicLong now = new AtomicLong(0);
+    private final List<Runnable> scheduledFlushes = new ArrayList<>();
+    private final List<List<String>> flushedBatches = new ArrayList<>();
+
+    private CoalescingWorkQueue<String> queue;
+
+    @BeforeEach
+    void beforeEach() {
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        when(scheduler.schedule(any(Runnable.class), anyLong(), eq(TimeUnit.NANOSECONDS)))
+            .thenAnswer(invocation -> {
+                scheduledFlushes.add(invocation.getArgument(0));
+                return null;
+            });
+
+        queue = new CoalescingWorkQueue<>(Duration.ofSeconds(2), 2, flushedBatches::add, scheduler, now::get);
+    }
+
+    private void runScheduledFlushes() {
+        List<Runnable> flushes = new ArrayList<>(scheduledFlushes);
+        scheduledFlushes.clear();
+        flushes.forEach(Runnable::run);
+    }
+
+    @Test
+    void submit_sameKeyRepeatedly_flushesOnce() {
+        // Arrange
+        queue.submit("building-1");
+        now.addAndGet(Duration.ofMillis(500).toNanos());
+        queue.submit("building-1");
+        now.addAndGet(Duration.ofMillis(500).toNanos());
+        queue.submit("building-1");
+
+        // Act
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+        runScheduledFlushes();
+
+        // Assert
+        assertEquals(List.of(List.of("building-1")), flushedBatches);
+        assertEquals(3, queue.getSubmittedCount());
+        assertEquals(2, queue.getCoalescedCount());
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    void flushDue_keyStillInDebounceWindow_isKeptAndRescheduled() {
+        // Arrange
+        queue.submit("building-1");
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        queue.submit("building-2");
+
+        // Act
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        runScheduledFlushes();
+
+        // Assert
+        assertEquals(List.of(List.of("building-1")), flushedBatches);
+        assertEquals(1, queue.getPendingCount());
+        assertEquals(1, scheduledFlushes.size());
+
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        runScheduledFlushes();
+        assertEquals(List.of(List.of("building-1"), List.of("building-2")), flushedBatches);
+    }
+
+    @Test
+    void flushDue_manyKeys_flushesInBatches() {
+        // Arrange
+        queue.submit("a");
+        queue.submit("b");
+        queue.submit("c");
+
+        // Act
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+        runScheduledFlushes();
+
+        // Assert
+        assertEquals(2, flushedBatches.size());
+        assertEquals(2, flushedBatches.get(0).size());
+        assertEquals(1, flushedBatches.get(1).size());
+        assertEquals(3, queue.getFlushedCount());
+    }
+
+    @Test
+    void flushAll_ignoresDebounceWindow() {
+        // Arrange
+        queue.submit("a");
+
+        // Act
+        queue.flushAll();
+
+        // Assert
+        assertEquals(List.of(List.of("a")), flushedBatches);
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    void flushDue_failingHandler_keepsProcessingOtherBatches() {
+        // Arrange
+        List<List<String>> handled = new CopyOnWriteArrayList<>();
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        var failingQueue = new CoalescingWorkQueue<String>(Duration.ZERO, 1, batch -> {
+            if (batch.contains("bad")) {
+                throw new RuntimeException("Embedding failed");
+            }
+            handled.add(batch);
+        }, scheduler, now::get);
+        failingQueue.submit("bad");
+        failingQueue.submit("good");
+
+        // Act
+        failingQueue.flushDue();
+
+        // Assert
+        assertEquals(List.of(List.of("good")), handled);
+        assertEquals(1, failingQueue.getFlushedCount());
+    }
+
+    @Test
+    void defaultScheduler_flushesAfterDebounce() throws Exception {
+        // Arrange
+        List<List<String>> handled = new CopyOnWriteArrayList<>();
+        var flushed = new CountDownLatch(1);
+        try (var realQueue = new CoalescingWorkQueue<String>(Duration.ofMillis(20), 10, batch -> {
+            handled.add(batch);
+            flushed.countDown();
+        })) {
+
+            // Act
+            realQueue.submit("a");
+            realQueue.submit("a");
+
+            // Assert
+            assertTrue(flushed.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of(List.of("a")), handled);
+        }
+    }
+}
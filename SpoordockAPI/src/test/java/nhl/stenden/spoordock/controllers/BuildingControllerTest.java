@@ -0,0 +1,131 @@
+package nhl.stenden.spoordock.controllers;
+
+import nhl.stenden.spoordock.controllers.dtos.BuildingPolygonDTO;
+import nhl.stenden.spoordock.services.BuildingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BuildingControllerTest {
+
+    @Mock
+    private BuildingService buildingService;
+
+    private BuildingController buildingController;
+
+    @BeforeEach
+    void setUp() {
+        buildingController = new BuildingController(buildingService, new ObjectMapper());
+    }
+
+    private static BuildingPolygonDTO building(String id) {
+        var dto = new BuildingPolygonDTO();
+        dto.setBuildingId(UUID.fromString(id));
+        return dto;
+    }
+
+    @Test
+    void listBuildings_pageWithMore_setsCursorToLastId() {
+        // Arrange
+        var first = building("11111111-1111-1111-1111-111111111111");
+        var last = building("22222222-2222-2222-2222-222222222222");
+        when(buildingService.getBuildingPolygonsPage(null, 2, false))
+            .thenReturn(new SliceImpl<>(List.of(first, last), PageRequest.ofSize(2), true));
+
+        // Act
+        ResponseEntity<?> response = buildingController.listBuildings(false, 2, null);
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(last.getBuildingId().toString(), response.getHeaders().getFirst(BuildingController.NEXT_CURSOR_HEADER));
+        assertEquals(List.of(first, last), response.getBody());
+    }
+
+    @Test
+    void listBuildings_lastPage_hasNoCursor() {
+        // Arrange
+        UUID after = UUID.fromString("11111111-1111-1111-1111-111111111111");
+        var last = building("22222222-2222-2222-2222-222222222222");
+        when(buildingService.getBuildingPolygonsPage(after, 10, true))
+            .thenReturn(new SliceImpl<>(List.of(last), PageRequest.ofSize(10), false));
+
+        // Act
+        ResponseEntity<?> response = buildingController.listBuildings(true, 10, after);
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        assertNull(response.getHeaders().getFirst(BuildingController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void listBuildings_passesEmbedTypesToPage() {
+        // Arrange
+        when(buildingService.getBuildingPolygonsPage(isNull(), eq(5), anyBoolean()))
+            .thenReturn(new SliceImpl<>(List.of(), PageRequest.ofSize(5), false));
+
+        // Act
+        buildingController.listBuildings(true, 5, null);
+        buildingController.listBuildings(false, 5, null);
+
+        // Assert
+        verify(buildingService).getBuildingPolygonsPage(null, 5, true);
+        verify(buildingService).getBuildingPolygonsPage(null, 5, false);
+    }
+
+    @Test
+    void listBuildings_limitOutOfBounds_isBadRequest() {
+        // Arrange
+        when(buildingService.getBuildingPolygonsPage(null, 1000, false))
+            .thenReturn(new SliceImpl<>(List.of(), PageRequest.ofSize(1000), false));
+
+        // Act
+        ResponseEntity<?> tooSmall = buildingController.listBuildings(false, 0, null);
+        ResponseEntity<?> tooLarge = buildingController.listBuildings(false, 1001, null);
+        ResponseEntity<?> largest = buildingController.listBuildings(false, 1000, null);
+
+        // Assert
+        assertEquals(400, tooSmall.getStatusCode().value());
+        assertEquals(400, tooLarge.getStatusCode().value());
+        assertEquals(200, largest.getStatusCode().value());
+        verify(buildingService, times(1)).getBuildingPolygonsPage(any(), anyInt(), anyBoolean());
+    }
+
+    @Test
+    void listBuildings_afterWithoutLimit_isBadRequest() {
+        // Act
+        ResponseEntity<?> response = buildingController.listBuildings(false, null, UUID.randomUUID());
+
+        // Assert
+        assertEquals(400, response.getStatusCode().value());
+        verifyNoInteractions(buildingService);
+    }
+
+    @Test
+    void listBuildings_withoutLimit_returnsFullList() {
+        // Arrange
+        var all = List.of(building("11111111-1111-1111-1111-111111111111"));
+        when(buildingService.getBuildingPolygons(true)).thenReturn(all);
+
+        // Act
+        ResponseEntity<?> response = buildingController.listBuildings(true, null, null);
+
+        // Assert
+        assertEquals(all, response.getBody());
+        assertNull(response.getHeaders().getFirst(BuildingController.NEXT_CURSOR_HEADER));
+    }
+}
@@ -0,0 +1,109 @@
+package nhl.stenden.spoordock.llmService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import nhl.stenden.spoordock.llmService.ContextWindowAssembler.ContextWindow;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+import nhl.stenden.spoordock.llmService.historyManager.classes.BotMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.OllamaMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.SystemMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.UserMessage;
+
+public class ContextWindowAssemblerTest {
+
+    private ContextWindowAssembler assembler;
+
+    @BeforeEach
+    void beforeEach() {
+        var small = new LlmConfiguration.Model();
+        small.setName("small");
+        small.setContextLength(200);
+        var large = new LlmConfiguration.Model();
+        large.setName("large");
+        large.setContextLength(40960);
+
+        var configuration = new LlmConfiguration();
+        configuration.setModels(List.of(small, large));
+        configuration.getContext().setDefaultContextLength(4096);
+        configuration.getContext().setResponseReserve(50);
+        assembler = new ContextWindowAssembler(configuration);
+    }
+
+    // 4 characters per token plus 4 tokens overhead: 400 characters is 104 tokens
+    private List<OllamaMessage> conversation(int turns) {
+        List<OllamaMessage> history = new ArrayList<>();
+        history.add(new SystemMessage("system"));
+        for (int i = 0; i < turns; i++) {
+            history.add(new UserMessage(i + "u".repeat(399)));
+            history.add(new BotMessage(i + "b".repeat(399)));
+        }
+        return history;
+    }
+
+    @Test
+    void getContextLength_usesConfiguredModelOrDefault() {
+        assertEquals(200, assembler.getContextLength("small"));
+        assertEquals(40960, assembler.getContextLength("large"));
+        assertEquals(4096, assembler.getContextLength("unknown"));
+    }
+
+    @Test
+    void assemble_smallModel_keepsSystemMessageAndNewestThatFit() {
+        // Arrange
+        List<OllamaMessage> history = conversation(3);
+
+        // Act
+        ContextWindow window = assembler.assemble("small", history, null);
+
+        // Assert
+        assertEquals(200, window.contextLength());
+        assertEquals(List.of(history.get(0), history.get(6)), window.messages());
+        assertEquals(5, window.droppedMessages());
+        assertTrue(window.estimatedTokens() <= 200 - 50);
+    }
+
+    @Test
+    void assemble_largeModel_sendsWholeHistory() {
+        // Arrange
+        List<OllamaMessage> history = conversation(10);
+
+        // Act
+        ContextWindow window = assembler.assemble("large", history, null);
+
+        // Assert
+        assertEquals(40960, window.contextLength());
+        assertEquals(history, window.messages());
+        assertEquals(0, window.droppedMessages());
+    }
+
+    @Test
+    void assemble_newestMessageTooLarge_isStillSent() {
+        // Arrange
+        List<OllamaMessage> history = List.of(new SystemMessage("system"), new UserMessage("x".repeat(10_000)));
+
+        // Act
+        ContextWindow window = assembler.assemble("small", history, null);
+
+        // Assert
+        assertEquals(history, window.messages());
+    }
+
+    @Test
+    void estimateTokens_changedContent_isEstimatedAgain() {
+        // Arrange
+        var message = new UserMessage("x".repeat(40));
+        assertEquals(14, assembler.estimateTokens(message));
+
+        // Act
+        message.setContent("x".repeat(400));
+
+        // Assert
+        assertEquals(104, assembler.estimateTokens(message));
+    }
+}
@@ -0,0 +1,195 @@
+package nhl.stenden.spoordock.llmService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+
+import nhl.stenden.spoordock.backgroundprocessor.BackgroundProcessor;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+import nhl.stenden.spoordock.llmService.historyManager.InMemoryChatHistoryManager;
+import nhl.stenden.spoordock.llmService.historyManager.classes.BotMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.OllamaMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.Role;
+import nhl.stenden.spoordock.llmService.historyManager.classes.SystemMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.ToolMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.UserMessage;
+
+public class ConversationCompactorTest {
+
+    private final UUID id = UUID.randomUUID();
+
+    private final AtomicLong clock = new AtomicLong(0);
+
+    private LlmConfiguration configuration;
+    private InMemoryChatHistoryManager historyManager;
+    private BackgroundProcessor backgroundProcessor;
+    private HttpClient httpClient;
+    private ConversationCompactor compactor;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void beforeEach() throws Exception {
+        configuration = new LlmConfiguration();
+        configuration.setBaseUrl("http://someurl.com");
+        configuration.setDefaultModel("defaultModel");
+        // Compaction above half of the 200 token context of defaultModel
+        var model = new LlmConfiguration.Model();
+        model.setName("defaultModel");
+        model.setContextLength(200);
+        configuration.setModels(List.of(model));
+        configuration.getCompaction().setTriggerRatio(0.5);
+        configuration.getCompaction().setRetryBackoff(Duration.ofSeconds(60));
+        configuration.getCompaction().setKeepRecentMessages(2);
+        configuration.getCompaction().setMaxToolMessageChars(50);
+
+        historyManager = new InMemoryChatHistoryManager();
+        backgroundProcessor = mock(BackgroundProcessor.class);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(backgroundProcessor).submitTask(any(Runnable.class));
+
+        HttpResponse<String> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(200);
+        when(response.body()).thenReturn("{\"model\":\"defaultModel\",\"response\":\"Short summary\"}");
+        httpClient = mock(HttpClient.class);
+        when(httpClient.<String>send(any(HttpRequest.class), ArgumentMatchers.<HttpResponse.BodyHandler<String>>any())).thenReturn(response);
+
+        compactor = new ConversationCompactor(configuration, historyManager, new ContextWindowAssembler(configuration), backgroundProcessor, httpClient, clock::get);
+        historyManager.createHistoryIfNotExists(id, new SystemMessage("System"));
+    }
+
+    @Test
+    void compactIfNeeded_belowThreshold_doesNotCallOllama() throws Exception {
+        // Arrange
+        historyManager.addMessageToHistory(id, new UserMessage("Hello"));
+
+        // Act
+        compactor.compactIfNeeded(id, "defaultModel");
+
+        // Assert
+        verify(httpClient, never()).send(any(), any());
+        assertEquals(2, historyManager.getHistory(id, 10).size());
+    }
+
+    @Test
+    void compactIfNeeded_aboveThreshold_replacesOlderTurnsWithSummary() throws Exception {
+        // Arrange
+        historyManager.addMessageToHistory(id, new UserMessage("u".repeat(400)));
+        historyManager.addMessageToHistory(id, new BotMessage("b".repeat(400)));
+        historyManager.addMessageToHistory(id, new UserMessage("Latest question"));
+        historyManager.addMessageToHistory(id, new BotMessage("Latest answer"));
+
+        // Act
+        compactor.compactIfNeeded(id, "defaultModel");
+
+        // Assert
+        List<OllamaMessage> history = historyManager.getHistory(id, 10);
+        assertEquals(4, history.size());
+        assertEquals(Role.SYSTEM, history.get(1).getRole());
+        assertEquals(ConversationCompactor.SUMMARY_PREFIX + "Short summary", history.get(1).getContent());
+        assertEquals("Latest question", history.get(2).getContent());
+        assertEquals(2, compactor.getReplacedMessageCount());
+        verify(backgroundProcessor).submitTask(any(Runnable.class));
+    }
+
+    @Test
+    void compact_largeRecentToolResult_isSummarizedInPlace() throws Exception {
+        // Arrange
+        historyManager.addMessageToHistory(id, new UserMessage("Which buildings are there?"));
+        historyManager.addMessageToHistory(id, new ToolMessage("get_buildings_list", "[" + "{\"name\":\"Gebouw\"},".repeat(50) + "]"));
+
+        // Act
+        compactor.compact(id);
+
+        // Assert
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient).send(requestCaptor.capture(), any());
+        assertTrue(requestCaptor.getValue().uri().toString().endsWith("/api/generate"));
+
+        OllamaMessage toolMessage = historyManager.getHistory(id, 10).get(2);
+        assertInstanceOf(ToolMessage.class, toolMessage);
+        assertEquals("get_buildings_list", ((ToolMessage) toolMessage).getToolName());
+        assertEquals("Short summary", toolMessage.getContent());
+    }
+
+    @Test
+    void compactIfNeeded_thresholdFollowsContextLengthOfChatModel() throws Exception {
+        // Arrange
+        var large = new LlmConfiguration.Model();
+        large.setName("large");
+        large.setContextLength(40960);
+        configuration.setModels(List.of(large));
+        compactor = new ConversationCompactor(configuration, historyManager, new ContextWindowAssembler(configuration), backgroundProcessor, httpClient, clock::get);
+        historyManager.addMessageToHistory(id, new UserMessage("u".repeat(400)));
+        historyManager.addMessageToHistory(id, new BotMessage("b".repeat(400)));
+        historyManager.addMessageToHistory(id, new UserMessage("Latest question"));
+
+        // Act
+        compactor.compactIfNeeded(id, "large");
+
+        // Assert
+        verify(httpClient, never()).send(any(), any());
+    }
+
+    @Test
+    void compact_keptPartStartsAtUserMessage_toolResultStaysWithItsTurn() throws Exception {
+        // Arrange
+        historyManager.addMessageToHistory(id, new UserMessage("u".repeat(400)));
+        historyManager.addMessageToHistory(id, new BotMessage("b".repeat(400)));
+        historyManager.addMessageToHistory(id, new UserMessage("Which buildings are there?"));
+        historyManager.addMessageToHistory(id, new ToolMessage("get_buildings_list", "[]"));
+        historyManager.addMessageToHistory(id, new BotMessage("There are none"));
+
+        // Act
+        compactor.compactIfNeeded(id, "defaultModel");
+
+        // Assert
+        // keepRecentMessages is 2, which would have started the kept part at the tool result
+        List<OllamaMessage> history = historyManager.getHistory(id, 10);
+        assertEquals(List.of(Role.SYSTEM, Role.SYSTEM, Role.USER, Role.TOOL, Role.ASSISTANT),
+            history.stream().map(OllamaMessage::getRole).toList());
+        assertEquals("Which buildings are there?", history.get(2).getContent());
+    }
+
+    @Test
+    void compactIfNeeded_summaryCouldNotBeApplied_backsOffForConversation() throws Exception {
+        // Arrange
+        historyManager = new InMemoryChatHistoryManager() {
+            @Override
+            public boolean replaceMessages(UUID conversationId, List<OllamaMessage> original, OllamaMessage replacement) {
+                return false;
+            }
+        };
+        historyManager.createHistoryIfNotExists(id, new SystemMessage("System"));
+        historyManager.addMessageToHistory(id, new UserMessage("u".repeat(400)));
+        historyManager.addMessageToHistory(id, new BotMessage("b".repeat(400)));
+        historyManager.addMessageToHistory(id, new UserMessage("Latest question"));
+        historyManager.addMessageToHistory(id, new BotMessage("Latest answer"));
+        compactor = new ConversationCompactor(configuration, historyManager, new ContextWindowAssembler(configuration), backgroundProcessor, httpClient, clock::get);
+
+        // Act
+        compactor.compactIfNeeded(id, "defaultModel");
+        compactor.compactIfNeeded(id, "defaultModel");
+        clock.addAndGet(Duration.ofSeconds(61).toNanos());
+        compactor.compactIfNeeded(id, "defaultModel");
+
+        // Assert
+        // First attempt and the attempt after the back-off; the one in between is skipped
+        verify(backgroundProcessor, times(2)).submitTask(any(Runnable.class));
+        assertEquals(0, compactor.getReplacedMessageCount());
+    }
+}
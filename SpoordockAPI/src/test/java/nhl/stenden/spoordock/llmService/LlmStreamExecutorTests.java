@@ -0,0 +1,184 @@
+package nhl.stenden.spoordock.llmService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+
+public class LlmStreamExecutorTests {
+
+    private LlmStreamExecutor executor;
+
+    @BeforeEach
+    void beforeEach() {
+        LlmConfiguration configuration = new LlmConfiguration();
+        configuration.getStreaming().setMaxConcurrentPerModel(1);
+        configuration.getStreaming().setMaxQueuedPerModel(1);
+        executor = new LlmStreamExecutor(configuration);
+    }
+
+    @Test
+    void trySubmit_runsStreamAndCompletes() throws Exception {
+        // Arrange
+        AtomicBoolean ran = new AtomicBoolean(false);
+
+        // Act
+        CompletableFuture<Void> result = executor.trySubmit("model", () -> {
+            ran.set(true);
+            return CompletableFuture.completedFuture(null);
+        });
+        result.get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertTrue(ran.get());
+        LlmStreamExecutor.StreamMetrics metrics = executor.getMetrics().get(0);
+        assertEquals("model", metrics.getModel());
+        assertEquals(0, metrics.getActive());
+        assertEquals(1, metrics.getCompleted());
+    }
+
+    @Test
+    void trySubmit_saturatedModel_queuesThenRejects() throws Exception {
+        // Arrange
+        CompletableFuture<Void> firstStream = new CompletableFuture<>();
+        AtomicBoolean secondRan = new AtomicBoolean(false);
+
+        // Act
+        CompletableFuture<Void> first = executor.trySubmit("model", () -> firstStream);
+        CompletableFuture<Void> second = executor.trySubmit("model", () -> {
+            secondRan.set(true);
+            return CompletableFuture.completedFuture(null);
+        });
+        CompletableFuture<Void> third = executor.trySubmit("model", () -> CompletableFuture.completedFuture(null));
+
+        // Assert
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(third);
+        assertFalse(secondRan.get());
+
+        LlmStreamExecutor.StreamMetrics metrics = executor.getMetrics().get(0);
+        assertEquals(1, metrics.getQueued());
+        assertEquals(1, metrics.getRejected());
+
+        firstStream.complete(null);
+        second.get(5, TimeUnit.SECONDS);
+        assertTrue(secondRan.get());
+        assertEquals(0, executor.getMetrics().get(0).getQueued());
+    }
+
+    @Test
+    void trySubmit_limitIsPerModel() throws Exception {
+        // Arrange
+        CompletableFuture<Void> blocking = new CompletableFuture<>();
+        executor.trySubmit("model-a", () -> blocking);
+        executor.trySubmit("model-a", () -> blocking);
+
+        // Act
+        CompletableFuture<Void> other = executor.trySubmit("model-b", () -> CompletableFuture.completedFuture(null));
+
+        // Assert
+        assertNotNull(other);
+        other.get(5, TimeUnit.SECONDS);
+        blocking.complete(null);
+    }
+
+    @Test
+    void trySubmit_failingStream_releasesSlotAndPropagatesError() throws Exception {
+        // Arrange
+        CompletableFuture<Void> failing = executor.trySubmit("model", () -> {
+            throw new RuntimeException("Failed to generate text stream");
+        });
+
+        // Act
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> next = executor.trySubmit("model", () -> CompletableFuture.completedFuture(null));
+
+        // Assert
+        assertEquals("Failed to generate text stream", exception.getCause().getMessage());
+        assertNotNull(next);
+        next.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void cancel_runningStream_cancelsStreamAndReleasesSlot() throws Exception {
+        // Arrange
+        CompletableFuture<Void> neverEnding = new CompletableFuture<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Void> first = executor.trySubmit("model", () -> {
+            started.countDown();
+            return neverEnding;
+        });
+        CompletableFuture<Void> queued = executor.trySubmit("model", () -> CompletableFuture.completedFuture(null));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Act
+        first.cancel(true);
+
+        // Assert
+        queued.get(5, TimeUnit.SECONDS);
+        assertTrue(neverEnding.isCancelled());
+        assertEquals(0, executor.getMetrics().get(0).getActive());
+    }
+
+    @Test
+    void cancel_queuedStream_neverStartsAndFreesQueueSlot() throws Exception {
+        // Arrange
+        CompletableFuture<Void> blocking = new CompletableFuture<>();
+        AtomicBoolean queuedRan = new AtomicBoolean(false);
+        executor.trySubmit("model", () -> blocking);
+        CompletableFuture<Void> queued = executor.trySubmit("model", () -> {
+            queuedRan.set(true);
+            return CompletableFuture.completedFuture(null);
+        });
+
+        // Act
+        queued.cancel(true);
+        CompletableFuture<Void> next = executor.trySubmit("model", () -> CompletableFuture.completedFuture(null));
+
+        // Assert
+        assertNotNull(next);
+        blocking.complete(null);
+        next.get(5, TimeUnit.SECONDS);
+        assertFalse(queuedRan.get());
+        assertEquals(0, executor.getMetrics().get(0).getQueued());
+    }
+
+    @Test
+    void springContext_createsAndShutsDownExecutor() {
+        // Arrange & Act
+        LlmStreamExecutor bean;
+        try (var context = new AnnotationConfigApplicationContext(LlmConfiguration.class, LlmStreamExecutor.class)) {
+            bean = context.getBean(LlmStreamExecutor.class);
+
+            // Assert
+            assertNotNull(bean.trySubmit("model", () -> CompletableFuture.completedFuture(null)));
+        }
+        assertThrows(Exception.class, () -> bean.trySubmit("model", () -> CompletableFuture.completedFuture(null)));
+    }
+
+    @Test
+    void shutdown_passedInExecutor_isLeftRunning() {
+        // Arrange
+        ExecutorService shared = Executors.newSingleThreadExecutor();
+        var streamExecutor = new LlmStreamExecutor(new LlmConfiguration(), shared);
+
+        // Act
+        streamExecutor.shutdown();
+
+        // Assert
+        assertFalse(shared.isShutdown());
+        shared.shutdown();
+    }
+}
@@ -0,0 +1,139 @@
+package nhl.stenden.spoordock.llmService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import nhl.stenden.spoordock.backgroundprocessor.BackgroundProcessor;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+
+public class ModelListCacheTests {
+
+    private final Instant start = Instant.parse("2025-01-01T10:00:00Z");
+
+    private OllamaConnectorService ollamaConnectorService;
+    private Clock clock;
+    private ModelListCache cache;
+
+    @BeforeEach
+    void beforeEach() {
+        ollamaConnectorService = mock(OllamaConnectorService.class);
+        clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(start);
+
+        // Run background tasks inline so the tests are deterministic
+        ExecutorService directExecutor = mock(ExecutorService.class);
+        when(directExecutor.submit(any(Runnable.class))).thenAnswer(invocation -> {
+            Runnable task = invocation.getArgument(0);
+            task.run();
+            return null;
+        });
+
+        LlmConfiguration configuration = new LlmConfiguration();
+        configuration.getModelCache().setTtl(Duration.ofMinutes(5));
+        cache = new ModelListCache(configuration, ollamaConnectorService, new BackgroundProcessor(directExecutor), clock);
+    }
+
+    @Test
+    void isAvailable_freshList_callsOllamaOnce() {
+        // Arrange
+        when(ollamaConnectorService.getAvailableModels()).thenReturn(List.of("llama3.2:3b", "qwen3:8b"));
+
+        // Act
+        boolean first = cache.isAvailable("qwen3:8b");
+        boolean second = cache.isAvailable("unknown");
+
+        // Assert
+        assertTrue(first);
+        assertFalse(second);
+        verify(ollamaConnectorService, times(1)).getAvailableModels();
+    }
+
+    @Test
+    void getAvailableModels_expiredList_refreshesInBackground() {
+        // Arrange
+        when(ollamaConnectorService.getAvailableModels())
+            .thenReturn(List.of("llama3.2:3b"))
+            .thenReturn(List.of("llama3.2:3b", "qwen3:8b"));
+        cache.getAvailableModels();
+        when(clock.instant()).thenReturn(start.plus(Duration.ofMinutes(6)));
+
+        // Act
+        List<String> stale = cache.getAvailableModels();
+        List<String> refreshed = cache.getAvailableModels();
+
+        // Assert
+        assertEquals(List.of("llama3.2:3b"), stale);
+        assertEquals(List.of("llama3.2:3b", "qwen3:8b"), refreshed);
+        verify(ollamaConnectorService, times(2)).getAvailableModels();
+    }
+
+    @Test
+    void isAvailable_refreshFails_keepsPreviousList() {
+        // Arrange
+        when(ollamaConnectorService.getAvailableModels())
+            .thenReturn(List.of("qwen3:8b"))
+            .thenThrow(new RuntimeException("Failed to get available models"));
+        cache.getAvailableModels();
+        when(clock.instant()).thenReturn(start.plus(Duration.ofMinutes(6)));
+
+        // Act
+        boolean available = cache.isAvailable("qwen3:8b");
+
+        // Assert
+        assertTrue(available);
+        assertTrue(cache.isAvailable("qwen3:8b"));
+    }
+
+    @Test
+    void invalidate_nextLookupLoadsFromOllama() {
+        // Arrange
+        when(ollamaConnectorService.getAvailableModels())
+            .thenReturn(List.of("llama3.2:3b"))
+            .thenReturn(List.of("qwen3:8b"));
+        cache.getAvailableModels();
+
+        // Act
+        cache.invalidate();
+        List<String> models = cache.getAvailableModels();
+
+        // Assert
+        assertEquals(List.of("qwen3:8b"), models);
+    }
+
+    @Test
+    void scheduledRefresh_listYoungerThanTtl_doesNotCallOllama() {
+        // Arrange
+        when(ollamaConnectorService.getAvailableModels()).thenReturn(List.of("qwen3:8b"));
+        cache.getAvailableModels();
+        when(clock.instant()).thenReturn(start.plus(Duration.ofMinutes(1)));
+
+        // Act
+        cache.scheduledRefresh();
+
+        // Assert
+        verify(ollamaConnectorService, times(1)).getAvailableModels();
+    }
+
+    @Test
+    void getAvailableModels_refreshFailingPastMaxStaleness_surfacesError() {
+        // Arrange
+        when(ollamaConnectorService.getAvailableModels())
+            .thenReturn(List.of("qwen3:8b"))
+            .thenThrow(new RuntimeException("Failed to get available models"));
+        cache.getAvailableModels();
+        when(clock.instant()).thenReturn(start.plus(Duration.ofMinutes(31)));
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> cache.getAvailableModels());
+    }
+}
@@ -10,15 +10,22 @@ import java.io.InputStream;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -55,6 +62,9 @@ public class OllamaConnectorServiceTest {
     @Mock
     private ToolHandlingManager toolHandlingManager;
     
+    @Mock
+    private ConversationCompactor conversationCompactor;
+
     @Mock
     private HttpClient httpClient;
     
@@ -92,7 +102,7 @@ public class OllamaConnectorServiceTest {
         when(httpClient.<InputStream>send(any(HttpRequest.class), ArgumentMatchers.<HttpResponse.BodyHandler<InputStream>>any()))
             .thenReturn(httpResponse);
 
-        testingService = new OllamaConnectorService(llmConfig, historyManager, toolHandlingManager, httpClient);
+        testingService = new OllamaConnectorService(llmConfig, historyManager, toolHandlingManager, new ContextWindowAssembler(llmConfig), conversationCompactor, httpClient);
     }
 
     @Test
@@ -277,6 +287,19 @@ public class OllamaConnectorServiceTest {
         ));
     }
 
+    @Test
+    void startChatWithToolsStream_pinsConversationWhileStreaming() throws Exception {
+        UUID id = UUID.randomUUID();
+
+        testingService.startChatWithToolsStream(id, "test prompt", defaultModel, (chunk) -> {});
+
+        InOrder inOrder = inOrder(historyManager);
+        inOrder.verify(historyManager).pin(id);
+        inOrder.verify(historyManager).createHistoryIfNotExists(eq(id), any(OllamaMessage.class));
+        inOrder.verify(historyManager, atLeastOnce()).addMessageToHistory(eq(id), any(OllamaMessage.class));
+        inOrder.verify(historyManager).unpin(id);
+    }
+
     @Test
     void startChatWithToolsStream_sendsHttpRequest() throws Exception {
         UUID id = UUID.randomUUID();
@@ -304,6 +327,16 @@ public class OllamaConnectorServiceTest {
         assertTrue(receivedChunks.stream().anyMatch(chunk -> chunk.getChunkType() == ChunkType.CompleteChunk));
     }
 
+    @Test
+    void startAnalysisStream_clearsAnalysisConversationAfterwards() throws Exception {
+        ArgumentCaptor<UUID> createdCaptor = ArgumentCaptor.forClass(UUID.class);
+
+        testingService.startAnalysisStream("analyse", defaultModel, (chunk) -> {});
+
+        verify(historyManager).createHistoryIfNotExists(createdCaptor.capture(), any(OllamaMessage.class));
+        verify(historyManager).clearHistory(createdCaptor.getValue());
+    }
+
     @Test
     void generateDescriptionHelperStream_usesDescriptionHelperPrompt() throws Exception {
         UUID id = UUID.randomUUID();
@@ -499,7 +532,7 @@ public class OllamaConnectorServiceTest {
         testingService.startChatWithToolsStream(id, "test prompt", defaultModel, chunkConsumer);
         
         verify(historyManager, atLeastOnce()).getHistory(eq(id), limitCaptor.capture());
-        assertEquals(20, limitCaptor.getValue());
+        assertEquals(llmConfig.getContext().getMaxHistoryMessages(), limitCaptor.getValue());
     }
 
     @Test
@@ -543,4 +576,185 @@ public class OllamaConnectorServiceTest {
         List<OllamaMessage> capturedMessages = messageCaptor.getAllValues();
         assertTrue(capturedMessages.stream().anyMatch(msg -> msg instanceof ToolMessage));
     }
+
+    @Test
+    void startChatWithToolsStream_requestsCompactionAfterTurn() throws Exception {
+        UUID id = UUID.randomUUID();
+
+        testingService.startChatWithToolsStream(id, "test prompt", defaultModel, chunk -> {});
+
+        verify(conversationCompactor).compactIfNeeded(id, defaultModel);
+    }
+
+    @Test
+    void startAnalysisStream_doesNotCompactOneOffConversation() throws Exception {
+        testingService.startAnalysisStream("test prompt", defaultModel, chunk -> {});
+
+        verifyNoInteractions(conversationCompactor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mockAsyncChatResponse(int statusCode, String... bodies) {
+        List<String> remaining = new ArrayList<>(List.of(bodies));
+
+        when(httpClient.<Void>sendAsync(any(HttpRequest.class), ArgumentMatchers.<HttpResponse.BodyHandler<Void>>any()))
+            .thenAnswer(invocation -> {
+                HttpResponse.BodyHandler<Void> handler = invocation.getArgument(1);
+
+                HttpResponse.ResponseInfo responseInfo = mock(HttpResponse.ResponseInfo.class);
+                when(responseInfo.statusCode()).thenReturn(statusCode);
+
+                String body = remaining.size() > 1 ? remaining.remove(0) : remaining.get(0);
+                HttpResponse.BodySubscriber<Void> bodySubscriber = handler.apply(responseInfo);
+                bodySubscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) { }
+
+                    @Override
+                    public void cancel() { }
+                });
+                bodySubscriber.onNext(List.of(ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8))));
+                bodySubscriber.onComplete();
+
+                HttpResponse<Void> response = mock(HttpResponse.class);
+                when(response.statusCode()).thenReturn(statusCode);
+                return CompletableFuture.completedFuture(response);
+            });
+    }
+
+    @Test
+    void startChatWithToolsStreamAsync_streamsChunksAndCompletes() throws Exception {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        mockAsyncChatResponse(200, """
+            {"model":"defaultModel","created_at":"2023-12-15T10:00:00Z","message":{"role":"assistant","content":"Mock response"},"done":false}
+            {"model":"defaultModel","created_at":"2023-12-15T10:00:00Z","message":{"role":"assistant","content":" continued"},"done":true}
+            """);
+        List<ChunkReceivedEventArgs> receivedChunks = new ArrayList<>();
+
+        // Act
+        testingService.startChatWithToolsStreamAsync(id, "test prompt", defaultModel, receivedChunks::add).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(3, receivedChunks.size());
+        assertEquals("Mock response", receivedChunks.get(0).getChunk());
+        assertEquals(" continued", receivedChunks.get(1).getChunk());
+        assertEquals(ChunkType.CompleteChunk, receivedChunks.get(2).getChunkType());
+
+        ArgumentCaptor<OllamaMessage> messageCaptor = ArgumentCaptor.forClass(OllamaMessage.class);
+        verify(historyManager, atLeastOnce()).addMessageToHistory(eq(id), messageCaptor.capture());
+        assertTrue(messageCaptor.getAllValues().stream().anyMatch(msg ->
+            msg instanceof BotMessage && ((BotMessage)msg).getContent().equals("Mock response continued")));
+        verify(httpClient, never()).send(any(HttpRequest.class), ArgumentMatchers.<HttpResponse.BodyHandler<InputStream>>any());
+    }
+
+    @Test
+    void startChatWithToolsStreamAsync_withToolCalls_stopsAtMaxLoops() throws Exception {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        mockAsyncChatResponse(200, """
+            {"model":"defaultModel","created_at":"2023-12-15T10:00:00Z","message":{"role":"assistant","content":"Response","tool_calls":[{"function":{"name":"tool1","arguments":{}}}]},"done":true}
+            """);
+        when(toolHandlingManager.getAvailableTools()).thenReturn(List.of());
+        when(toolHandlingManager.handleToolInvocation(any())).thenReturn("result");
+        List<ChunkReceivedEventArgs> receivedChunks = new ArrayList<>();
+
+        // Act
+        testingService.startChatWithToolsStreamAsync(id, "test prompt", defaultModel, receivedChunks::add).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        verify(httpClient, times(3)).sendAsync(any(HttpRequest.class), ArgumentMatchers.<HttpResponse.BodyHandler<Void>>any());
+        verify(toolHandlingManager, times(3)).handleToolInvocation(any());
+        assertEquals(3, receivedChunks.stream().filter(chunk -> chunk.getChunkType() == ChunkType.ToolCall).count());
+        assertEquals(ChunkType.CompleteChunk, receivedChunks.get(receivedChunks.size() - 1).getChunkType());
+    }
+
+    @Test
+    void startChatWithToolsStreamAsync_invalidJson_completesExceptionally() throws Exception {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        mockAsyncChatResponse(200, "not valid json");
+        List<ChunkReceivedEventArgs> receivedChunks = new ArrayList<>();
+
+        // Act
+        CompletableFuture<Void> stream = testingService.startChatWithToolsStreamAsync(id, "test prompt", defaultModel, receivedChunks::add);
+
+        // Assert
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> stream.get(5, TimeUnit.SECONDS));
+        assertTrue(exception.getCause().getMessage().contains("Failed to generate text stream"));
+        assertTrue(receivedChunks.stream().noneMatch(chunk -> chunk.getChunkType() == ChunkType.CompleteChunk));
+    }
+
+    @Test
+    void startChatWithToolsStreamAsync_errorStatus_completesExceptionallyWithoutChunks() throws Exception {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        mockAsyncChatResponse(404, """
+            {"error":"model 'defaultModel' not found"}
+            """);
+        List<ChunkReceivedEventArgs> receivedChunks = new ArrayList<>();
+
+        // Act
+        CompletableFuture<Void> stream = testingService.startChatWithToolsStreamAsync(id, "test prompt", defaultModel, receivedChunks::add);
+
+        // Assert
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> stream.get(5, TimeUnit.SECONDS));
+        assertTrue(exception.getCause().getCause().getMessage().contains("Status code: 404"));
+        assertTrue(receivedChunks.isEmpty());
+        verify(historyManager).pin(id);
+        verify(historyManager).unpin(id);
+    }
+
+    @Test
+    void startChatWithToolsStreamAsync_requestsNextLineOnlyAfterChunkIsHandled() throws Exception {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        List<Long> demandWhileHandling = new ArrayList<>();
+        long[] outstandingDemand = { 0 };
+
+        when(httpClient.<Void>sendAsync(any(HttpRequest.class), ArgumentMatchers.<HttpResponse.BodyHandler<Void>>any()))
+            .thenAnswer(invocation -> {
+                HttpResponse.BodyHandler<Void> handler = invocation.getArgument(1);
+                HttpResponse.ResponseInfo responseInfo = mock(HttpResponse.ResponseInfo.class);
+                when(responseInfo.statusCode()).thenReturn(200);
+
+                // Drive the line subscriber directly so the demand per line is observable
+                Flow.Subscriber<String> lineSubscriber = captureLineSubscriber(handler, responseInfo);
+                lineSubscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) { outstandingDemand[0] += n; }
+
+                    @Override
+                    public void cancel() { }
+                });
+                for (String line : List.of(
+                        "{\"message\":{\"role\":\"assistant\",\"content\":\"a\"},\"done\":false}",
+                        "{\"message\":{\"role\":\"assistant\",\"content\":\"b\"},\"done\":true}")) {
+                    outstandingDemand[0]--;
+                    lineSubscriber.onNext(line);
+                }
+                lineSubscriber.onComplete();
+
+                HttpResponse<Void> response = mock(HttpResponse.class);
+                return CompletableFuture.completedFuture(response);
+            });
+
+        Consumer<ChunkReceivedEventArgs> slowConsumer = chunk -> demandWhileHandling.add(outstandingDemand[0]);
+
+        // Act
+        testingService.startChatWithToolsStreamAsync(id, "test prompt", defaultModel, slowConsumer).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(List.of(0L, 0L, 1L), demandWhileHandling);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Flow.Subscriber<String> captureLineSubscriber(HttpResponse.BodyHandler<Void> handler, HttpResponse.ResponseInfo responseInfo) {
+        try (var bodySubscribers = mockStatic(HttpResponse.BodySubscribers.class)) {
+            ArgumentCaptor<Flow.Subscriber<String>> captor = ArgumentCaptor.forClass(Flow.Subscriber.class);
+            bodySubscribers.when(() -> HttpResponse.BodySubscribers.fromLineSubscriber(captor.capture())).thenReturn(null);
+            handler.apply(responseInfo);
+            return captor.getValue();
+        }
+    }
 }
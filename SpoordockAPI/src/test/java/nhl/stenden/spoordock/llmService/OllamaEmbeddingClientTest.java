@@ -8,10 +8,16 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -34,12 +40,15 @@ public class OllamaEmbeddingClientTest {
     @BeforeEach
     public void setUp() {
         when(configuration.getBaseUrl()).thenReturn("http://localhost:11434");
+        LlmConfiguration.Embedding embeddingConfiguration = new LlmConfiguration.Embedding();
+        embeddingConfiguration.setBatchSize(2);
+        when(configuration.getEmbedding()).thenReturn(embeddingConfiguration);
         client = new OllamaEmbeddingClient(configuration, httpClient);
     }
 
     @Test
     public void testCreateEmbedding() throws Exception {
-        String responseBody = "{\"embedding\":[[0.1,0.2,0.3]]}";
+        String responseBody = "{\"embeddings\":[[0.1,0.2,0.3]]}";
         when(httpResponse.statusCode()).thenReturn(200);
         when(httpResponse.body()).thenReturn(responseBody);
         when(httpClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
@@ -96,4 +105,87 @@ public class OllamaEmbeddingClientTest {
 
         assertTrue(exception.getMessage().contains("Failed to create embedding"));
     }
+
+    @Test
+    public void testCreateEmbeddings_SplitsIntoBatches() throws Exception {
+        when(httpResponse.statusCode()).thenReturn(200);
+        when(httpResponse.body())
+            .thenReturn("{\"embeddings\":[[1.0],[2.0]]}")
+            .thenReturn("{\"embeddings\":[[3.0],[4.0]]}")
+            .thenReturn("{\"embeddings\":[[5.0]]}");
+        when(httpClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+            .thenReturn(httpResponse);
+
+        List<float[]> result = client.createEmbeddings(List.of("a", "b", "c", "d", "e"), 768);
+
+        assertEquals(5, result.size());
+        for (int i = 0; i < result.size(); i++) {
+            assertEquals(i + 1.0f, result.get(i)[0], 0.001f);
+        }
+        verify(httpClient, times(3)).send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+    }
+
+    @Test
+    public void testCreateEmbeddings_SendsInputAsArray() throws Exception {
+        when(httpResponse.statusCode()).thenReturn(200);
+        when(httpResponse.body()).thenReturn("{\"embeddings\":[[1.0],[2.0]]}");
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        when(httpClient.send(requestCaptor.capture(), any(HttpResponse.BodyHandler.class)))
+            .thenReturn(httpResponse);
+
+        client.createEmbeddings(List.of("first", "second"), 768);
+
+        String body = readBody(requestCaptor.getValue());
+        assertTrue(body.contains("\"input\":[\"first\",\"second\"]"));
+    }
+
+    @Test
+    public void testCreateEmbeddings_MissingVectors_ThrowsRuntimeException() throws Exception {
+        when(httpResponse.statusCode()).thenReturn(200);
+        when(httpResponse.body()).thenReturn("{\"embeddings\":[[1.0]]}");
+        when(httpClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+            .thenReturn(httpResponse);
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            client.createEmbeddings(List.of("first", "second"), 768);
+        });
+
+        assertTrue(exception.getMessage().contains("Failed to create embeddings"));
+    }
+
+    @Test
+    public void testCreateEmbeddings_EmptyInput_SendsNoRequest() throws Exception {
+        List<float[]> result = client.createEmbeddings(List.of(), 768);
+
+        assertTrue(result.isEmpty());
+        verify(httpClient, never()).send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+    }
+
+    private String readBody(HttpRequest request) throws Exception {
+        StringBuilder body = new StringBuilder();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        request.bodyPublisher().orElseThrow().subscribe(new Flow.Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                body.append(StandardCharsets.UTF_8.decode(item));
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        done.get();
+        return body.toString();
+    }
 }
@@ -2,13 +2,21 @@ package nhl.stenden.spoordock.llmService.historyManager;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
 
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
 import nhl.stenden.spoordock.llmService.historyManager.classes.OllamaMessage;
 import nhl.stenden.spoordock.llmService.historyManager.classes.SystemMessage;
 import nhl.stenden.spoordock.llmService.historyManager.classes.UserMessage;
@@ -131,5 +139,189 @@ public class InMemoryHistoryManagerTests {
         assert(history.get(2).getContent().equals("Message 4"));
 
     }
-    
+
+    private final AtomicLong now = new AtomicLong(0);
+
+    private InMemoryChatHistoryManager boundedManager(int maxMessages, Duration idleTtl, DataSize maxMemory) {
+        var history = new LlmConfiguration.History();
+        history.setMaxMessagesPerConversation(maxMessages);
+        history.setIdleTtl(idleTtl);
+        history.setMaxMemory(maxMemory);
+        return new InMemoryChatHistoryManager(history, now::get);
+    }
+
+    @Test
+    void addMessageToHistory_overMessageCap_dropsOldestButKeepsSystemMessage() {
+        // Arrange
+        var manager = boundedManager(3, Duration.ofMinutes(30), DataSize.ofMegabytes(1));
+        UUID id = UUID.randomUUID();
+        manager.createHistoryIfNotExists(id, new SystemMessage(systemMessage));
+
+        // Act
+        manager.addMessageToHistory(id, new UserMessage("Message 1"));
+        manager.addMessageToHistory(id, new UserMessage("Message 2"));
+        manager.addMessageToHistory(id, new UserMessage("Message 3"));
+
+        // Assert
+        List<OllamaMessage> history = manager.getHistory(id, 10);
+        assertEquals(List.of(systemMessage, "Message 2", "Message 3"), history.stream().map(OllamaMessage::getContent).toList());
+        assertEquals(1, manager.getMetrics().getTrimmedMessages());
+    }
+
+    @Test
+    void evictIdleConversations_removesOnlyExpiredConversations() {
+        // Arrange
+        var manager = boundedManager(10, Duration.ofMinutes(30), DataSize.ofMegabytes(1));
+        UUID idle = UUID.randomUUID();
+        UUID active = UUID.randomUUID();
+        manager.createHistoryIfNotExists(idle, new SystemMessage(systemMessage));
+        manager.createHistoryIfNotExists(active, new SystemMessage(systemMessage));
+        now.addAndGet(Duration.ofMinutes(20).toNanos());
+        manager.addMessageToHistory(active, new UserMessage("Still here"));
+
+        // Act
+        now.addAndGet(Duration.ofMinutes(15).toNanos());
+        manager.evictIdleConversations();
+
+        // Assert
+        assertTrue(manager.getHistory(idle, 10).isEmpty());
+        assertEquals(2, manager.getHistory(active, 10).size());
+        assertEquals(1, manager.getMetrics().getLiveConversations());
+        assertEquals(1, manager.getMetrics().getExpiredConversations());
+    }
+
+    @Test
+    void addMessageToHistory_overMemoryBudget_evictsLeastRecentlyUsedConversation() {
+        // Arrange: every message is ~64 bytes overhead + 2 bytes per character
+        var manager = boundedManager(100, Duration.ofMinutes(30), DataSize.ofBytes(1000));
+        UUID oldest = UUID.randomUUID();
+        UUID recent = UUID.randomUUID();
+        UUID writing = UUID.randomUUID();
+        manager.createHistoryIfNotExists(oldest, new SystemMessage("a".repeat(100)));
+        now.addAndGet(1);
+        manager.createHistoryIfNotExists(recent, new SystemMessage("b".repeat(100)));
+        now.addAndGet(1);
+        manager.createHistoryIfNotExists(writing, new SystemMessage("c"));
+
+        // Act
+        manager.addMessageToHistory(writing, new UserMessage("d".repeat(300)));
+
+        // Assert
+        assertTrue(manager.getHistory(oldest, 10).isEmpty());
+        assertFalse(manager.getHistory(recent, 10).isEmpty());
+        assertEquals(2, manager.getHistory(writing, 10).size());
+        assertEquals(1, manager.getMetrics().getEvictedConversations());
+        assertTrue(manager.getMetrics().getEstimatedBytes() <= 1000);
+    }
+
+    @Test
+    void addMessageToHistory_overMemoryBudget_skipsPinnedConversation() {
+        // Arrange
+        var manager = boundedManager(100, Duration.ofMinutes(30), DataSize.ofBytes(1000));
+        UUID streaming = UUID.randomUUID();
+        UUID recent = UUID.randomUUID();
+        UUID writing = UUID.randomUUID();
+        manager.createHistoryIfNotExists(streaming, new SystemMessage("a".repeat(100)));
+        manager.pin(streaming);
+        now.addAndGet(1);
+        manager.createHistoryIfNotExists(recent, new SystemMessage("b".repeat(100)));
+        now.addAndGet(1);
+        manager.createHistoryIfNotExists(writing, new SystemMessage("c"));
+
+        // Act
+        manager.addMessageToHistory(writing, new UserMessage("d".repeat(300)));
+
+        // Assert
+        assertTrue(manager.getHistory(recent, 10).isEmpty());
+        assertDoesNotThrow(() -> manager.addMessageToHistory(streaming, new UserMessage("Still streaming")));
+        assertEquals(2, manager.getHistory(streaming, 10).size());
+    }
+
+    @Test
+    void evictIdleConversations_skipsPinnedConversationUntilUnpinned() {
+        // Arrange
+        var manager = boundedManager(10, Duration.ofMinutes(30), DataSize.ofMegabytes(1));
+        UUID id = UUID.randomUUID();
+        manager.pin(id);
+        manager.pin(id);
+        manager.createHistoryIfNotExists(id, new SystemMessage(systemMessage));
+        now.addAndGet(Duration.ofMinutes(31).toNanos());
+
+        // Act & Assert: pins are counted, the conversation expires only after the last unpin
+        manager.evictIdleConversations();
+        manager.unpin(id);
+        manager.evictIdleConversations();
+        assertEquals(0, manager.getMetrics().getExpiredConversations());
+
+        manager.unpin(id);
+        manager.evictIdleConversations();
+        assertEquals(1, manager.getMetrics().getExpiredConversations());
+    }
+
+    @Test
+    void clearHistory_releasesEstimatedMemory() {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        historyManager.createHistoryIfNotExists(id, new SystemMessage(systemMessage));
+        historyManager.addMessageToHistory(id, new UserMessage("Hello"));
+
+        // Act
+        historyManager.clearHistory(id);
+
+        // Assert
+        assertEquals(0, historyManager.getMetrics().getEstimatedBytes());
+        assertEquals(0, historyManager.getMetrics().getLiveConversations());
+    }
+
+    @Test
+    void addMessageToHistory_concurrentWriters_loseNoMessages() throws Exception {
+        // Arrange
+        var manager = boundedManager(10_000, Duration.ofMinutes(30), DataSize.ofMegabytes(16));
+        UUID id = UUID.randomUUID();
+        manager.createHistoryIfNotExists(id, new SystemMessage(systemMessage));
+        int writers = 8;
+        int messagesPerWriter = 500;
+        var start = new CountDownLatch(1);
+
+        // Act
+        try (ExecutorService executor = Executors.newFixedThreadPool(writers)) {
+            for (int w = 0; w < writers; w++) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < messagesPerWriter; i++) {
+                        manager.addMessageToHistory(id, new UserMessage("Message " + i));
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        // Assert
+        assertEquals(writers * messagesPerWriter + 1, manager.getHistory(id, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void replaceMessages_keepsMessagesAddedInTheMeantimeAndUpdatesMemory() {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        historyManager.createHistoryIfNotExists(id, new SystemMessage(systemMessage));
+        historyManager.addMessageToHistory(id, new UserMessage("x".repeat(1000)));
+        historyManager.addMessageToHistory(id, new UserMessage("y".repeat(1000)));
+        List<OllamaMessage> older = historyManager.getHistory(id, 10).subList(1, 3);
+        historyManager.addMessageToHistory(id, new UserMessage("Newest"));
+        long bytesBefore = historyManager.getMetrics().getEstimatedBytes();
+
+        // Act
+        boolean replaced = historyManager.replaceMessages(id, older, new SystemMessage("Summary"));
+
+        // Assert
+        assertTrue(replaced);
+        assertEquals(List.of(systemMessage, "Summary", "Newest"),
+            historyManager.getHistory(id, 10).stream().map(OllamaMessage::getContent).toList());
+        assertTrue(historyManager.getMetrics().getEstimatedBytes() < bytesBefore - 3000);
+        assertFalse(historyManager.replaceMessages(id, older, new SystemMessage("Summary")));
+    }
 }
@@ -0,0 +1,120 @@
+package nhl.stenden.spoordock.llmService.historyManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import nhl.stenden.spoordock.llmService.historyManager.classes.OllamaMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.UserMessage;
+
+public class MessageRingBufferTests {
+
+    private static List<String> tail(MessageRingBuffer buffer, int count) {
+        List<OllamaMessage> target = new ArrayList<>();
+        buffer.copyTail(count, target);
+        return target.stream().map(OllamaMessage::getContent).toList();
+    }
+
+    @Test
+    void copyTail_returnsLastMessagesOldestFirst() {
+        // Arrange
+        var buffer = new MessageRingBuffer(10);
+        for (int i = 1; i <= 5; i++) {
+            buffer.add(new UserMessage("Message " + i));
+        }
+
+        // Act
+        List<String> result = tail(buffer, 2);
+
+        // Assert
+        assertEquals(List.of("Message 4", "Message 5"), result);
+        assertEquals(5, tail(buffer, 100).size());
+    }
+
+    @Test
+    void add_atMaxCapacity_overwritesOldestAndReturnsIt() {
+        // Arrange
+        var buffer = new MessageRingBuffer(3);
+        buffer.add(new UserMessage("Message 1"));
+        buffer.add(new UserMessage("Message 2"));
+        buffer.add(new UserMessage("Message 3"));
+
+        // Act
+        OllamaMessage overwritten = buffer.add(new UserMessage("Message 4"));
+
+        // Assert
+        assertEquals("Message 1", overwritten.getContent());
+        assertEquals(3, buffer.size());
+        assertEquals(List.of("Message 2", "Message 3", "Message 4"), tail(buffer, 3));
+    }
+
+    @Test
+    void add_growsPastInitialCapacityAfterWrappingAround() {
+        // Arrange: wrap around in a small buffer first, then grow; the order must survive the copy
+        var buffer = new MessageRingBuffer(40);
+        for (int i = 1; i <= 39; i++) {
+            buffer.add(new UserMessage("Message " + i));
+        }
+
+        // Act
+        for (int i = 40; i <= 45; i++) {
+            buffer.add(new UserMessage("Message " + i));
+        }
+
+        // Assert
+        assertEquals(40, buffer.size());
+        List<String> all = tail(buffer, 40);
+        assertEquals("Message 6", all.get(0));
+        assertEquals("Message 45", all.get(39));
+    }
+
+    @Test
+    void copyTail_zeroOrNegative_addsNothing() {
+        // Arrange
+        var buffer = new MessageRingBuffer(5);
+        buffer.add(new UserMessage("Message 1"));
+
+        // Act & Assert
+        assertTrue(tail(buffer, 0).isEmpty());
+        assertTrue(tail(buffer, -1).isEmpty());
+    }
+
+    @Test
+    void replace_runAfterWrapAround_keepsOrder() {
+        // Arrange
+        var buffer = new MessageRingBuffer(4);
+        List<OllamaMessage> messages = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            var message = new UserMessage("Message " + i);
+            messages.add(message);
+            buffer.add(message);
+        }
+
+        // Act
+        boolean replaced = buffer.replace(messages.subList(2, 4), new UserMessage("Summary"));
+
+        // Assert
+        assertTrue(replaced);
+        assertEquals(List.of("Summary", "Message 5", "Message 6"), tail(buffer, 10));
+        buffer.add(new UserMessage("Message 7"));
+        buffer.add(new UserMessage("Message 8"));
+        assertEquals(List.of("Message 5", "Message 6", "Message 7", "Message 8"), tail(buffer, 10));
+    }
+
+    @Test
+    void replace_runNotInBuffer_returnsFalse() {
+        // Arrange
+        var buffer = new MessageRingBuffer(5);
+        var first = new UserMessage("Message 1");
+        buffer.add(first);
+        buffer.add(new UserMessage("Message 2"));
+
+        // Act & Assert
+        assertFalse(buffer.replace(List.of(new UserMessage("Message 1")), new UserMessage("Summary")));
+        assertFalse(buffer.replace(List.of(), new UserMessage("Summary")));
+        assertEquals(List.of("Message 1", "Message 2"), tail(buffer, 10));
+    }
+}
@@ -0,0 +1,354 @@
+package nhl.stenden.spoordock.llmService.historyManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+import nhl.stenden.spoordock.llmService.historyManager.classes.OllamaMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.SystemMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.ToolMessage;
+import nhl.stenden.spoordock.llmService.historyManager.classes.UserMessage;
+
+public class PostgresChatHistoryManagerTests {
+
+    private JdbcTemplate jdbcTemplate;
+    private ScheduledExecutorService flusher;
+    private LlmConfiguration.History configuration;
+    private PostgresChatHistoryManager historyManager;
+
+    private final UUID id = UUID.randomUUID();
+
+    @BeforeEach
+    void beforeEach() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        flusher = mock(ScheduledExecutorService.class);
+        configuration = new LlmConfiguration.History();
+        historyManager = new PostgresChatHistoryManager(jdbcTemplate, new InMemoryChatHistoryManager(), configuration, flusher);
+    }
+
+    private static ResultSet row(long sequenceNumber, String role, String content, String toolName) throws Exception {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getLong("sequence_number")).thenReturn(sequenceNumber);
+        when(resultSet.getString("role")).thenReturn(role);
+        when(resultSet.getString("content")).thenReturn(content);
+        when(resultSet.getString("tool_name")).thenReturn(toolName);
+        return resultSet;
+    }
+
+    // Simulates chat_messages: the first query returns the system row, the second the tail (newest first)
+    @SuppressWarnings("unchecked")
+    private void storedConversation(List<ResultSet> firstRows, List<ResultSet> tailRowsNewestFirst) {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            RowMapper<Object> mapper = invocation.getArgument(1);
+            List<ResultSet> rows = sql.contains("LIMIT 1") ? firstRows : tailRowsNewestFirst;
+            List<Object> mapped = new ArrayList<>();
+            for (int i = 0; i < rows.size(); i++) {
+                mapped.add(mapper.mapRow(rows.get(i), i));
+            }
+            return mapped;
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void addMessageToHistory_isBufferedUntilFlush() throws Exception {
+        // Arrange
+        storedConversation(List.of(), List.of());
+        historyManager.createHistoryIfNotExists(id, new SystemMessage("System"));
+        historyManager.addMessageToHistory(id, new UserMessage("Hello"));
+        historyManager.addMessageToHistory(id, new ToolMessage("findBuildings", "[]"));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        assertEquals(3, historyManager.getPendingWriteCount());
+
+        // Act
+        historyManager.flush();
+
+        // Assert
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<Object> batch) -> batch.size() == 3), eq(3), any(ParameterizedPreparedStatementSetter.class));
+        assertEquals(0, historyManager.getPendingWriteCount());
+    }
+
+    @Test
+    void getMetrics_combinesTailCacheAndWriteBuffer() {
+        // Arrange
+        storedConversation(List.of(), List.of());
+        historyManager.createHistoryIfNotExists(id, new SystemMessage("System"));
+        historyManager.addMessageToHistory(id, new UserMessage("Hello"));
+
+        // Act
+        HistoryMetrics metrics = historyManager.getMetrics();
+
+        // Assert
+        assertEquals(1, metrics.getLiveConversations());
+        assertTrue(metrics.getEstimatedBytes() > 0);
+        assertEquals(2, metrics.getPendingWrites());
+        assertEquals(0, metrics.getDroppedWrites());
+    }
+
+    @Test
+    void getHistory_cachedConversation_doesNotQueryDatabase() {
+        // Arrange
+        storedConversation(List.of(), List.of());
+        historyManager.createHistoryIfNotExists(id, new SystemMessage("System"));
+        historyManager.addMessageToHistory(id, new UserMessage("Hello"));
+        clearInvocations(jdbcTemplate);
+
+        // Act
+        List<OllamaMessage> history = historyManager.getHistory(id, 20);
+
+        // Assert
+        assertEquals(List.of("System", "Hello"), history.stream().map(OllamaMessage::getContent).toList());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void getHistory_afterRestart_loadsTailFromDatabase() throws Exception {
+        // Arrange
+        storedConversation(
+            List.of(row(1, "SYSTEM", "System", null)),
+            List.of(row(4, "TOOL", "[]", "findBuildings"), row(3, "ASSISTANT", "Answer", null), row(2, "USER", "Question", null)));
+
+        // Act
+        List<OllamaMessage> history = historyManager.getHistory(id, 20);
+        historyManager.getHistory(id, 20);
+
+        // Assert
+        assertEquals(List.of("System", "Question", "Answer", "[]"), history.stream().map(OllamaMessage::getContent).toList());
+        assertEquals("findBuildings", ((ToolMessage) history.get(3)).getToolName());
+        // Second call is served from the tail cache: one query for the system message, one for the tail
+        verify(jdbcTemplate, times(2)).query(anyString(), any(RowMapper.class), any(Object[].class));
+    }
+
+    @Test
+    void addMessageToHistory_unknownConversation_throws() {
+        // Arrange
+        storedConversation(List.of(), List.of());
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> historyManager.addMessageToHistory(id, new UserMessage("Hello")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_databaseFails_keepsMessagesForNextAttempt() {
+        // Arrange
+        storedConversation(List.of(), List.of());
+        historyManager.createHistoryIfNotExists(id, new SystemMessage("System"));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+            .thenThrow(new DataAccessResourceFailureException("Database down"));
+
+        // Act
+        assertThrows(DataAccessResourceFailureException.class, () -> historyManager.flush());
+
+        // Assert
+        assertEquals(1, historyManager.getPendingWriteCount());
+    }
+
+    @Test
+    void clearHistory_dropsBufferedMessagesAndDeletesRows() {
+        // Arrange
+        storedConversation(List.of(), List.of());
+        historyManager.createHistoryIfNotExists(id, new SystemMessage("System"));
+
+        // Act
+        historyManager.clearHistory(id);
+
+        // Assert
+        assertEquals(0, historyManager.getPendingWriteCount());
+        verify(jdbcTemplate).update(contains("DELETE FROM chat_messages"), eq(id));
+    }
+
+    @Test
+    void replaceMessages_replacesStoredRunInOneStatement() throws Exception {
+        // Arrange
+        storedConversation(
+            List.of(row(1, "SYSTEM", "System", null)),
+            List.of(row(5, "USER", "Newest", null), row(4, "TOOL", "[...]", "get_buildings_list"), row(3, "ASSISTANT", "Answer", null), row(2, "USER", "Question", null)));
+        List<OllamaMessage> history = historyManager.getHistory(id, 20);
+        List<OllamaMessage> older = history.subList(1, 4);
+
+        // Act
+        boolean replaced = historyManager.replaceMessages(id, older, new SystemMessage("Summary"));
+
+        // Assert
+        assertTrue(replaced);
+        verify(jdbcTemplate).update(contains("UPDATE chat_messages"), eq("SYSTEM"), eq("Summary"), isNull(), eq(2L), eq(id), eq(2L), eq(4L));
+        assertEquals(List.of("System", "Summary", "Newest"),
+            historyManager.getHistory(id, 20).stream().map(OllamaMessage::getContent).toList());
+    }
+
+    @Test
+    void replaceMessages_runNoLongerStored_changesNothing() throws Exception {
+        // Arrange
+        storedConversation(List.of(row(1, "SYSTEM", "System", null)), List.of(row(2, "USER", "Question", null)));
+        historyManager.getHistory(id, 20);
+
+        // Act
+        boolean replaced = historyManager.replaceMessages(id, List.of(new UserMessage("Something else")), new SystemMessage("Summary"));
+
+        // Assert
+        assertFalse(replaced);
+        verify(jdbcTemplate, never()).update(contains("UPDATE chat_messages"), any(Object[].class));
+    }
+
+    @Test
+    void start_schedulesFlushWithConfiguredInterval() {
+        // Act
+        historyManager.start();
+
+        // Assert
+        verify(flusher).scheduleWithFixedDelay(any(Runnable.class), eq(200L), eq(200L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void enqueue_bufferFull_dropsOldestMessages() {
+        // Arrange
+        configuration.setMaxPendingWrites(2);
+        historyManager = new PostgresChatHistoryManager(jdbcTemplate, new InMemoryChatHistoryManager(), configuration, flusher);
+        storedConversation(List.of(), List.of());
+        historyManager.createHistoryIfNotExists(id, new SystemMessage("System"));
+
+        // Act
+        historyManager.addMessageToHistory(id, new UserMessage("One"));
+        historyManager.addMessageToHistory(id, new UserMessage("Two"));
+
+        // Assert
+        assertEquals(2, historyManager.getPendingWriteCount());
+        assertEquals(1, historyManager.getDroppedWriteCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_rejectedRow_isRetriedThenDeadLettered_otherRowsAreWritten() {
+        // Arrange
+        configuration.setMaxWriteAttempts(2);
+        historyManager = new PostgresChatHistoryManager(jdbcTemplate, new InMemoryChatHistoryManager(), configuration, flusher);
+        UUID other = UUID.randomUUID();
+        storedConversation(List.of(), List.of());
+        historyManager.createHistoryIfNotExists(id, new SystemMessage("System"));
+        historyManager.createHistoryIfNotExists(other, new SystemMessage("System"));
+        historyManager.flush();
+        historyManager.addMessageToHistory(id, new UserMessage("Poison"));
+        historyManager.addMessageToHistory(other, new UserMessage("Fine"));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+            .thenThrow(new DataIntegrityViolationException("Rejected"));
+        when(jdbcTemplate.update(contains("INSERT INTO chat_messages"), eq(id), eq("USER"), eq("Poison"), isNull()))
+            .thenThrow(new DataIntegrityViolationException("Rejected"));
+
+        // Act
+        historyManager.flush();
+        assertEquals(1, historyManager.getPendingWriteCount());
+        historyManager.flush();
+
+        // Assert
+        verify(jdbcTemplate).update(contains("INSERT INTO chat_messages"), eq(other), eq("USER"), eq("Fine"), isNull());
+        assertEquals(0, historyManager.getPendingWriteCount());
+        assertEquals(1, historyManager.getDeadLetteredWriteCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_rejectedRow_holdsBackLaterMessagesOfSameConversation() {
+        // Arrange
+        storedConversation(List.of(), List.of());
+        historyManager.createHistoryIfNotExists(id, new SystemMessage("Poison"));
+        historyManager.addMessageToHistory(id, new UserMessage("Later"));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+            .thenThrow(new DataIntegrityViolationException("Rejected"));
+        when(jdbcTemplate.update(contains("INSERT INTO chat_messages"), eq(id), eq("SYSTEM"), eq("Poison"), isNull()))
+            .thenThrow(new DataIntegrityViolationException("Rejected"));
+
+        // Act
+        historyManager.flush();
+
+        // Assert
+        verify(jdbcTemplate, never()).update(contains("INSERT INTO chat_messages"), eq(id), eq("USER"), eq("Later"), isNull());
+        assertEquals(2, historyManager.getPendingWriteCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void clearHistory_duringFlush_deletesAfterTheBatchIsWritten() throws Exception {
+        // Arrange
+        storedConversation(List.of(), List.of());
+        historyManager.createHistoryIfNotExists(id, new SystemMessage("System"));
+        Thread[] clearing = new Thread[1];
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class))).thenAnswer(invocation -> {
+            clearing[0] = Thread.ofPlatform().start(() -> historyManager.clearHistory(id));
+            // clearHistory has to wait until this batch is in the table
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (clearing[0].getState() != Thread.State.BLOCKED && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            assertEquals(Thread.State.BLOCKED, clearing[0].getState());
+            return new int[1][];
+        });
+
+        // Act
+        historyManager.flush();
+        clearing[0].join(5000);
+
+        // Assert
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        inOrder.verify(jdbcTemplate).update(contains("DELETE FROM chat_messages"), eq(id));
+    }
+
+    @Test
+    void replaceMessages_identicalLaterRun_replacesThePositionFromTheCache() throws Exception {
+        // Arrange
+        storedConversation(
+            List.of(row(1, "SYSTEM", "System", null)),
+            List.of(row(6, "USER", "Newest", null), row(5, "ASSISTANT", "Hello", null), row(4, "USER", "Hi", null),
+                row(3, "ASSISTANT", "Hello", null), row(2, "USER", "Hi", null)));
+        List<OllamaMessage> history = historyManager.getHistory(id, 20);
+        List<OllamaMessage> older = history.subList(1, 3);
+
+        // Act
+        boolean replaced = historyManager.replaceMessages(id, older, new SystemMessage("Summary"));
+
+        // Assert
+        // Matching by content alone would have picked the newer "Hi"/"Hello" pair (4 and 5)
+        assertTrue(replaced);
+        verify(jdbcTemplate).update(contains("UPDATE chat_messages"), eq("SYSTEM"), eq("Summary"), isNull(), eq(2L), eq(id), eq(2L), eq(3L));
+        assertEquals(List.of("System", "Summary", "Hi", "Hello", "Newest"),
+            historyManager.getHistory(id, 20).stream().map(OllamaMessage::getContent).toList());
+    }
+
+    @Test
+    void replaceMessages_tableMissesNewerMessage_changesNothing() throws Exception {
+        // Arrange
+        storedConversation(
+            List.of(row(1, "SYSTEM", "System", null)),
+            List.of(row(3, "ASSISTANT", "Answer", null), row(2, "USER", "Question", null)));
+        List<OllamaMessage> history = historyManager.getHistory(id, 20);
+        // Stays in the tail cache only: the mocked batch insert does not add it to the stored rows
+        historyManager.addMessageToHistory(id, new UserMessage("Newest"));
+
+        // Act
+        boolean replaced = historyManager.replaceMessages(id, history.subList(1, 3), new SystemMessage("Summary"));
+
+        // Assert
+        assertFalse(replaced);
+        verify(jdbcTemplate, never()).update(contains("UPDATE chat_messages"), any(Object[].class));
+        assertEquals(4, historyManager.getHistory(id, 20).size());
+    }
+}
@@ -0,0 +1,177 @@
+package nhl.stenden.spoordock.services;
+
+import nhl.stenden.spoordock.backgroundprocessor.BackgroundProcessor;
+import nhl.stenden.spoordock.database.BuildingPolygonEmbeddingRepository;
+import nhl.stenden.spoordock.database.BuildingPolygonRepository;
+import nhl.stenden.spoordock.database.entities.BuildingPolygonEmbeddingEntity;
+import nhl.stenden.spoordock.database.entities.BuildingPolygonEntity;
+import nhl.stenden.spoordock.database.projections.EmbeddingFingerprint;
+import nhl.stenden.spoordock.llmService.EmbeddableTextMapper;
+import nhl.stenden.spoordock.llmService.OllamaEmbeddingClient;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+import nhl.stenden.spoordock.services.vectorindex.VectorMatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+
+import static nhl.stenden.spoordock.services.BuildingFixtures.building;
+import static nhl.stenden.spoordock.services.BuildingFixtures.sourceHash;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BuildingEmbeddingServiceTest {
+
+    @Mock
+    private BackgroundProcessor backgroundProcessor;
+
+    @Mock
+    private OllamaEmbeddingClient ollamaEmbeddingClient;
+
+    @Mock
+    private BuildingPolygonEmbeddingRepository buildingPolygonEmbeddingRepository;
+
+    @Mock
+    private BuildingPolygonRepository buildingPolygonRepository;
+
+    @Mock
+    private EmbeddingCacheService embeddingCacheService;
+
+    @Mock
+    private VectorSearchService vectorSearchService;
+
+    @Mock
+    private InMemoryVectorIndexService inMemoryVectorIndexService;
+
+    private BuildingEmbeddingService buildingEmbeddingService;
+
+    @BeforeEach
+    void setUp() {
+        buildingEmbeddingService = new BuildingEmbeddingService(
+            backgroundProcessor, ollamaEmbeddingClient, buildingPolygonEmbeddingRepository, buildingPolygonRepository, embeddingCacheService, vectorSearchService, inMemoryVectorIndexService, new LlmConfiguration());
+        buildingEmbeddingService.start();
+        lenient().when(ollamaEmbeddingClient.getEmbeddingModelName()).thenReturn("nomic-embed-text");
+    }
+
+    @AfterEach
+    void tearDown() {
+        buildingEmbeddingService.shutdown();
+    }
+
+    private EmbeddingFingerprint fingerprint(BuildingPolygonEntity building, String model, Integer dimensions) {
+        String hash = sourceHash(building);
+        EmbeddingFingerprint fingerprint = mock(EmbeddingFingerprint.class);
+        lenient().when(fingerprint.getBuildingId()).thenReturn(building.getBuildingId());
+        lenient().when(fingerprint.getSourceHash()).thenReturn(hash);
+        lenient().when(fingerprint.getEmbeddingModel()).thenReturn(model);
+        lenient().when(fingerprint.getEmbeddingDimensions()).thenReturn(dimensions);
+        return fingerprint;
+    }
+
+    @Test
+    void embedBuildings_unchangedSource_skipsOllama() {
+        // Arrange
+        var building = building(1, 10);
+        var stored = fingerprint(building, "nomic-embed-text", 768);
+        when(buildingPolygonEmbeddingRepository.findFingerprintsByBuildingIds(anyCollection())).thenReturn(List.of(stored));
+
+        // Act
+        buildingEmbeddingService.embedBuildings(List.of(building));
+
+        // Assert
+        verify(embeddingCacheService, never()).getEmbeddings(anyList(), anyInt());
+        verify(buildingPolygonEmbeddingRepository, never()).saveAll(anyList());
+        assertEquals(1, buildingEmbeddingService.getStats().getHits());
+        assertEquals(0, buildingEmbeddingService.getStats().getMisses());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void embedBuildings_changedSource_embedsOnlyChangedBuildings() {
+        // Arrange
+        var unchanged = building(1, 10);
+        var changed = building(2, 10);
+        var storedVersionOfChanged = building(2, 25);
+        var storedUnchanged = fingerprint(unchanged, "nomic-embed-text", 768);
+        var storedChanged = fingerprint(storedVersionOfChanged, "nomic-embed-text", 768);
+        when(buildingPolygonEmbeddingRepository.findFingerprintsByBuildingIds(anyCollection()))
+            .thenReturn(List.of(storedUnchanged, storedChanged));
+        when(embeddingCacheService.getEmbeddings(anyList(), eq(768))).thenReturn(List.of(new float[] { 0.5f }));
+
+        // Act
+        buildingEmbeddingService.embedBuildings(List.of(unchanged, changed));
+
+        // Assert
+        ArgumentCaptor<List<String>> sourcesCaptor = ArgumentCaptor.forClass(List.class);
+        verify(embeddingCacheService).getEmbeddings(sourcesCaptor.capture(), eq(768));
+        assertEquals(1, sourcesCaptor.getValue().size());
+        assertTrue(sourcesCaptor.getValue().get(0).contains("Gebouw 2"));
+
+        ArgumentCaptor<List<BuildingPolygonEmbeddingEntity>> savedCaptor = ArgumentCaptor.forClass(List.class);
+        verify(buildingPolygonEmbeddingRepository).saveAll(savedCaptor.capture());
+        BuildingPolygonEmbeddingEntity saved = savedCaptor.getValue().get(0);
+        assertEquals(changed.getBuildingId(), saved.getBuildingId());
+        assertEquals(EmbeddableTextMapper.contentHash(sourcesCaptor.getValue().get(0)), saved.getSourceHash());
+        assertEquals(768, saved.getEmbeddingDimensions());
+
+        assertEquals(1, buildingEmbeddingService.getStats().getHits());
+        assertEquals(1, buildingEmbeddingService.getStats().getMisses());
+    }
+
+    @Test
+    void embedBuildings_differentModel_reembeds() {
+        // Arrange
+        var building = building(1, 10);
+        var stored = fingerprint(building, "other-model", 768);
+        when(buildingPolygonEmbeddingRepository.findFingerprintsByBuildingIds(anyCollection())).thenReturn(List.of(stored));
+        when(embeddingCacheService.getEmbeddings(anyList(), eq(768))).thenReturn(List.of(new float[] { 0.5f }));
+
+        // Act
+        buildingEmbeddingService.embedBuildings(List.of(building));
+
+        // Assert
+        verify(embeddingCacheService).getEmbeddings(anyList(), eq(768));
+        assertEquals(0, buildingEmbeddingService.getStats().getHits());
+    }
+
+    @Test
+    void embedBuildings_noStoredEmbedding_embeds() {
+        // Arrange
+        var building = building(1, 10);
+        when(buildingPolygonEmbeddingRepository.findFingerprintsByBuildingIds(anyCollection())).thenReturn(List.of());
+        when(embeddingCacheService.getEmbeddings(anyList(), eq(768))).thenReturn(List.of(new float[] { 0.5f }));
+
+        // Act
+        buildingEmbeddingService.embedBuildings(List.of(building));
+
+        // Assert
+        verify(buildingPolygonEmbeddingRepository).saveAll(anyList());
+        verify(inMemoryVectorIndexService).index(anyList());
+        assertEquals(1, buildingEmbeddingService.getStats().getMisses());
+    }
+
+    @Test
+    void getBuildingsBasedOnDescription_inMemoryIndexReady_skipsPgvector() {
+        // Arrange
+        float[] promptEmbedding = { 0.5f };
+        when(embeddingCacheService.getEmbedding("hoge toren", 768)).thenReturn(promptEmbedding);
+        when(inMemoryVectorIndexService.isReady()).thenReturn(true);
+        when(inMemoryVectorIndexService.findNearest(promptEmbedding, 5))
+            .thenReturn(List.of(new VectorMatch(new UUID(0, 1), "Gebouw 1", 0.1f)));
+
+        // Act
+        List<String> result = buildingEmbeddingService.getBuildingsBasedOnDescription("hoge toren", 5);
+
+        // Assert
+        assertEquals(List.of("Gebouw 1"), result);
+        verifyNoInteractions(vectorSearchService);
+    }
+}
@@ -0,0 +1,41 @@
+package nhl.stenden.spoordock.services;
+
+import nhl.stenden.spoordock.database.entities.BuildingPolygonEntity;
+import nhl.stenden.spoordock.database.entities.BuildingTypeEntity;
+import nhl.stenden.spoordock.llmService.EmbeddableTextMapper;
+import nhl.stenden.spoordock.services.mappers.BuildingEmbeddingMapper;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.util.UUID;
+
+/**
+ * Gebouwen voor de tests van de embedding services; het ID is {@code new UUID(0, id)}.
+ */
+public final class BuildingFixtures {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    private BuildingFixtures() {
+    }
+
+    public static BuildingPolygonEntity building(long id) {
+        return building(id, 10.0);
+    }
+
+    public static BuildingPolygonEntity building(long id, double height) {
+        var type = new BuildingTypeEntity();
+        type.setName("Woning");
+        var polygon = GEOMETRY_FACTORY.createPolygon(new Coordinate[] {
+            new Coordinate(0, 0), new Coordinate(0, 1), new Coordinate(1, 1), new Coordinate(0, 0)
+        });
+        var building = new BuildingPolygonEntity("Gebouw " + id, "Beschrijving", type, polygon, height);
+        building.setBuildingId(new UUID(0, id));
+        return building;
+    }
+
+    // Hash van de tekst die voor het gebouw ge-embed wordt
+    public static String sourceHash(BuildingPolygonEntity building) {
+        return EmbeddableTextMapper.contentHash(new BuildingEmbeddingMapper().toEmbeddableText(building));
+    }
+}
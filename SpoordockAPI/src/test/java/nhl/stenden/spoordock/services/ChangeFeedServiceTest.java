@@ -0,0 +1,141 @@
+package nhl.stenden.spoordock.services;
+
+import nhl.stenden.spoordock.backgroundprocessor.BackgroundProcessor;
+import nhl.stenden.spoordock.services.events.ChangeType;
+import nhl.stenden.spoordock.services.events.RoadChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ChangeFeedServiceTest {
+
+    private BackgroundProcessor backgroundProcessor;
+    private final List<Runnable> submitted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // Taken worden pas uitgevoerd als de test runSubmitted() aanroept, zoals op een echte achtergrondthread
+        backgroundProcessor = mock(BackgroundProcessor.class);
+        doAnswer(invocation -> submitted.add(invocation.getArgument(0))).when(backgroundProcessor).submitTask(any(Runnable.class));
+    }
+
+    private void runSubmitted() {
+        while (!submitted.isEmpty()) {
+            submitted.remove(0).run();
+        }
+    }
+
+    private static RoadChangedEvent deleted(long version) {
+        return new RoadChangedEvent(version, UUID.randomUUID(), ChangeType.DELETED, null);
+    }
+
+    @Test
+    void onRoadChanged_sendsOnBackgroundProcessor_inOrder() {
+        // Arrange
+        var service = new ChangeFeedService(backgroundProcessor, 10);
+        var emitter = new RecordingEmitter();
+        service.register(emitter);
+
+        // Act
+        service.onRoadChanged(deleted(1));
+        service.onRoadChanged(deleted(2));
+
+        // Assert
+        // Niets verstuurd op de thread die de commit doet; één drain taak voor beide events
+        assertTrue(emitter.sent.isEmpty());
+        verify(backgroundProcessor, times(1)).submitTask(any(Runnable.class));
+
+        runSubmitted();
+
+        assertEquals(2, emitter.sent.size());
+        assertTrue(emitter.sent.get(0).contains("id:1"));
+        assertTrue(emitter.sent.get(1).contains("id:2"));
+        assertTrue(emitter.sent.get(0).contains("event:road.deleted"));
+    }
+
+    @Test
+    void onRoadChanged_failingClient_isRemoved_othersStillReceive() {
+        // Arrange
+        var service = new ChangeFeedService(backgroundProcessor, 10);
+        var failing = new RecordingEmitter();
+        failing.fail = true;
+        var healthy = new RecordingEmitter();
+        service.register(failing);
+        service.register(healthy);
+
+        // Act
+        service.onRoadChanged(deleted(1));
+        runSubmitted();
+
+        // Assert
+        assertEquals(1, service.getSubscriberCount());
+        assertEquals(1, healthy.sent.size());
+    }
+
+    @Test
+    void onRoadChanged_slowClient_isDisconnectedWhenQueueIsFull() {
+        // Arrange
+        var service = new ChangeFeedService(backgroundProcessor, 2);
+        var slow = new RecordingEmitter();
+        service.register(slow);
+
+        // Act
+        service.onRoadChanged(deleted(1));
+        service.onRoadChanged(deleted(2));
+        service.onRoadChanged(deleted(3));
+        runSubmitted();
+
+        // Assert
+        assertEquals(0, service.getSubscriberCount());
+        assertTrue(slow.sent.isEmpty());
+    }
+
+    @Test
+    void sendHeartbeat_goesThroughTheQueue() {
+        // Arrange
+        var service = new ChangeFeedService(backgroundProcessor, 10);
+        var emitter = new RecordingEmitter();
+        service.register(emitter);
+
+        // Act
+        service.sendHeartbeat();
+        runSubmitted();
+
+        // Assert
+        assertEquals(1, emitter.sent.size());
+        assertTrue(emitter.sent.get(0).contains(":heartbeat"));
+    }
+
+    // Legt de verstuurde events vast in plaats van ze naar een HTTP response te schrijven
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<String> sent = new ArrayList<>();
+        private boolean fail;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (fail) {
+                throw new IOException("Client is weg");
+            }
+            sent.add(builder.build().stream()
+                .map(ResponseBodyEmitter.DataWithMediaType::getData)
+                .map(Object::toString)
+                .collect(Collectors.joining()));
+        }
+
+        @Override
+        public synchronized void completeWithError(Throwable ex) {
+            // Geen handler in deze test
+        }
+    }
+}
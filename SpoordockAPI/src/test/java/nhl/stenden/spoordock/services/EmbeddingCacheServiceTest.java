@@ -0,0 +1,175 @@
+package nhl.stenden.spoordock.services;
+
+import nhl.stenden.spoordock.database.EmbeddingCacheRepository;
+import nhl.stenden.spoordock.database.entities.EmbeddingCacheEntity;
+import nhl.stenden.spoordock.llmService.OllamaEmbeddingClient;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmbeddingCacheServiceTest {
+
+    @Mock
+    private OllamaEmbeddingClient ollamaEmbeddingClient;
+
+    @Mock
+    private EmbeddingCacheRepository embeddingCacheRepository;
+
+    private final LlmConfiguration llmConfiguration = new LlmConfiguration();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(ollamaEmbeddingClient.getEmbeddingModelName()).thenReturn("nomic-embed-text");
+    }
+
+    private EmbeddingCacheService cache(int maxEntries, boolean databaseTier) {
+        llmConfiguration.getEmbedding().setCacheMaxEntries(maxEntries);
+        llmConfiguration.getEmbedding().setCacheDatabaseTier(databaseTier);
+        return new EmbeddingCacheService(ollamaEmbeddingClient, embeddingCacheRepository, llmConfiguration);
+    }
+
+    @Test
+    void getEmbedding_sameTextTwice_callsOllamaOnce() {
+        // Arrange
+        var cache = cache(10, false);
+        when(ollamaEmbeddingClient.createEmbeddings(List.of("hoge gebouwen"), 768)).thenReturn(List.of(new float[] { 1f }));
+
+        // Act
+        float[] first = cache.getEmbedding("hoge gebouwen", 768);
+        float[] second = cache.getEmbedding("hoge gebouwen", 768);
+
+        // Assert
+        assertArrayEquals(first, second);
+        verify(ollamaEmbeddingClient, times(1)).createEmbeddings(anyList(), anyInt());
+        assertEquals(1, cache.getStats().getMemoryHits());
+        assertEquals(1, cache.getStats().getMisses());
+        assertEquals(0.5, cache.getStats().getHitRate(), 0.0001);
+        verifyNoInteractions(embeddingCacheRepository);
+    }
+
+    @Test
+    void getEmbeddings_onlyMissingTextsGoToOllama_inOriginalOrder() {
+        // Arrange
+        var cache = cache(10, false);
+        when(ollamaEmbeddingClient.createEmbeddings(List.of("a"), 768)).thenReturn(List.of(new float[] { 1f }));
+        cache.getEmbedding("a", 768);
+        when(ollamaEmbeddingClient.createEmbeddings(List.of("b", "c"), 768)).thenReturn(List.of(new float[] { 2f }, new float[] { 3f }));
+
+        // Act
+        List<float[]> result = cache.getEmbeddings(List.of("b", "a", "c", "b"), 768);
+
+        // Assert
+        assertEquals(2f, result.get(0)[0]);
+        assertEquals(1f, result.get(1)[0]);
+        assertEquals(3f, result.get(2)[0]);
+        assertEquals(2f, result.get(3)[0]);
+    }
+
+    @Test
+    void getEmbedding_differentDimensions_isDifferentKey() {
+        // Arrange
+        var cache = cache(10, false);
+        when(ollamaEmbeddingClient.createEmbeddings(anyList(), anyInt())).thenReturn(List.of(new float[] { 1f }));
+
+        // Act
+        cache.getEmbedding("tekst", 768);
+        cache.getEmbedding("tekst", 256);
+
+        // Assert
+        verify(ollamaEmbeddingClient, times(2)).createEmbeddings(anyList(), anyInt());
+    }
+
+    @Test
+    void getEmbedding_exceedsMaxEntries_evictsLeastRecentlyUsed() {
+        // Arrange
+        var cache = cache(2, false);
+        when(ollamaEmbeddingClient.createEmbeddings(anyList(), anyInt())).thenReturn(List.of(new float[] { 1f }));
+        cache.getEmbedding("a", 768);
+        cache.getEmbedding("b", 768);
+        cache.getEmbedding("a", 768);
+
+        // Act
+        cache.getEmbedding("c", 768);
+        cache.getEmbedding("a", 768);
+        cache.getEmbedding("b", 768);
+
+        // Assert
+        verify(ollamaEmbeddingClient, times(4)).createEmbeddings(anyList(), anyInt());
+        assertEquals(2, cache.getStats().getSize());
+    }
+
+    @Test
+    void getEmbedding_databaseTier_readsBeforeOllamaAndStoresMisses() {
+        // Arrange
+        var cache = cache(10, true);
+        String storedKey = EmbeddingCacheService.cacheKey("nomic-embed-text", 768, "opgeslagen");
+        when(embeddingCacheRepository.findAllById(anyIterable()))
+            .thenReturn(List.of(new EmbeddingCacheEntity(storedKey, new float[] { 9f }, OffsetDateTime.now())));
+        when(ollamaEmbeddingClient.createEmbeddings(List.of("nieuw"), 768)).thenReturn(List.of(new float[] { 1f }));
+
+        // Act
+        List<float[]> result = cache.getEmbeddings(List.of("opgeslagen", "nieuw"), 768);
+
+        // Assert
+        assertEquals(9f, result.get(0)[0]);
+        assertEquals(1f, result.get(1)[0]);
+        verify(embeddingCacheRepository).saveAll(argThat(entities -> {
+            var list = (List<EmbeddingCacheEntity>) entities;
+            return list.size() == 1 && list.get(0).getCacheKey().equals(EmbeddingCacheService.cacheKey("nomic-embed-text", 768, "nieuw"));
+        }));
+        assertEquals(1, cache.getStats().getDatabaseHits());
+        assertEquals(1, cache.getStats().getMisses());
+    }
+
+    @Test
+    void getEmbedding_returnsCopy_cacheCannotBeModifiedByCaller() {
+        // Arrange
+        var cache = cache(10, false);
+        when(ollamaEmbeddingClient.createEmbeddings(anyList(), anyInt())).thenReturn(List.of(new float[] { 1f }));
+        float[] first = cache.getEmbedding("tekst", 768);
+
+        // Act
+        first[0] = 42f;
+        float[] second = cache.getEmbedding("tekst", 768);
+
+        // Assert
+        assertEquals(1f, second[0]);
+    }
+
+    @Test
+    void cleanupDatabaseTier_deletesExpiredAndOverflowRows() {
+        // Arrange
+        llmConfiguration.getEmbedding().setCacheDatabaseMaxEntries(500);
+        var cache = cache(10, true);
+
+        // Act
+        cache.cleanupDatabaseTier();
+
+        // Assert
+        verify(embeddingCacheRepository).deleteCreatedBefore(any(OffsetDateTime.class));
+        verify(embeddingCacheRepository).deleteAllButNewest(500);
+    }
+
+    @Test
+    void cleanupDatabaseTier_withoutDatabaseTier_doesNothing() {
+        // Arrange
+        var cache = cache(10, false);
+
+        // Act
+        cache.cleanupDatabaseTier();
+
+        // Assert
+        verifyNoInteractions(embeddingCacheRepository);
+    }
+}
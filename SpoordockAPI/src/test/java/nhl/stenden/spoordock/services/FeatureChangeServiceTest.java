@@ -0,0 +1,43 @@
+package nhl.stenden.spoordock.services;
+
+import nhl.stenden.spoordock.database.FeatureChangeRepository;
+import nhl.stenden.spoordock.database.entities.FeatureChangeEntity;
+import nhl.stenden.spoordock.services.events.ChangeType;
+import nhl.stenden.spoordock.services.events.FeatureType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FeatureChangeServiceTest {
+
+    @Mock
+    private FeatureChangeRepository featureChangeRepository;
+
+    @InjectMocks
+    private FeatureChangeService featureChangeService;
+
+    @Test
+    void recordChange_takesLogLockBeforeInsert() {
+        // Arrange
+        FeatureChangeEntity saved = mock(FeatureChangeEntity.class);
+        when(saved.getVersion()).thenReturn(8L);
+        when(featureChangeRepository.save(any(FeatureChangeEntity.class))).thenReturn(saved);
+
+        // Act
+        featureChangeService.recordChange(FeatureType.ROAD, UUID.randomUUID(), ChangeType.UPDATED);
+
+        // Assert
+        InOrder inOrder = inOrder(featureChangeRepository);
+        inOrder.verify(featureChangeRepository).lockForAppend(FeatureChangeService.CHANGE_LOG_LOCK_KEY);
+        inOrder.verify(featureChangeRepository).save(any(FeatureChangeEntity.class));
+    }
+}
@@ -2,9 +2,13 @@ package nhl.stenden.spoordock.services;
 
 import nhl.stenden.spoordock.controllers.dtos.RoadSegmentDTO;
 import nhl.stenden.spoordock.controllers.dtos.RoadTypeDTO;
+import nhl.stenden.spoordock.controllers.dtos.common.BoundingBox;
 import nhl.stenden.spoordock.database.RoadSegmentRepository;
 import nhl.stenden.spoordock.database.RoadTypeRepository;
 import nhl.stenden.spoordock.database.entities.RoadSegment;
+import nhl.stenden.spoordock.services.events.ChangeType;
+import nhl.stenden.spoordock.services.events.FeatureType;
+import nhl.stenden.spoordock.services.events.RoadChangedEvent;
 import nhl.stenden.spoordock.services.mappers.RoadSegmentMapper;
 import nhl.stenden.spoordock.services.mappers.RoadTypeMapper;
 import org.junit.jupiter.api.Test;
@@ -13,6 +17,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.List;
 import java.util.UUID;
@@ -35,6 +40,12 @@ class RoadServiceTest {
     @Mock
     private RoadTypeMapper roadTypeMapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private FeatureChangeService featureChangeService;
+
     @InjectMocks
     private RoadService roadService;
 
@@ -58,6 +69,26 @@ class RoadServiceTest {
         verifyNoInteractions(roadTypeRepository, roadTypeMapper);
     }
 
+    @Test
+    void getRoadDTOsInBoundingBox_queriesEnvelope_andReturnsMappedDTOs() {
+        // Arrange
+        BoundingBox bbox = new BoundingBox(5.77, 53.19, 5.79, 53.20);
+        List<RoadSegment> entities = List.of(mock(RoadSegment.class));
+        List<RoadSegmentDTO> dtos = List.of(mock(RoadSegmentDTO.class));
+
+        when(roadSegmentRepository.findAllInBoundingBox(5.77, 53.19, 5.79, 53.20)).thenReturn(entities);
+        when(roadSegmentMapper.toDTOs(entities)).thenReturn(dtos);
+
+        // Act
+        List<RoadSegmentDTO> result = roadService.getRoadDTOsInBoundingBox(bbox);
+
+        // Assert
+        assertSame(dtos, result);
+        verify(roadSegmentRepository).findAllInBoundingBox(5.77, 53.19, 5.79, 53.20);
+        verifyNoMoreInteractions(roadSegmentRepository);
+        verifyNoInteractions(roadTypeRepository, roadTypeMapper);
+    }
+
     @Test
     void getRoadTypeDTOs_returnsMappedDTOs() {
         // Arrange
@@ -106,7 +137,7 @@ class RoadServiceTest {
 
         verify(roadSegmentRepository).existsById(id);
         verifyNoMoreInteractions(roadSegmentRepository);
-        verifyNoInteractions(roadSegmentMapper, roadTypeRepository, roadTypeMapper);
+        verifyNoInteractions(roadSegmentMapper, roadTypeRepository, roadTypeMapper, eventPublisher, featureChangeService);
     }
 
     @Test
@@ -126,6 +157,7 @@ class RoadServiceTest {
 
         RoadSegment entity = mock(RoadSegment.class);
         when(roadSegmentMapper.toEntity(dto)).thenReturn(entity);
+        when(featureChangeService.recordChange(FeatureType.ROAD, id, ChangeType.CREATED)).thenReturn(7L);
 
         // Act
         roadService.addRoadSegment(dto);
@@ -136,6 +168,13 @@ class RoadServiceTest {
         verify(roadSegmentRepository).save(entity);
         verifyNoMoreInteractions(roadSegmentRepository, roadSegmentMapper);
         verifyNoInteractions(roadTypeRepository, roadTypeMapper);
+
+        ArgumentCaptor<RoadChangedEvent> eventCaptor = ArgumentCaptor.forClass(RoadChangedEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertEquals(ChangeType.CREATED, eventCaptor.getValue().getChangeType());
+        assertEquals(7L, eventCaptor.getValue().getVersion());
+        assertEquals(id, eventCaptor.getValue().getRoadId());
+        assertSame(dto, eventCaptor.getValue().getRoad());
     }
 
     @Test
@@ -146,13 +185,40 @@ class RoadServiceTest {
         RoadSegmentDTO dto = mock(RoadSegmentDTO.class);
         when(dto.getId()).thenReturn(id);
 
+        when(roadSegmentRepository.existsById(id)).thenReturn(true);
+
         // Act
         roadService.deleteRoadSegment(dto);
 
         // Assert
+        verify(roadSegmentRepository).existsById(id);
         verify(roadSegmentRepository).deleteById(id);
         verifyNoMoreInteractions(roadSegmentRepository);
         verifyNoInteractions(roadSegmentMapper, roadTypeRepository, roadTypeMapper);
+
+        ArgumentCaptor<RoadChangedEvent> eventCaptor = ArgumentCaptor.forClass(RoadChangedEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertEquals(ChangeType.DELETED, eventCaptor.getValue().getChangeType());
+        verify(featureChangeService).recordChange(FeatureType.ROAD, id, ChangeType.DELETED);
+        assertNull(eventCaptor.getValue().getRoad());
+    }
+
+    @Test
+    void deleteRoadSegment_throwsException_whenIdDoesNotExist() {
+        // Arrange
+        UUID id = UUID.fromString("55555555-5555-5555-5555-555555555555");
+
+        RoadSegmentDTO dto = mock(RoadSegmentDTO.class);
+        when(dto.getId()).thenReturn(id);
+
+        when(roadSegmentRepository.existsById(id)).thenReturn(false);
+
+        // Act + Assert
+        assertThrows(IllegalArgumentException.class, () -> roadService.deleteRoadSegment(dto));
+
+        verify(roadSegmentRepository).existsById(id);
+        verifyNoMoreInteractions(roadSegmentRepository);
+        verifyNoInteractions(eventPublisher, featureChangeService);
     }
 
     @Test
@@ -175,7 +241,7 @@ class RoadServiceTest {
 
         verify(roadSegmentRepository).existsById(id);
         verifyNoMoreInteractions(roadSegmentRepository);
-        verifyNoInteractions(roadSegmentMapper, roadTypeRepository, roadTypeMapper);
+        verifyNoInteractions(roadSegmentMapper, roadTypeRepository, roadTypeMapper, eventPublisher, featureChangeService);
     }
 
     @Test
@@ -0,0 +1,147 @@
+package nhl.stenden.spoordock.services;
+
+import nhl.stenden.spoordock.database.BuildingPolygonRepository;
+import nhl.stenden.spoordock.database.BuildingTypeRepository;
+import nhl.stenden.spoordock.database.FeatureChangeRepository;
+import nhl.stenden.spoordock.database.entities.BuildingTypeEntity;
+import nhl.stenden.spoordock.database.projections.BuildingTypeStatistics;
+import nhl.stenden.spoordock.services.events.BuildingChangedEvent;
+import nhl.stenden.spoordock.services.events.ChangeType;
+import nhl.stenden.spoordock.services.events.FeatureType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StatisticsServiceTest {
+
+    @Mock
+    private BuildingPolygonRepository buildingPolygonRepository;
+
+    @Mock
+    private BuildingTypeRepository buildingTypeRepository;
+
+    @Mock
+    private FeatureChangeRepository featureChangeRepository;
+
+    @InjectMocks
+    private StatisticsService statisticsService;
+
+    private final UUID typeId = UUID.fromString("11111111-1111-1111-1111-111111111111");
+
+    // 100 m3 woningen; kosten per m3 verschillen per test
+    private BuildingTypeEntity housing(double costPerUnit) {
+        return new BuildingTypeEntity(typeId, "Woning", "", "m3", costPerUnit, true, 0.01, 5, "#ff0000");
+    }
+
+    private BuildingTypeStatistics row(long count) {
+        BuildingTypeStatistics row = mock(BuildingTypeStatistics.class);
+        lenient().when(row.getBuildingTypeId()).thenReturn(typeId);
+        lenient().when(row.getBuildingCount()).thenReturn(count);
+        lenient().when(row.getTotalVolume()).thenReturn(100.0);
+        return row;
+    }
+
+    @BeforeEach
+    void setUp() {
+        // Opbouwen bij versie 10 met één gebouw van 2 euro per m3
+        when(featureChangeRepository.findLatestVersion()).thenReturn(10L);
+        when(buildingTypeRepository.findContentHash()).thenReturn("types-v1");
+        List<BuildingTypeStatistics> rows = List.of(row(1));
+        when(buildingPolygonRepository.findStatisticsPerBuildingType()).thenReturn(rows);
+        when(buildingTypeRepository.findAll()).thenReturn(List.of(housing(2.0)));
+        statisticsService.calculateStatistics();
+    }
+
+    private void changeBuilding(long version) {
+        statisticsService.onBuildingChanged(new BuildingChangedEvent(version, UUID.randomUUID(), ChangeType.UPDATED, Set.of(typeId), null));
+    }
+
+    @Test
+    void onBuildingChanged_reloadsBuildingType_soCostEditsAreIncluded() {
+        // Arrange
+        List<BuildingTypeStatistics> rows = List.of(row(1));
+        when(buildingPolygonRepository.findStatisticsForBuildingTypes(Set.of(typeId))).thenReturn(rows);
+        when(buildingTypeRepository.findAllById(Set.of(typeId))).thenReturn(List.of(housing(3.0)));
+
+        // Act
+        changeBuilding(11);
+
+        // Assert
+        assertEquals(300.0, statisticsService.calculateStatistics().getTotalCost(), 0.0001);
+    }
+
+    @Test
+    void checkForDrift_onlyLocalChanges_keepsAggregate() {
+        // Arrange
+        List<BuildingTypeStatistics> rows = List.of(row(1));
+        when(buildingPolygonRepository.findStatisticsForBuildingTypes(Set.of(typeId))).thenReturn(rows);
+        when(buildingTypeRepository.findAllById(Set.of(typeId))).thenReturn(List.of(housing(2.0)));
+        changeBuilding(11);
+        when(featureChangeRepository.countChangesAfter(FeatureType.BUILDING, 10L)).thenReturn(1L);
+
+        // Act
+        statisticsService.checkForDrift();
+        statisticsService.calculateStatistics();
+
+        // Assert
+        verify(buildingPolygonRepository, times(1)).findStatisticsPerBuildingType();
+    }
+
+    @Test
+    void checkForDrift_changeWithoutEvent_rebuildsEvenIfCountIsUnchanged() {
+        // Arrange
+        // Bijvoorbeeld een gebouw dat via een andere replica van hoogte veranderd is
+        when(featureChangeRepository.countChangesAfter(FeatureType.BUILDING, 10L)).thenReturn(1L);
+
+        // Act
+        statisticsService.checkForDrift();
+        statisticsService.calculateStatistics();
+
+        // Assert
+        verify(buildingPolygonRepository, times(2)).findStatisticsPerBuildingType();
+    }
+
+    @Test
+    void checkForDrift_buildingTypeEditedInDatabase_rebuildsWithNewCost() {
+        // Arrange
+        when(featureChangeRepository.countChangesAfter(FeatureType.BUILDING, 10L)).thenReturn(0L);
+        when(buildingTypeRepository.findContentHash()).thenReturn("types-v2");
+        when(buildingTypeRepository.findAll()).thenReturn(List.of(housing(5.0)));
+
+        // Act
+        statisticsService.checkForDrift();
+
+        // Assert
+        assertEquals(500.0, statisticsService.calculateStatistics().getTotalCost(), 0.0001);
+    }
+
+    @Test
+    void onBuildingChanged_eventFromBeforeRebuild_isNotCounted() {
+        // Arrange
+        List<BuildingTypeStatistics> rows = List.of(row(1));
+        when(buildingPolygonRepository.findStatisticsForBuildingTypes(Set.of(typeId))).thenReturn(rows);
+        when(buildingTypeRepository.findAllById(Set.of(typeId))).thenReturn(List.of(housing(2.0)));
+        changeBuilding(9);
+        when(featureChangeRepository.countChangesAfter(FeatureType.BUILDING, 10L)).thenReturn(0L);
+
+        // Act
+        statisticsService.checkForDrift();
+        statisticsService.calculateStatistics();
+
+        // Assert
+        verify(buildingPolygonRepository, times(1)).findStatisticsPerBuildingType();
+        verify(featureChangeRepository).countChangesAfter(eq(FeatureType.BUILDING), anyLong());
+    }
+}
@@ -0,0 +1,145 @@
+package nhl.stenden.spoordock.services;
+
+import nhl.stenden.spoordock.controllers.dtos.BuildingPolygonDTO;
+import nhl.stenden.spoordock.controllers.dtos.RoadSegmentDTO;
+import nhl.stenden.spoordock.controllers.dtos.SyncDTO;
+import nhl.stenden.spoordock.database.BuildingPolygonRepository;
+import nhl.stenden.spoordock.database.FeatureChangeRepository;
+import nhl.stenden.spoordock.database.RoadSegmentRepository;
+import nhl.stenden.spoordock.database.entities.BuildingPolygonEntity;
+import nhl.stenden.spoordock.database.entities.FeatureChangeEntity;
+import nhl.stenden.spoordock.services.events.ChangeType;
+import nhl.stenden.spoordock.services.events.FeatureType;
+import nhl.stenden.spoordock.services.mappers.BuildingPolygonMapper;
+import nhl.stenden.spoordock.services.mappers.RoadSegmentMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SyncServiceTest {
+
+    @Mock
+    private FeatureChangeRepository featureChangeRepository;
+
+    @Mock
+    private BuildingPolygonRepository buildingPolygonRepository;
+
+    @Mock
+    private RoadSegmentRepository roadSegmentRepository;
+
+    @Mock
+    private BuildingPolygonMapper buildingPolygonMapper;
+
+    @Mock
+    private RoadSegmentMapper roadSegmentMapper;
+
+    @InjectMocks
+    private SyncService syncService;
+
+    @Test
+    void getChangesSince_withoutSince_returnsFullSnapshotAtLatestVersion() {
+        // Arrange
+        when(featureChangeRepository.findLatestVersion()).thenReturn(12L);
+        when(buildingPolygonRepository.findAllIncludingBuildingType()).thenReturn(List.of());
+        when(roadSegmentRepository.findAll()).thenReturn(List.of());
+        when(buildingPolygonMapper.toDTOs(anyList())).thenReturn(List.of(new BuildingPolygonDTO()));
+        when(roadSegmentMapper.toDTOs(anyList())).thenReturn(List.of());
+
+        // Act
+        SyncDTO result = syncService.getChangesSince(null);
+
+        // Assert
+        assertTrue(result.isFull());
+        assertEquals(12L, result.getVersion());
+        assertEquals(1, result.getBuildings().size());
+        verify(featureChangeRepository, never()).findLatestChangesBetween(anyLong(), anyLong());
+    }
+
+    @Test
+    void getChangesSince_readsChangesBetweenSinceAndLatestVersion() {
+        // Arrange
+        UUID updatedBuilding = UUID.fromString("11111111-1111-1111-1111-111111111111");
+        UUID deletedRoad = UUID.fromString("22222222-2222-2222-2222-222222222222");
+
+        when(featureChangeRepository.findLatestVersion()).thenReturn(9L);
+        when(featureChangeRepository.findLatestChangesBetween(5L, 9L)).thenReturn(List.of(
+            new FeatureChangeEntity(FeatureType.BUILDING, updatedBuilding, ChangeType.UPDATED),
+            new FeatureChangeEntity(FeatureType.ROAD, deletedRoad, ChangeType.DELETED)));
+
+        List<BuildingPolygonEntity> entities = List.of(mock(BuildingPolygonEntity.class));
+        when(buildingPolygonRepository.findAllByIdIncludingBuildingType(Set.of(updatedBuilding))).thenReturn(entities);
+        when(buildingPolygonMapper.toDTOs(entities)).thenReturn(List.of(building(updatedBuilding)));
+        when(roadSegmentRepository.findAllById(Set.of())).thenReturn(List.of());
+        when(roadSegmentMapper.toDTOs(List.of())).thenReturn(List.<RoadSegmentDTO>of());
+
+        // Act
+        SyncDTO result = syncService.getChangesSince(5L);
+
+        // Assert
+        assertFalse(result.isFull());
+        // De client gaat verder vanaf de versie waartoe de delta gelezen is, niet vanaf since
+        assertEquals(9L, result.getVersion());
+        assertEquals(updatedBuilding, result.getBuildings().get(0).getBuildingId());
+        assertEquals(List.of(deletedRoad), result.getDeletedRoadIds());
+        assertTrue(result.getDeletedBuildingIds().isEmpty());
+        verify(buildingPolygonRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void getChangesSince_changedFeatureThatNoLongerExists_isReportedAsDeleted() {
+        // Arrange
+        UUID goneBuilding = UUID.fromString("33333333-3333-3333-3333-333333333333");
+
+        when(featureChangeRepository.findLatestVersion()).thenReturn(3L);
+        when(featureChangeRepository.findLatestChangesBetween(2L, 3L)).thenReturn(List.of(
+            new FeatureChangeEntity(FeatureType.BUILDING, goneBuilding, ChangeType.CREATED)));
+        when(buildingPolygonRepository.findAllByIdIncludingBuildingType(Set.of(goneBuilding))).thenReturn(List.of());
+        when(buildingPolygonMapper.toDTOs(List.of())).thenReturn(List.of());
+        when(roadSegmentRepository.findAllById(Set.of())).thenReturn(List.of());
+        when(roadSegmentMapper.toDTOs(List.of())).thenReturn(List.of());
+
+        // Act
+        SyncDTO result = syncService.getChangesSince(2L);
+
+        // Assert
+        assertTrue(result.getBuildings().isEmpty());
+        assertEquals(List.of(goneBuilding), result.getDeletedBuildingIds());
+    }
+
+    @Test
+    void getChangesSince_upToDateClient_getsEmptyDeltaAtSameVersion() {
+        // Arrange
+        when(featureChangeRepository.findLatestVersion()).thenReturn(4L);
+        when(featureChangeRepository.findLatestChangesBetween(4L, 4L)).thenReturn(List.of());
+        when(buildingPolygonRepository.findAllByIdIncludingBuildingType(Set.of())).thenReturn(List.of());
+        when(buildingPolygonMapper.toDTOs(List.of())).thenReturn(List.of());
+        when(roadSegmentRepository.findAllById(Set.of())).thenReturn(List.of());
+        when(roadSegmentMapper.toDTOs(List.of())).thenReturn(List.of());
+
+        // Act
+        SyncDTO result = syncService.getChangesSince(4L);
+
+        // Assert
+        assertEquals(4L, result.getVersion());
+        assertTrue(result.getBuildings().isEmpty());
+        assertTrue(result.getDeletedBuildingIds().isEmpty());
+        assertTrue(result.getDeletedRoadIds().isEmpty());
+    }
+
+    private static BuildingPolygonDTO building(UUID id) {
+        var dto = new BuildingPolygonDTO();
+        dto.setBuildingId(id);
+        return dto;
+    }
+}
@@ -0,0 +1,53 @@
+package nhl.stenden.spoordock.services;
+
+import nhl.stenden.spoordock.database.BuildingPolygonEmbeddingRepository;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VectorSearchServiceTest {
+
+    @Mock
+    private BuildingPolygonEmbeddingRepository buildingPolygonEmbeddingRepository;
+
+    private VectorSearchService service(int efSearch, int probes) {
+        var configuration = new LlmConfiguration();
+        configuration.getEmbedding().setHnswEfSearch(efSearch);
+        configuration.getEmbedding().setIvfflatProbes(probes);
+        return new VectorSearchService(buildingPolygonEmbeddingRepository, configuration);
+    }
+
+    @Test
+    void findNearest_setsSearchSettingsBeforeQuery() {
+        // Arrange
+        var service = service(80, 5);
+        float[] query = { 0.1f, 0.2f };
+
+        // Act
+        service.findNearest(query, 10);
+
+        // Assert
+        InOrder inOrder = inOrder(buildingPolygonEmbeddingRepository);
+        inOrder.verify(buildingPolygonEmbeddingRepository).setLocalSearchSetting("hnsw.ef_search", "80");
+        inOrder.verify(buildingPolygonEmbeddingRepository).setLocalSearchSetting("ivfflat.probes", "5");
+        inOrder.verify(buildingPolygonEmbeddingRepository).findNearestByEmbedding(query, 10);
+    }
+
+    @Test
+    void findNearest_limitAboveEfSearch_raisesEfSearchToLimit() {
+        // Arrange
+        var service = service(40, 10);
+
+        // Act
+        service.findNearest(new float[] { 0.1f }, 100);
+
+        // Assert
+        verify(buildingPolygonEmbeddingRepository).setLocalSearchSetting("hnsw.ef_search", "100");
+    }
+}
@@ -0,0 +1,63 @@
+package nhl.stenden.spoordock.services.binary;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+public class WkbFeatureWriterTests {
+
+    @Test
+    void writeBuilding_writesHeaderAndLengthPrefixedFields() throws Exception {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        UUID typeId = UUID.randomUUID();
+        byte[] wkb = { 1, 2, 3, 4, 5 };
+        var buffer = new ByteArrayOutputStream();
+
+        // Act
+        var writer = WkbFeatureWriter.forBuildings(buffer);
+        writer.writeBuilding(id, typeId, 12.5, "Stationsgebouw", null, wkb);
+        writer.flush();
+
+        // Assert
+        var in = new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+        assertEquals("SPDK", new String(in.readNBytes(4), StandardCharsets.US_ASCII));
+        assertEquals(1, in.readByte());
+        assertEquals('B', in.readByte());
+        assertEquals(id, new UUID(in.readLong(), in.readLong()));
+        assertEquals(typeId, new UUID(in.readLong(), in.readLong()));
+        assertEquals(12.5, in.readDouble());
+        assertEquals("Stationsgebouw", new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8));
+        assertEquals(-1, in.readInt());
+        assertArrayEquals(wkb, in.readNBytes(in.readInt()));
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    void writeRoad_withoutRoadType_writesEmptyUuid() throws Exception {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        var buffer = new ByteArrayOutputStream();
+
+        // Act
+        var writer = WkbFeatureWriter.forRoads(buffer);
+        writer.writeRoad(id, null, 6, "Hoofdweg", new byte[] { 9 });
+        writer.flush();
+
+        // Assert
+        var in = new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+        in.skipNBytes(5);
+        assertEquals('R', in.readByte());
+        assertEquals(id, new UUID(in.readLong(), in.readLong()));
+        assertEquals(new UUID(0, 0), new UUID(in.readLong(), in.readLong()));
+        assertEquals(6, in.readInt());
+        assertEquals("Hoofdweg", new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8));
+        assertArrayEquals(new byte[] { 9 }, in.readNBytes(in.readInt()));
+    }
+}
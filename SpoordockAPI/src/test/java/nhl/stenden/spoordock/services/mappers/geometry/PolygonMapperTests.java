@@ -0,0 +1,73 @@
+package nhl.stenden.spoordock.services.mappers.geometry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nhl.stenden.spoordock.controllers.dtos.polygon.PolygonDTO;
+
+public class PolygonMapperTests {
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(PrecisionModel.FLOATING), 4326);
+    private final PolygonMapper polygonMapper = new PolygonMapper(geometryFactory);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Polygon square() {
+        return geometryFactory.createPolygon(new Coordinate[] {
+            new Coordinate(5.0, 53.0, 1.0),
+            new Coordinate(5.1, 53.0, 2.0),
+            new Coordinate(5.1, 53.1, 3.0),
+            new Coordinate(5.0, 53.0, 1.0)
+        });
+    }
+
+    @Test
+    void toDTO_serializesSameJsonAsCoordinateDtoList() throws Exception {
+        // Arrange
+        var expected = new PolygonDTO();
+        expected.setCoordinates(List.of(
+            new nhl.stenden.spoordock.controllers.dtos.common.Coordinate(5.0, 53.0, 1.0),
+            new nhl.stenden.spoordock.controllers.dtos.common.Coordinate(5.1, 53.0, 2.0),
+            new nhl.stenden.spoordock.controllers.dtos.common.Coordinate(5.1, 53.1, 3.0),
+            new nhl.stenden.spoordock.controllers.dtos.common.Coordinate(5.0, 53.0, 1.0)));
+
+        // Act
+        String json = objectMapper.writeValueAsString(polygonMapper.toDTO(square()));
+
+        // Assert
+        assertEquals(objectMapper.writeValueAsString(expected), json);
+    }
+
+    @Test
+    void toDTO_coordinatesCanBeReadAsList() {
+        // Act
+        var coordinates = polygonMapper.toDTO(square()).getCoordinates();
+
+        // Assert
+        assertEquals(4, coordinates.size());
+        assertEquals(5.1, coordinates.get(2).getX());
+        assertEquals(53.1, coordinates.get(2).getY());
+        assertEquals(3.0, coordinates.get(2).getZ());
+        assertThrows(IndexOutOfBoundsException.class, () -> coordinates.get(4));
+    }
+
+    @Test
+    void toEntity_roundTripsThroughJson() throws Exception {
+        // Arrange
+        String json = objectMapper.writeValueAsString(polygonMapper.toDTO(square()));
+
+        // Act
+        Polygon polygon = polygonMapper.toEntity(objectMapper.readValue(json, PolygonDTO.class));
+
+        // Assert
+        assertTrue(polygon.equalsExact(square()));
+    }
+}
@@ -0,0 +1,205 @@
+package nhl.stenden.spoordock.services.reindex;
+
+import nhl.stenden.spoordock.backgroundprocessor.BackgroundProcessor;
+import nhl.stenden.spoordock.database.BuildingPolygonRepository;
+import nhl.stenden.spoordock.database.ReindexJobRepository;
+import nhl.stenden.spoordock.database.entities.BuildingPolygonEmbeddingEntity;
+import nhl.stenden.spoordock.database.entities.ReindexJobEntity;
+import nhl.stenden.spoordock.llmService.OllamaEmbeddingClient;
+import nhl.stenden.spoordock.llmService.configuration.LlmConfiguration;
+import nhl.stenden.spoordock.services.BuildingEmbeddingService;
+import nhl.stenden.spoordock.services.InMemoryVectorIndexService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static nhl.stenden.spoordock.services.BuildingFixtures.building;
+import static nhl.stenden.spoordock.services.BuildingFixtures.sourceHash;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmbeddingReindexServiceTest {
+
+    @Mock
+    private BuildingPolygonRepository buildingPolygonRepository;
+
+    @Mock
+    private ReindexJobRepository reindexJobRepository;
+
+    @Mock
+    private OllamaEmbeddingClient ollamaEmbeddingClient;
+
+    @Mock
+    private BuildingEmbeddingService buildingEmbeddingService;
+
+    @Mock
+    private PolygonEmbeddingBatchWriter batchWriter;
+
+    @Mock
+    private InMemoryVectorIndexService inMemoryVectorIndexService;
+
+    @Mock
+    private BackgroundProcessor backgroundProcessor;
+
+    private EmbeddingReindexService reindexService;
+
+    @BeforeEach
+    void setUp() {
+        var configuration = new LlmConfiguration();
+        configuration.getEmbedding().setReindexPageSize(2);
+        configuration.getEmbedding().setBatchSize(1);
+        reindexService = new EmbeddingReindexService(
+            buildingPolygonRepository, reindexJobRepository, ollamaEmbeddingClient, buildingEmbeddingService,
+            batchWriter, inMemoryVectorIndexService, backgroundProcessor, configuration);
+        // Het filteren op actuele embeddings is gedeeld met BuildingEmbeddingService; alleen de opgeslagen hashes zijn gemockt
+        lenient().when(buildingEmbeddingService.findChangedBuildings(anyList(), anyString(), anyBoolean())).thenCallRealMethod();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void run_pagesThroughBuildings_skipsUpToDateAndCheckpointsEveryPage() {
+        // Arrange
+        var first = building(1);
+        var second = building(2);
+        var third = building(3);
+        when(buildingPolygonRepository.findFirstPageIncludingBuildingType(any()))
+            .thenReturn(new SliceImpl<>(List.of(first, second), PageRequest.of(0, 2), true));
+        when(buildingPolygonRepository.findPageAfterIncludingBuildingType(eq(second.getBuildingId()), any()))
+            .thenReturn(new SliceImpl<>(List.of(third), PageRequest.of(0, 2), false));
+        when(buildingEmbeddingService.findUpToDateHashes(anyCollection(), eq("nomic-embed-text")))
+            .thenReturn(Map.of(first.getBuildingId(), sourceHash(first)))
+            .thenReturn(Map.of());
+        when(ollamaEmbeddingClient.createEmbeddings(anyList(), eq(768))).thenReturn(List.of(new float[] { 0.5f }));
+        var job = new ReindexJobEntity("nomic-embed-text", 768, false, 3);
+        UUID[] checkpoints = new UUID[2];
+        int[] saves = { 0 };
+        when(reindexJobRepository.save(job)).thenAnswer(invocation -> {
+            if (saves[0] < 2) {
+                checkpoints[saves[0]] = job.getLastBuildingId();
+            }
+            saves[0]++;
+            return job;
+        });
+
+        // Act
+        reindexService.run(job);
+
+        // Assert
+        assertEquals(ReindexStatus.COMPLETED, job.getStatus());
+        assertEquals(3, job.getProcessed());
+        assertEquals(1, job.getSkipped());
+        assertArrayEquals(new UUID[] { second.getBuildingId(), third.getBuildingId() }, checkpoints);
+        // Batchgrootte 1: gebouw 2 en 3 elk in een eigen aanroep, gebouw 1 niet
+        verify(ollamaEmbeddingClient, times(2)).createEmbeddings(anyList(), eq(768));
+
+        ArgumentCaptor<List<BuildingPolygonEmbeddingEntity>> written = ArgumentCaptor.forClass(List.class);
+        verify(batchWriter, times(2)).upsert(written.capture());
+        assertEquals(second.getBuildingId(), written.getAllValues().get(0).get(0).getBuildingId());
+        assertEquals(third.getBuildingId(), written.getAllValues().get(1).get(0).getBuildingId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void run_buildingDeletedDuringJob_completesAndIndexesOnlyWrittenEmbeddings() {
+        // Arrange
+        var kept = building(1);
+        var deleted = building(2);
+        var job = new ReindexJobEntity("nomic-embed-text", 768, true, 2);
+        when(buildingPolygonRepository.findFirstPageIncludingBuildingType(any()))
+            .thenReturn(new SliceImpl<>(List.of(kept, deleted), PageRequest.of(0, 2), false));
+        when(ollamaEmbeddingClient.createEmbeddings(anyList(), eq(768))).thenReturn(List.of(new float[] { 0.5f }));
+        // Gebouw 2 is verwijderd tussen het lezen van de pagina en het wegschrijven
+        when(batchWriter.upsert(anyList())).thenAnswer(invocation -> ((List<BuildingPolygonEmbeddingEntity>) invocation.getArgument(0))
+            .stream().filter(embedding -> embedding.getBuildingId().equals(kept.getBuildingId())).toList());
+
+        // Act
+        reindexService.run(job);
+
+        // Assert
+        assertEquals(ReindexStatus.COMPLETED, job.getStatus());
+        assertEquals(2, job.getProcessed());
+        ArgumentCaptor<List<BuildingPolygonEmbeddingEntity>> indexed = ArgumentCaptor.forClass(List.class);
+        verify(inMemoryVectorIndexService).index(indexed.capture());
+        assertEquals(List.of(kept.getBuildingId()), indexed.getValue().stream().map(BuildingPolygonEmbeddingEntity::getBuildingId).toList());
+    }
+
+    @Test
+    void run_resumedJob_continuesAfterCheckpoint() {
+        // Arrange
+        var job = new ReindexJobEntity("nomic-embed-text", 768, true, 3);
+        job.setLastBuildingId(new UUID(0, 2));
+        job.setProcessed(2);
+        when(buildingPolygonRepository.findPageAfterIncludingBuildingType(eq(new UUID(0, 2)), any()))
+            .thenReturn(new SliceImpl<>(List.of(building(3)), PageRequest.of(0, 2), false));
+        when(ollamaEmbeddingClient.createEmbeddings(anyList(), eq(768))).thenReturn(List.of(new float[] { 0.5f }));
+
+        // Act
+        reindexService.run(job);
+
+        // Assert
+        verify(buildingPolygonRepository, never()).findFirstPageIncludingBuildingType(any());
+        // Force: de opgeslagen hashes worden niet eens opgevraagd
+        verify(buildingEmbeddingService, never()).findUpToDateHashes(anyCollection(), anyString());
+        assertEquals(3, job.getProcessed());
+        assertEquals(ReindexStatus.COMPLETED, job.getStatus());
+    }
+
+    @Test
+    void run_ollamaFails_marksJobFailedAndKeepsCheckpoint() {
+        // Arrange
+        var job = new ReindexJobEntity("nomic-embed-text", 768, true, 2);
+        when(buildingPolygonRepository.findFirstPageIncludingBuildingType(any()))
+            .thenReturn(new SliceImpl<>(List.of(building(1)), PageRequest.of(0, 2), false));
+        when(ollamaEmbeddingClient.createEmbeddings(anyList(), anyInt())).thenThrow(new RuntimeException("Ollama niet bereikbaar"));
+
+        // Act
+        reindexService.run(job);
+
+        // Assert
+        assertEquals(ReindexStatus.FAILED, job.getStatus());
+        assertTrue(job.getError().contains("Ollama niet bereikbaar"));
+        assertNull(job.getLastBuildingId());
+        assertEquals(0, job.getProcessed());
+        verifyNoInteractions(batchWriter);
+    }
+
+    @Test
+    void start_jobAlreadyRunning_throws() {
+        // Arrange
+        when(ollamaEmbeddingClient.getEmbeddingModelName()).thenReturn("nomic-embed-text");
+        when(buildingPolygonRepository.count()).thenReturn(10L);
+        reindexService.start(false);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> reindexService.start(true));
+        verify(backgroundProcessor, times(1)).submitTask(any());
+    }
+
+    @Test
+    void resumeInterruptedJob_modelChanged_marksJobFailed() {
+        // Arrange
+        var job = new ReindexJobEntity("old-model", 768, false, 10);
+        when(reindexJobRepository.findFirstByStatusOrderByStartedAtDesc(ReindexStatus.RUNNING)).thenReturn(Optional.of(job));
+        when(ollamaEmbeddingClient.getEmbeddingModelName()).thenReturn("nomic-embed-text");
+
+        // Act
+        reindexService.resumeInterruptedJob();
+
+        // Assert
+        assertEquals(ReindexStatus.FAILED, job.getStatus());
+        verify(backgroundProcessor, never()).submitTask(any());
+        assertFalse(reindexService.cancel());
+    }
+}
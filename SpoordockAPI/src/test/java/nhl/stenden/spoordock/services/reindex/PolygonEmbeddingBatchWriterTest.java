@@ -0,0 +1,72 @@
+package nhl.stenden.spoordock.services.reindex;
+
+import nhl.stenden.spoordock.database.entities.BuildingPolygonEmbeddingEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PolygonEmbeddingBatchWriterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private PolygonEmbeddingBatchWriter batchWriter;
+
+    @BeforeEach
+    void setUp() {
+        batchWriter = new PolygonEmbeddingBatchWriter(jdbcTemplate);
+    }
+
+    private BuildingPolygonEmbeddingEntity embedding(long id) {
+        return new BuildingPolygonEmbeddingEntity(new UUID(0, id), new float[] { 0.5f }, "nomic-embed-text", "Gebouw " + id,
+            OffsetDateTime.now(), "hash", 768);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void upsert_buildingDeletedMeanwhile_isLeftOutInsteadOfFailingBatch() {
+        // Arrange
+        var kept = embedding(1);
+        var deleted = embedding(2);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+            .thenReturn(new int[][] { { 1, 0 } });
+
+        // Act
+        List<BuildingPolygonEmbeddingEntity> written = batchWriter.upsert(List.of(kept, deleted));
+
+        // Assert
+        assertEquals(List.of(kept), written);
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).batchUpdate(sql.capture(), anyList(), eq(2), any(ParameterizedPreparedStatementSetter.class));
+        assertTrue(sql.getValue().contains("WHERE EXISTS (SELECT 1 FROM polygones WHERE id = ?"));
+    }
+
+    @Test
+    void upsert_empty_doesNotQueryDatabase() {
+        // Act
+        List<BuildingPolygonEmbeddingEntity> written = batchWriter.upsert(List.of());
+
+        // Assert
+        assertTrue(written.isEmpty());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void toVectorLiteral_formatsAsPgvectorText() {
+        assertEquals("[0.1,0.2,0.3]", PolygonEmbeddingBatchWriter.toVectorLiteral(new float[] { 0.1f, 0.2f, 0.3f }));
+    }
+}
@@ -0,0 +1,132 @@
+package nhl.stenden.spoordock.services.statistics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import nhl.stenden.spoordock.controllers.dtos.StatisticsDTO;
+import nhl.stenden.spoordock.database.entities.BuildingTypeEntity;
+
+public class StatisticsAggregateTests {
+
+    private StatisticsAggregate aggregate;
+
+    // Woningen: 2 euro per m3, 0.01 bewoner per m3, 5 punten per gebouw
+    private BuildingTypeEntity housing = new BuildingTypeEntity(
+        UUID.randomUUID(), "Woning", "", "m3", 2.0, true, 0.01, 5, "#ff0000");
+
+    // Parken: 1 euro per m2, niet bewoonbaar, geen punten
+    private BuildingTypeEntity park = new BuildingTypeEntity(
+        UUID.randomUUID(), "Park", "", "m2", 1.0, false, null, null, "#00ff00");
+
+    @BeforeEach
+    void setup() {
+        aggregate = new StatisticsAggregate();
+    }
+
+    @Test
+    void toStatistics_empty_returnsZeroes() {
+        StatisticsDTO stats = aggregate.toStatistics();
+
+        assertEquals(0, stats.getTotalBuildings());
+        assertEquals(0, stats.getTotalCost());
+        assertEquals(0, stats.getTallestBuilding());
+        assertEquals(0, stats.getLowestBuilding());
+        assertEquals(0, stats.getAverageHeight());
+        assertTrue(stats.getBuildingTypeCounts().isEmpty());
+    }
+
+    @Test
+    void put_computesCostCapacityAndPointsPerUnit() {
+        // Arrange
+        // Woning: 100 m2 * 10 m = 1000 m3. Park: 500 m2, hoogte 0
+        aggregate.put(new BuildingTypeTotals(housing.getTypeId(), 1, 100, 1000, 10, 10, 10), housing);
+        aggregate.put(new BuildingTypeTotals(park.getTypeId(), 1, 500, 0, 0, 0, 0), park);
+
+        // Act
+        StatisticsDTO stats = aggregate.toStatistics();
+
+        // Assert
+        // Woning: 1000 m3 -> 2000 euro, 10 bewoners. Park: 500 m2 -> 500 euro
+        assertEquals(2500, stats.getTotalCost(), 0.0001);
+        assertEquals(1250, stats.getAverageCost(), 0.0001);
+        assertEquals(10, stats.getTotalCapacity(), 0.0001);
+        assertEquals(250, stats.getAverageCostPerCitizen(), 0.0001);
+        assertEquals(5, stats.getTotalPoints(), 0.0001);
+        assertEquals(1, stats.getTotalLiveableBuildings());
+        assertEquals(2, stats.getTotalBuildings());
+        assertEquals(10, stats.getTallestBuilding());
+        assertEquals(0, stats.getLowestBuilding());
+        assertEquals(Map.of("Woning", 1, "Park", 1), stats.getBuildingTypeCounts());
+    }
+
+    @Test
+    void put_combinesTotalsOfMultipleTypes() {
+        // Arrange
+        aggregate.put(new BuildingTypeTotals(housing.getTypeId(), 3, 30, 750, 75, 5, 50), housing);
+        aggregate.put(new BuildingTypeTotals(park.getTypeId(), 1, 20, 40, 2, 2, 2), park);
+
+        // Act
+        StatisticsDTO stats = aggregate.toStatistics();
+
+        // Assert
+        assertEquals(4, aggregate.size());
+        assertEquals(50, stats.getTallestBuilding());
+        assertEquals(2, stats.getLowestBuilding());
+        assertEquals(77.0 / 4, stats.getAverageHeight(), 0.0001);
+        assertEquals(15, stats.getTotalPoints(), 0.0001);
+    }
+
+    @Test
+    void put_sameType_replacesPreviousTotals() {
+        // Arrange
+        aggregate.put(new BuildingTypeTotals(housing.getTypeId(), 2, 200, 6000, 60, 30, 30), housing);
+
+        // Act
+        aggregate.put(new BuildingTypeTotals(housing.getTypeId(), 1, 100, 2000, 20, 20, 20), housing);
+
+        // Assert
+        StatisticsDTO stats = aggregate.toStatistics();
+        assertEquals(1, aggregate.size());
+        assertEquals(20, stats.getTallestBuilding());
+        assertEquals(4000, stats.getTotalCost(), 0.0001);
+    }
+
+    @Test
+    void removeType_dropsTypeFromStatistics() {
+        // Arrange
+        aggregate.put(new BuildingTypeTotals(housing.getTypeId(), 1, 100, 1000, 10, 10, 10), housing);
+        aggregate.put(new BuildingTypeTotals(park.getTypeId(), 1, 500, 0, 0, 0, 0), park);
+
+        // Act
+        aggregate.removeType(housing.getTypeId());
+
+        // Assert
+        StatisticsDTO stats = aggregate.toStatistics();
+        assertEquals(Map.of("Park", 1), stats.getBuildingTypeCounts());
+        assertEquals(500, stats.getTotalCost(), 0.0001);
+        assertEquals(housing, aggregate.getBuildingType(housing.getTypeId()));
+    }
+
+    @Test
+    void replaceAll_discardsPreviousState() {
+        // Arrange
+        aggregate.put(new BuildingTypeTotals(housing.getTypeId(), 1, 100, 1000, 10, 10, 10), housing);
+
+        // Act
+        aggregate.replaceAll(
+            List.of(new BuildingTypeTotals(park.getTypeId(), 1, 20, 20, 1, 1, 1)),
+            List.of(housing, park));
+
+        // Assert
+        StatisticsDTO stats = aggregate.toStatistics();
+        assertEquals(1, aggregate.size());
+        assertEquals(Map.of("Park", 1), stats.getBuildingTypeCounts());
+        assertEquals(20, stats.getTotalCost(), 0.0001);
+    }
+}
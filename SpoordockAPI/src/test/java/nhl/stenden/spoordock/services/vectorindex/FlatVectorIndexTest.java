@@ -0,0 +1,115 @@
+package nhl.stenden.spoordock.services.vectorindex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlatVectorIndexTest {
+
+    private static UUID id(long value) {
+        return new UUID(0, value);
+    }
+
+    @Test
+    void search_returnsNearestInAscendingDistance() {
+        // Arrange
+        var index = new FlatVectorIndex(2, 4);
+        index.upsert(id(1), new float[] { 0f, 0f }, "oorsprong");
+        index.upsert(id(2), new float[] { 5f, 5f }, "ver");
+        index.upsert(id(3), new float[] { 1f, 0f }, "dichtbij");
+
+        // Act
+        List<VectorMatch> result = index.search(new float[] { 0.9f, 0f }, 2);
+
+        // Assert
+        assertEquals(List.of("dichtbij", "oorsprong"), result.stream().map(VectorMatch::getSource).toList());
+        assertEquals(0.01f, result.get(0).getDistance(), 0.0001f);
+    }
+
+    @Test
+    void upsert_existingBuilding_replacesVector() {
+        // Arrange
+        var index = new FlatVectorIndex(2, 4);
+        index.upsert(id(1), new float[] { 0f, 0f }, "oud");
+
+        // Act
+        index.upsert(id(1), new float[] { 3f, 3f }, "nieuw");
+
+        // Assert
+        assertEquals(1, index.size());
+        assertEquals("nieuw", index.search(new float[] { 3f, 3f }, 1).get(0).getSource());
+    }
+
+    @Test
+    void putIfAbsent_existingBuilding_keepsNewerVector() {
+        // Arrange
+        var index = new FlatVectorIndex(2, 4);
+        index.upsert(id(1), new float[] { 1f, 1f }, "nieuw");
+
+        // Act
+        boolean added = index.putIfAbsent(id(1), new float[] { 0f, 0f }, "oud");
+
+        // Assert
+        assertFalse(added);
+        assertEquals("nieuw", index.search(new float[] { 0f, 0f }, 1).get(0).getSource());
+    }
+
+    @Test
+    void remove_movesLastRowIntoFreedSlot() {
+        // Arrange
+        var index = new FlatVectorIndex(2, 4);
+        index.upsert(id(1), new float[] { 0f, 0f }, "een");
+        index.upsert(id(2), new float[] { 1f, 1f }, "twee");
+        index.upsert(id(3), new float[] { 2f, 2f }, "drie");
+
+        // Act
+        assertTrue(index.remove(id(1)));
+        index.upsert(id(3), new float[] { 9f, 9f }, "drie verplaatst");
+
+        // Assert
+        assertEquals(2, index.size());
+        assertFalse(index.remove(id(1)));
+        List<VectorMatch> result = index.search(new float[] { 0f, 0f }, 5);
+        assertEquals(List.of(id(2), id(3)), result.stream().map(VectorMatch::getBuildingId).toList());
+        assertEquals("drie verplaatst", result.get(1).getSource());
+    }
+
+    @Test
+    void search_matchesBruteForceOverManyVectors() {
+        // Arrange: groeit voorbij de begincapaciteit en heeft een dimensie die niet deelbaar is door 4
+        var random = new Random(42);
+        int dimensions = 13;
+        var index = new FlatVectorIndex(dimensions, 1);
+        float[][] vectors = new float[500][dimensions];
+        for (int i = 0; i < vectors.length; i++) {
+            for (int d = 0; d < dimensions; d++) {
+                vectors[i][d] = random.nextFloat();
+            }
+            index.upsert(id(i), vectors[i], "gebouw " + i);
+        }
+        float[] query = vectors[123].clone();
+        query[0] += 0.001f;
+
+        // Act
+        List<VectorMatch> result = index.search(query, 10);
+
+        // Assert
+        assertEquals(id(123), result.get(0).getBuildingId());
+        for (int i = 1; i < result.size(); i++) {
+            assertTrue(result.get(i - 1).getDistance() <= result.get(i).getDistance());
+        }
+    }
+
+    @Test
+    void upsert_wrongDimensions_throws() {
+        // Arrange
+        var index = new FlatVectorIndex(3, 4);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> index.upsert(id(1), new float[] { 1f }, "fout"));
+    }
+}